@@ -1,7 +1,9 @@
 plugins {
     application
     java
+    `java-test-fixtures`
     id ("com.github.johnrengelman.shadow") version "8.1.1"
+    id ("me.champeau.jmh") version "0.7.2"
 }
 
 application.mainClass = "Main"
@@ -10,6 +12,13 @@ version = "1.0-SNAPSHOT"
 
 val jdaVersion = "6.2.0"
 
+// Virtual threads (InteractionExecutor) need Java 21
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+}
+
 repositories {
     mavenCentral()
     maven { url = uri("https://jitpack.io") }
@@ -22,6 +31,104 @@ dependencies {
     implementation("net.dv8tion:JDA:$jdaVersion")
     implementation("org.mariadb.jdbc:mariadb-java-client:3.3.3")
     implementation("io.github.cdimascio:dotenv-java:3.0.0")
+
+    // Embedded MariaDB (src/testFixtures/java/EmbeddedDatabase) for the JDBC tests, the benchmarks and the load test.
+    // test sees the fixtures through the plugin; benchmarks and load test depend on them here.
+    testFixturesApi("ch.vorburger.mariaDB4j:mariaDB4j:3.1.0")
+    jmh(testFixtures(project))
+
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+// ./gradlew jmh -> build/results/jmh/results.json, then ./gradlew jmhCheck to compare with the baseline
+jmh {
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    profilers = listOf("gc")
+    resultFormat = "JSON"
+    // The fixtures bring the main classes in once more, as a jar
+    duplicateClassesStrategy = DuplicatesStrategy.EXCLUDE
+}
+
+// Fails if a benchmark got more than 20% slower than in src/jmh/baseline.json. Without a baseline it only
+// warns: record one from a trusted run on the reference machine with ./gradlew jmh jmhSaveBaseline and commit it.
+tasks.register<Copy>("jmhSaveBaseline") {
+    group = "verification"
+    description = "Stores the last JMH results as the baseline for jmhCheck"
+    from(layout.buildDirectory.file("results/jmh/results.json"))
+    into(layout.projectDirectory.dir("src/jmh"))
+    rename { "baseline.json" }
+}
+
+tasks.register("jmhCheck") {
+    group = "verification"
+    description = "Compares JMH results with the stored baseline"
+
+    val resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    val baselineFile = layout.projectDirectory.file("src/jmh/baseline.json")
+
+    doLast {
+        val baseline = baselineFile.asFile
+        if (!baseline.exists()) {
+            logger.warn("WARNING: No JMH baseline at ${baseline.path}, skipping the regression check. " +
+                "Record one with ./gradlew jmh jmhSaveBaseline and commit it.")
+            return@doLast
+        }
+        if (!resultsFile.get().asFile.exists()) {
+            throw GradleException("No JMH results at ${resultsFile.get().asFile.path}, run ./gradlew jmh first.")
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        fun scores(file: File): Map<String, Pair<String, Double>> =
+            (groovy.json.JsonSlurper().parse(file) as List<Map<String, Any>>).associate { run ->
+                val metric = run["primaryMetric"] as Map<String, Any>
+                val params = (run["params"] as Map<String, Any>?)?.toSortedMap()?.toString() ?: ""
+                (run["benchmark"] as String) + params to
+                    ((run["mode"] as String) to (metric["score"] as Number).toDouble())
+            }
+
+        val current = scores(resultsFile.get().asFile)
+        val missing = scores(baseline).keys - current.keys
+        if (missing.isNotEmpty()) {
+            throw GradleException("Benchmarks in the baseline but not in the results:\n" + missing.joinToString("\n"))
+        }
+        val regressions = scores(baseline).mapNotNull { (name, expected) ->
+            val actual = current.getValue(name).second
+            // thrpt: higher is better, everything else (avgt, sample, ss): lower is better
+            val slowdown = if (expected.first == "thrpt") expected.second / actual else actual / expected.second
+            if (slowdown > 1.2) "$name: ${"%.2f".format(expected.second)} -> ${"%.2f".format(actual)}" else null
+        }
+
+        if (regressions.isNotEmpty()) {
+            throw GradleException("JMH regressions (>20%):\n" + regressions.joinToString("\n"))
+        }
+        logger.lifecycle("JMH: no regressions against ${baseline.name}")
+    }
+}
+
+// Load generator (src/loadtest), on the embedded database of the test fixtures:
+// ./gradlew loadTest --args="--rates=50,100,200 --duration=30"
+sourceSets {
+    create("loadtest") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+configurations["loadtestImplementation"].extendsFrom(configurations.implementation.get())
+
+dependencies {
+    "loadtestImplementation"(testFixtures(project))
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Drives SlashCommandHandler with synthetic interactions and reports latency and deadline misses"
+    classpath = sourceSets["loadtest"].runtimeClasspath
+    mainClass = "LoadTest"
 }
 
 tasks.test {
@@ -0,0 +1,69 @@
+import io.github.vrchatapi.api.GroupsApi;
+import io.github.vrchatapi.api.UsersApi;
+import io.github.vrchatapi.model.LimitedGroup;
+import net.dv8tion.jda.api.components.container.Container;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders one /list-reviews page (group lookup, owner badge, formatting) with a stubbed GroupsApi.
+ * Run with the GC profiler to see the allocation rate per render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReviewRenderBenchmark {
+
+    // Answers every search with the benchmark group, without touching the network
+    static class StubGroupsApi extends GroupsApi {
+        @Override
+        public List<LimitedGroup> searchGroups(String query, Integer offset, Integer n) {
+            return List.of(new LimitedGroup()
+                    .id("grp_bench")
+                    .name("Benchmark Group")
+                    .shortCode("GRP0")
+                    .discriminator("0001")
+                    .ownerId("usr_bench_1"));
+        }
+    }
+
+    private EmbeddedDatabase database;
+    private InteractionExecutor io;
+    private SlashCommandHandler handler;
+    private SlashCommandHandler.ReviewPage page;
+    private GroupStats stats;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = EmbeddedDatabase.start();
+        database.seed(1, 50, 50);
+
+        ReviewRepository repo = new JdbcReviewRepository(database.dbManager());
+        UserRepository userRepo = new JdbcUserRepository(database.dbManager());
+        io = new InteractionExecutor(database.dbManager().getMaximumPoolSize(), 4);
+        VRChatGateway gateway = new VRChatGateway(new VRChatSessionManager(), 1_000_000, 1_000_000, Duration.ofSeconds(2));
+        GroupRepository groupRepo = new JdbcGroupRepository(database.dbManager());
+        groupRepo.saveGroup(new GroupInfo(EmbeddedDatabase.groupId(0), "grp_bench", "Benchmark Group", "usr_bench_1"));
+        handler = new SlashCommandHandler(repo, userRepo, new GroupDirectory(groupRepo, new StubGroupsApi(), gateway, io),
+                new UsersApi(), gateway, io, new InteractionThrottle(1_000_000, 1_000_000, 1_000_000, 1_000_000), new ReviewEvents());
+
+        String groupId = EmbeddedDatabase.groupId(0);
+        GroupReview review = repo.getReviewsAfter(groupId, null, 1).get(0);
+        page = new SlashCommandHandler.ReviewPage(groupId, review, 0, false, true);
+        stats = repo.getGroupStats(groupId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        io.shutdown();
+        database.close();
+    }
+
+    @Benchmark
+    public Container buildReviewContainer() throws Exception {
+        return handler.buildReviewContainer(page, stats);
+    }
+}
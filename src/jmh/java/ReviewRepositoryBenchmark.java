@@ -0,0 +1,65 @@
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReviewRepository hot paths against an embedded MariaDB seeded with 10k groups and 1M reviews.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReviewRepositoryBenchmark {
+
+    @Param("10000")
+    public int groups;
+
+    @Param("1000000")
+    public int reviews;
+
+    @Param("100000")
+    public int users;
+
+    private EmbeddedDatabase database;
+    private ReviewRepository repo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = EmbeddedDatabase.start();
+        database.seed(groups, reviews, users);
+        repo = new JdbcReviewRepository(database.dbManager());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public void upsertReview() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        repo.upsertReview(
+                EmbeddedDatabase.groupId(random.nextInt(groups)),
+                EmbeddedDatabase.userId(random.nextInt(users)),
+                1 + random.nextInt(5),
+                random.nextBoolean(),
+                "Benchmark upsert");
+    }
+
+    @Benchmark
+    public List<GroupReview> getAllReviews() {
+        return repo.getAllReviews(EmbeddedDatabase.groupId(ThreadLocalRandom.current().nextInt(groups)));
+    }
+
+    @Benchmark
+    public double getAverageRating() {
+        return repo.getAverageRating(EmbeddedDatabase.groupId(ThreadLocalRandom.current().nextInt(groups)));
+    }
+
+    @Benchmark
+    public void getReviewsAfter(Blackhole bh) {
+        bh.consume(repo.getReviewsAfter(EmbeddedDatabase.groupId(ThreadLocalRandom.current().nextInt(groups)), null, 2));
+    }
+}
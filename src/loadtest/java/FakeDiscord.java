@@ -0,0 +1,201 @@
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.components.buttons.ButtonInteraction;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.SlashCommandInteraction;
+import net.dv8tion.jda.api.utils.data.DataObject;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds real JDA interaction events on top of dynamic proxies, so SlashCommandHandler can be driven
+ * without a gateway connection. Nothing is sent anywhere: every queued reply, defer and edit is
+ * recorded on the Response of its interaction.
+ */
+public final class FakeDiscord {
+
+    // Builder methods that put something visible into a message (as opposed to setEphemeral & co.)
+    private static final Set<String> CONTENT_SETTERS = Set.of(
+            "setContent", "addContent", "setComponents", "addComponents", "setEmbeds", "addEmbeds", "setFiles", "applyData");
+
+    private static final JDA JDA_STUB = proxy(JDA.class, (self, method, args) -> defaultValue(self, method, args));
+    private static final AtomicLong RESPONSE_NUMBER = new AtomicLong();
+
+    private FakeDiscord() {}
+
+    /**
+     * What the handler sent back for one interaction, in System.nanoTime() terms.
+     * The first queued callback is the acknowledgement Discord wants within 3 seconds; the first one
+     * with content (a follow-up, a reply or an edit) completes the interaction.
+     */
+    public static final class Response {
+        private final long startNanos;
+        private final AtomicLong ackNanos = new AtomicLong();
+        private final AtomicLong doneNanos = new AtomicLong();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        public Response(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void sent(boolean withContent) {
+            long now = System.nanoTime();
+            ackNanos.compareAndSet(0, now);
+            if (withContent && doneNanos.compareAndSet(0, now)) {
+                done.countDown();
+            }
+        }
+
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            long remaining = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - System.nanoTime();
+            return done.await(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        }
+
+        public boolean acknowledged() {
+            return ackNanos.get() != 0;
+        }
+
+        public boolean completed() {
+            return doneNanos.get() != 0;
+        }
+
+        // Latencies in milliseconds, -1 if it never happened
+        public double ackMillis() {
+            long ack = ackNanos.get();
+            return ack == 0 ? -1 : (ack - startNanos) / 1_000_000.0;
+        }
+
+        public double doneMillis() {
+            long finished = doneNanos.get();
+            return finished == 0 ? -1 : (finished - startNanos) / 1_000_000.0;
+        }
+
+        public long doneNanos() {
+            return doneNanos.get();
+        }
+    }
+
+    public static User user(String id, String name) {
+        return proxy(User.class, (self, method, args) -> switch (method.getName()) {
+            case "getId" -> id;
+            case "getIdLong" -> Long.parseLong(id);
+            case "getName", "getEffectiveName", "getGlobalName" -> name;
+            default -> defaultValue(self, method, args);
+        });
+    }
+
+    /**
+     * A slash command with the given options. Values may be String, Integer/Long or Boolean.
+     */
+    public static SlashCommandInteractionEvent slashCommand(String name, User user, Map<String, Object> options, Response response) {
+        List<OptionMapping> mappings = new ArrayList<>();
+        options.forEach((key, value) -> mappings.add(option(key, value)));
+
+        SlashCommandInteraction interaction = proxy(SlashCommandInteraction.class, (self, method, args) -> switch (method.getName()) {
+            case "getName", "getFullCommandName" -> name;
+            case "getOptions" -> mappings;
+            case "getOption" -> mappings.stream()
+                    .filter(mapping -> mapping.getName().equals(args[0]))
+                    .findFirst()
+                    .orElse(null);
+            default -> callback(self, method, args, user, response);
+        });
+        return new SlashCommandInteractionEvent(JDA_STUB, RESPONSE_NUMBER.incrementAndGet(), interaction);
+    }
+
+    public static ButtonInteractionEvent button(String componentId, User user, Response response) {
+        ButtonInteraction interaction = proxy(ButtonInteraction.class, (self, method, args) ->
+                method.getName().equals("getComponentId") ? componentId : callback(self, method, args, user, response));
+        return new ButtonInteractionEvent(JDA_STUB, RESPONSE_NUMBER.incrementAndGet(), interaction);
+    }
+
+    private static OptionMapping option(String name, Object value) {
+        int type = value instanceof Boolean ? 5 : value instanceof Number ? 4 : 3; // BOOLEAN, INTEGER, STRING
+        DataObject data = DataObject.empty()
+                .put("name", name)
+                .put("type", type)
+                .put("value", value);
+        return new OptionMapping(data, null, JDA_STUB, null);
+    }
+
+    // Methods every interaction has: the user, the hook and the reply/defer/edit callbacks
+    private static Object callback(Object self, Method method, Object[] args, User user, Response response) {
+        return switch (method.getName()) {
+            case "getUser" -> user;
+            case "getJDA" -> JDA_STUB;
+            case "isAcknowledged" -> response.acknowledged();
+            case "getHook" -> hook(response);
+            case "deferReply", "deferEdit" -> action(method.getReturnType(), response, false);
+            case "reply", "replyEmbeds", "replyComponents", "editMessage", "editComponents" ->
+                    action(method.getReturnType(), response, true);
+            default -> defaultValue(self, method, args);
+        };
+    }
+
+    private static InteractionHook hook(Response response) {
+        return proxy(InteractionHook.class, (self, method, args) -> switch (method.getName()) {
+            case "sendMessage", "sendMessageEmbeds", "sendMessageComponents", "editOriginal", "editOriginalComponents" ->
+                    action(method.getReturnType(), response, true);
+            case "getJDA" -> JDA_STUB;
+            default -> defaultValue(self, method, args);
+        });
+    }
+
+    // A RestAction builder: fluent calls return the builder, queue()/complete()/submit() record the response
+    private static Object action(Class<?> type, Response response, boolean withContent) {
+        boolean[] content = {withContent};
+        return Proxy.newProxyInstance(FakeDiscord.class.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            String name = method.getName();
+            switch (name) {
+                case "queue", "complete" -> {
+                    response.sent(content[0]);
+                    return null;
+                }
+                case "submit" -> {
+                    response.sent(content[0]);
+                    return CompletableFuture.completedFuture(null);
+                }
+                default -> {
+                    if (CONTENT_SETTERS.contains(name)) content[0] = true;
+                    if (method.getReturnType().isInstance(self)) return self;
+                    return defaultValue(self, method, args);
+                }
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(FakeDiscord.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object defaultValue(Object self, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                if (method.getParameterCount() == 1) return self == args[0];
+                break;
+            case "hashCode":
+                if (method.getParameterCount() == 0) return System.identityHashCode(self);
+                break;
+            case "toString":
+                if (method.getParameterCount() == 0) return "Fake" + self.getClass().getInterfaces()[0].getSimpleName();
+                break;
+        }
+        Class<?> type = method.getReturnType();
+        if (!type.isPrimitive() || type == void.class) return null;
+        // 0 / false of the right primitive type
+        return Array.get(Array.newInstance(type, 1), 0);
+    }
+}
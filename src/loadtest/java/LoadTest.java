@@ -0,0 +1,275 @@
+import net.dv8tion.jda.api.entities.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator: fires fake interactions at SlashCommandHandler at fixed rates and reports
+ * throughput, latency percentiles and missed 3-second deadlines per command.
+ *
+ * Runs against an embedded MariaDB and stubbed VRChat APIs:
+ *   ./gradlew loadTest --args="--rates=50,100,200 --duration=30 --mix=list-reviews=4,button=4,rate-group=1,link-vrc=1"
+ *
+ * Options (defaults in brackets):
+ *   --rates               interactions per second, one step per rate [25,50,100,200,400]
+ *   --duration            seconds per step [30]
+ *   --mix                 relative weights of list-reviews, button, rate-group and link-vrc [list-reviews=4,button=4,rate-group=1,link-vrc=1]
+ *   --vrchat-latency      VRChat response time in ms [250]
+ *   --vrchat-jitter       extra random VRChat delay in ms, 0..jitter [100]
+ *   --vrchat-concurrency  VRChat calls in flight at once, as in Main [4]
+ *   --vrchat-rate         VRChatGateway requests per second (burst of the same size), as VRCHAT_RATE [1000]
+ *   --groups, --reviews, --users   size of the seeded database [500, 100000, 20000]
+ *   --write-behind        batch review writes through ReviewWriteBehind, as WRITE_BEHIND=true [false]
+ *   --throttle            apply Main's default per-user and per-group limits; off, the generator measures raw capacity [false]
+ *
+ * Latency is measured from the moment an interaction was due, not when it was actually fired, so a
+ * saturated generator can't hide queueing. The run stops after a step where more than 5% missed the deadline.
+ */
+public class LoadTest {
+
+    private static final long DEADLINE_MILLIS = 3_000;
+    // Interaction tokens stay valid for 15 minutes, but anything slower than this is as good as lost
+    private static final long TIMEOUT_MILLIS = 15_000;
+
+    private record Sent(String command, FakeDiscord.Response response) {}
+
+    private final SlashCommandHandler handler;
+    private final Map<String, Integer> mix;
+    private final int groups;
+    private final int users;
+    private final int reviewedUsers;
+    private final List<String> buttonIds;
+    private final Random random = new Random(7);
+
+    private long rateCount;
+    private long linkCount;
+
+    private LoadTest(SlashCommandHandler handler, Map<String, Integer> mix, int groups, int users, int reviewedUsers, List<String> buttonIds) {
+        this.handler = handler;
+        this.mix = mix;
+        this.groups = groups;
+        this.users = users;
+        this.reviewedUsers = reviewedUsers;
+        this.buttonIds = buttonIds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int[] rates = Arrays.stream(options.getOrDefault("rates", "25,50,100,200,400").split(","))
+                .mapToInt(rate -> Integer.parseInt(rate.trim()))
+                .toArray();
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", "list-reviews=4,button=4,rate-group=1,link-vrc=1"));
+        int groups = Integer.parseInt(options.getOrDefault("groups", "500"));
+        int reviews = Integer.parseInt(options.getOrDefault("reviews", "100000"));
+        int users = Integer.parseInt(options.getOrDefault("users", "20000"));
+        StubVRChat vrchat = new StubVRChat(
+                Long.parseLong(options.getOrDefault("vrchat-latency", "250")),
+                Long.parseLong(options.getOrDefault("vrchat-jitter", "100")));
+        int vrchatConcurrency = Integer.parseInt(options.getOrDefault("vrchat-concurrency", "4"));
+        int vrchatRate = Integer.parseInt(options.getOrDefault("vrchat-rate", "1000"));
+
+        // Seeded reviews come from the first reviews / groups users; the rest are linked but have reviewed nothing
+        int reviewedUsers = (reviews + groups - 1) / groups;
+        if (reviewedUsers >= users) {
+            throw new IllegalArgumentException("--users must be larger than --reviews / --groups");
+        }
+
+        System.out.printf("Seeding %d groups, %d reviews, %d users...%n", groups, reviews, users);
+        try (EmbeddedDatabase database = EmbeddedDatabase.start()) {
+            database.seed(groups, reviews, users);
+
+            ReviewWriteBehind writeBehind = Boolean.parseBoolean(options.getOrDefault("write-behind", "false"))
+                    ? new ReviewWriteBehind(database.dbManager(), 256, Duration.ofMillis(10))
+                    : null;
+            ReviewEvents events = new ReviewEvents();
+            ReviewRepository repo = new PublishingReviewRepository(new JdbcReviewRepository(database.dbManager(), writeBehind), events);
+            UserRepository userRepo = new PublishingUserRepository(new JdbcUserRepository(database.dbManager()), events);
+            InteractionExecutor io = new InteractionExecutor(database.dbManager().getMaximumPoolSize(), vrchatConcurrency);
+            VRChatGateway gateway = new VRChatGateway(new VRChatSessionManager(), vrchatRate, vrchatRate, Duration.ofSeconds(2));
+            GroupRepository groupRepo = new JdbcGroupRepository(database.dbManager());
+            // As if the group refresher had already run: review pages read group names from the index
+            for (int group = 0; group < groups; group++) {
+                String n = String.valueOf(group);
+                groupRepo.saveGroup(new GroupInfo(EmbeddedDatabase.groupId(group), "grp_load_" + n, "Load Test Group " + n, "usr_bench_" + n));
+            }
+            InteractionThrottle throttle = Boolean.parseBoolean(options.getOrDefault("throttle", "false"))
+                    ? new InteractionThrottle(1, 5, 20, 40)
+                    : new InteractionThrottle(1_000_000, 1_000_000, 1_000_000, 1_000_000);
+            SlashCommandHandler handler = new SlashCommandHandler(repo, userRepo,
+                    new GroupDirectory(groupRepo, vrchat.groupsApi(), gateway, io), vrchat.usersApi(), gateway, io, throttle, events);
+
+            // "Next" buttons on the first page of up to 100 groups, as /list-reviews would render them
+            List<String> buttonIds = new ArrayList<>();
+            for (int group = 0; group < Math.min(groups, 100); group++) {
+                String groupId = EmbeddedDatabase.groupId(group);
+                for (GroupReview review : repo.getReviewsAfter(groupId, null, 1)) {
+                    ReviewCursor cursor = ReviewCursor.of(review);
+                    buttonIds.add("review:n:0:" + Long.toString(cursor.createdAtMillis(), 36) + ":"
+                            + cursor.discordUserId() + ":" + groupId);
+                }
+            }
+
+            LoadTest loadTest = new LoadTest(handler, mix, groups, users, reviewedUsers, buttonIds);
+            int sustained = 0;
+            for (int rate : rates) {
+                double missRatio = loadTest.runStep(rate, duration);
+                if (missRatio == 0) sustained = rate;
+                if (missRatio > 0.05) {
+                    System.out.println("More than 5% missed the deadline, stopping.");
+                    break;
+                }
+            }
+            System.out.println(sustained > 0
+                    ? "Highest rate without deadline misses: " + sustained + "/s"
+                    : "Every step missed deadlines.");
+
+            io.shutdown();
+            if (writeBehind != null) writeBehind.close();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Fires rate interactions per second for the given duration, waits for the stragglers and prints
+     * the report. Returns the share of interactions that missed the deadline.
+     */
+    private double runStep(int rate, int seconds) throws InterruptedException {
+        System.out.printf("%n=== %d/s for %ds ===%n", rate, seconds);
+        int total = rate * seconds;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        List<Sent> sent = new ArrayList<>(total);
+
+        long stepStart = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long due = stepStart + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            String command = pickCommand();
+            FakeDiscord.Response response = new FakeDiscord.Response(due);
+            fire(command, response);
+            sent.add(new Sent(command, response));
+        }
+
+        for (Sent s : sent) {
+            s.response().await(TIMEOUT_MILLIS);
+        }
+
+        long lastDone = sent.stream().mapToLong(s -> s.response().doneNanos()).max().orElse(stepStart);
+        long completed = sent.stream().filter(s -> s.response().completed()).count();
+        double elapsed = Math.max(lastDone - stepStart, 1) / 1_000_000_000.0;
+        System.out.printf("sent %d, completed %d, throughput %.1f/s%n", total, completed, completed / elapsed);
+
+        System.out.printf("%-13s %7s %9s %9s %9s %9s %9s %9s %7s %8s%n",
+                "command", "count", "ack p50", "ack p99", "ack max", "done p50", "done p99", "done max", ">3s", "timeout");
+        Map<String, List<Sent>> byCommand = new LinkedHashMap<>();
+        for (Sent s : sent) {
+            byCommand.computeIfAbsent(s.command(), k -> new ArrayList<>()).add(s);
+        }
+        byCommand.put("all", sent);
+
+        long missed = 0;
+        for (Map.Entry<String, List<Sent>> entry : byCommand.entrySet()) {
+            List<Sent> list = entry.getValue();
+            double[] ack = list.stream().mapToDouble(s -> s.response().ackMillis()).filter(ms -> ms >= 0).sorted().toArray();
+            double[] done = list.stream().mapToDouble(s -> s.response().doneMillis()).filter(ms -> ms >= 0).sorted().toArray();
+            // Not acknowledged in time, or not at all: Discord shows "The application did not respond"
+            long late = list.stream().filter(s -> !s.response().acknowledged() || s.response().ackMillis() > DEADLINE_MILLIS).count();
+            long timedOut = list.size() - done.length;
+            if (entry.getKey().equals("all")) missed = late;
+
+            System.out.printf("%-13s %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %7d %8d%n",
+                    entry.getKey(), list.size(),
+                    percentile(ack, 0.50), percentile(ack, 0.99), percentile(ack, 1.0),
+                    percentile(done, 0.50), percentile(done, 0.99), percentile(done, 1.0),
+                    late, timedOut);
+        }
+        return total == 0 ? 0 : (double) missed / total;
+    }
+
+    private void fire(String command, FakeDiscord.Response response) {
+        switch (command) {
+            case "list-reviews" -> {
+                User user = randomUser();
+                handler.onSlashCommandInteraction(FakeDiscord.slashCommand("list-reviews", user,
+                        Map.of("group_shortcode", EmbeddedDatabase.groupId(random.nextInt(groups))), response));
+            }
+            case "button" -> handler.onButtonInteraction(
+                    FakeDiscord.button(buttonIds.get(random.nextInt(buttonIds.size())), randomUser(), response));
+            case "rate-group" -> {
+                // Walk through fresh (user, group) pairs, so reviews are actually written until they run out
+                long k = rateCount++;
+                int user = reviewedUsers + (int) ((k / groups) % (users - reviewedUsers));
+                Map<String, Object> options = new HashMap<>();
+                options.put("group_shortcode", EmbeddedDatabase.groupId((int) (k % groups)));
+                options.put("rating", 1 + random.nextInt(5));
+                options.put("comment", "Load test review " + k);
+                options.put("asks_for_dob", random.nextInt(4) == 0);
+                handler.onSlashCommandInteraction(FakeDiscord.slashCommand("rate-group",
+                        FakeDiscord.user(EmbeddedDatabase.userId(user), "bench" + user), options, response));
+            }
+            case "link-vrc" -> {
+                // New Discord users beyond the seeded ones; the stub puts the searched name in the bio
+                long n = linkCount++;
+                String name = "loaduser" + n;
+                handler.onSlashCommandInteraction(FakeDiscord.slashCommand("link-vrc",
+                        FakeDiscord.user(EmbeddedDatabase.userId(users + (int) n), name),
+                        Map.of("username", name), response));
+            }
+            default -> throw new IllegalArgumentException("Unknown command in --mix: " + command);
+        }
+    }
+
+    private User randomUser() {
+        int user = random.nextInt(users);
+        return FakeDiscord.user(EmbeddedDatabase.userId(user), "bench" + user);
+    }
+
+    private String pickCommand() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = random.nextInt(total);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) return entry.getKey();
+        }
+        throw new IllegalStateException("empty mix");
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.split("=", 2);
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) weights.put(kv[0].trim(), weight);
+        }
+        if (weights.isEmpty()) throw new IllegalArgumentException("--mix has no command with a weight > 0");
+        return weights;
+    }
+}
@@ -0,0 +1,75 @@
+import io.github.vrchatapi.api.GroupsApi;
+import io.github.vrchatapi.api.UsersApi;
+import io.github.vrchatapi.model.Group;
+import io.github.vrchatapi.model.LimitedGroup;
+import io.github.vrchatapi.model.LimitedUserSearch;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-ins for the VRChat APIs the handler uses. Every call sleeps for latency + a uniform
+ * random jitter instead of going over the network.
+ */
+public class StubVRChat {
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+
+    public StubVRChat(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    // Finds every group the EmbeddedDatabase seeds ("GRP<n>.0001"), owned by usr_bench_<n>
+    public GroupsApi groupsApi() {
+        return new GroupsApi() {
+            @Override
+            public List<LimitedGroup> searchGroups(String query, Integer offset, Integer n) {
+                pause();
+                String[] parts = query.split("\\.", 2);
+                if (parts.length != 2 || !parts[0].startsWith("GRP")) return List.of();
+                return List.of(new LimitedGroup()
+                        .id("grp_load_" + parts[0].substring(3))
+                        .name("Load Test Group " + parts[0].substring(3))
+                        .shortCode(parts[0])
+                        .discriminator(parts[1])
+                        .ownerId("usr_bench_" + parts[0].substring(3)));
+            }
+
+            @Override
+            public Group getGroup(String groupId, Boolean includeRoles) {
+                pause();
+                String n = groupId.substring("grp_load_".length());
+                return new Group()
+                        .id(groupId)
+                        .name("Load Test Group " + n)
+                        .shortCode("GRP" + n)
+                        .discriminator("0001")
+                        .ownerId("usr_bench_" + n);
+            }
+        };
+    }
+
+    // Every searched user exists and has the search term in their bio, so /link-vrc succeeds
+    public UsersApi usersApi() {
+        return new UsersApi() {
+            @Override
+            public List<LimitedUserSearch> searchUsers(String search, String developerType, Integer n, Integer offset, Boolean fuzzy) {
+                pause();
+                return List.of(new LimitedUserSearch()
+                        .id("usr_" + search)
+                        .displayName(search)
+                        .bio("Discord: " + search));
+            }
+        };
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(latencyMillis + ThreadLocalRandom.current().nextLong(jitterMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.interactions.IntegrationType;
+import net.dv8tion.jda.api.interactions.InteractionContextType;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The slash command definitions of the bot, and their registration with Discord.
+ * Commands are only pushed when they differ from what Discord already has,
+ * so restarts don't rewrite the global command list every time.
+ */
+public class CommandRegistrar {
+
+    public static List<CommandData> definitions() {
+        return List.of(
+            // Command: /rate-group
+            Commands.slash("rate-group", "Rate a VRChat Group based on your experience")
+                    .addOption(OptionType.STRING, "group_shortcode", "The VRChat Shortcode of the group", true, true)
+                    .addOption(OptionType.INTEGER, "rating", "Rating from 1 to 5", true)
+                    .addOption(OptionType.STRING, "comment", "Your review comment", true)
+                    .addOption(OptionType.BOOLEAN, "asks_for_dob", "Did they ask for your Date of Birth / ID despite you being age verified?", false)
+                    .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                    .setContexts(
+                            InteractionContextType.GUILD,
+                            InteractionContextType.BOT_DM,
+                            InteractionContextType.PRIVATE_CHANNEL
+                    ),
+
+            Commands.slash("delete-my-data", "Delete all your data stored by this bot (links and reviews)")
+                     .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                     .setContexts(
+                             InteractionContextType.GUILD,
+                             InteractionContextType.BOT_DM,
+                             InteractionContextType.PRIVATE_CHANNEL
+                     ),
+
+            // Command: /link-vrc
+            Commands.slash("link-vrc", "Link your Discord account to VRChat via Bio verification")
+                    .addOption(OptionType.STRING, "username", "Your VRChat Display Name", true)
+                    .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                    .setContexts(
+                            InteractionContextType.GUILD,
+                            InteractionContextType.BOT_DM,
+                            InteractionContextType.PRIVATE_CHANNEL
+                    ),
+
+            Commands.slash("unlink", "Unlink your VRChat account from your Discord account")
+                     .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                     .setContexts(
+                             InteractionContextType.GUILD,
+                             InteractionContextType.BOT_DM,
+                             InteractionContextType.PRIVATE_CHANNEL
+                     ),
+
+            Commands.slash("list-reviews", "List reviews for a VRChat Group")
+                    .addOption(OptionType.STRING, "group_shortcode", "The VRChat Shortcode of the group", true, true)
+                    .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                    .setContexts(
+                            InteractionContextType.GUILD,
+                            InteractionContextType.BOT_DM,
+                            InteractionContextType.PRIVATE_CHANNEL
+                    ),
+
+            // Command: /edit-review
+            Commands.slash("edit-review", "Edit your existing review for a VRChat Group")
+                    .addOption(OptionType.STRING, "group_shortcode", "The VRChat Shortcode of the group", true, true)
+                    .addOption(OptionType.INTEGER, "rating", "New rating from 1 to 5", false)
+                    .addOption(OptionType.STRING, "comment", "New review comment", false)
+                    .addOption(OptionType.BOOLEAN, "asks_for_dob", "Did they ask for your Date of Birth / ID?", false)
+                    .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                    .setContexts(
+                            InteractionContextType.GUILD,
+                            InteractionContextType.BOT_DM,
+                            InteractionContextType.PRIVATE_CHANNEL
+                    ),
+
+            // Command: /top-groups
+            Commands.slash("top-groups", "Show the best (or worst) rated VRChat Groups")
+                    .addOption(OptionType.BOOLEAN, "worst", "Show the worst rated groups instead", false)
+                    .addOption(OptionType.BOOLEAN, "asks_for_dob", "Only groups that do (true) or don't (false) ask for your DOB / ID", false)
+                    .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                    .setContexts(
+                            InteractionContextType.GUILD,
+                            InteractionContextType.BOT_DM,
+                            InteractionContextType.PRIVATE_CHANNEL
+                    ),
+
+            // Command: /trending
+            Commands.slash("trending", "Show the VRChat Groups with the most new reviews lately")
+                    .addOption(OptionType.STRING, "window", "hour, day or week (default: day)", false)
+                    .addOption(OptionType.BOOLEAN, "negative", "Count only reviews with 1 or 2 stars", false)
+                    .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                    .setContexts(
+                            InteractionContextType.GUILD,
+                            InteractionContextType.BOT_DM,
+                            InteractionContextType.PRIVATE_CHANNEL
+                    ),
+
+            // Command: /search-reviews
+            Commands.slash("search-reviews", "Find reviews of any group that mention some words")
+                    .addOption(OptionType.STRING, "query", "Words to look for, e.g. \"ID check\"", true)
+                    .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
+                    .setContexts(
+                            InteractionContextType.GUILD,
+                            InteractionContextType.BOT_DM,
+                            InteractionContextType.PRIVATE_CHANNEL
+                    )
+        );
+    }
+
+    /**
+     * Compares a hash of the local definitions with the commands registered on Discord and
+     * only calls updateCommands() if they differ.
+     */
+    public static void sync(JDA jda) {
+        List<CommandData> local = definitions();
+        String localHash = hash(local);
+
+        List<CommandData> remote = new ArrayList<>();
+        for (Command command : jda.retrieveCommands().complete()) {
+            remote.add(CommandData.fromCommand(command));
+        }
+        String remoteHash = hash(remote);
+
+        if (localHash.equals(remoteHash)) {
+            System.out.println("Slash commands unchanged (" + localHash.substring(0, 12) + "), skipping registration.");
+            return;
+        }
+
+        // Note: Global commands can take up to an hour to update.
+        // For testing, use .updateCommands().addCommands(...).queue() on a specific Guild.
+        System.out.println("Slash commands changed (" + remoteHash.substring(0, 12) + " -> " + localHash.substring(0, 12) + "), registering...");
+        jda.updateCommands().addCommands(local).complete();
+    }
+
+    // SHA-256 over a canonical JSON-like rendering (commands sorted by name, keys sorted)
+    private static String hash(List<CommandData> commands) {
+        StringBuilder sb = new StringBuilder();
+        commands.stream()
+                .sorted(Comparator.comparing(CommandData::getName))
+                .forEach(command -> {
+                    appendCanonical(sb, command.toData());
+                    sb.append('\n');
+                });
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void appendCanonical(StringBuilder sb, Object value) {
+        if (value instanceof DataObject object) {
+            appendCanonical(sb, object.toMap());
+        } else if (value instanceof DataArray array) {
+            appendCanonical(sb, array.toList());
+        } else if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((k, v) -> {
+                // Absent, null and empty values mean the same thing to Discord
+                if (v != null && !(v instanceof Map<?, ?> m && m.isEmpty())) {
+                    sorted.put(String.valueOf(k), v);
+                }
+            });
+            sb.append('{');
+            sorted.forEach((k, v) -> {
+                sb.append(k).append(':');
+                appendCanonical(sb, v);
+                sb.append(',');
+            });
+            sb.append('}');
+        } else if (value instanceof List<?> list) {
+            sb.append('[');
+            for (Object item : list) {
+                appendCanonical(sb, item);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else {
+            sb.append(value);
+        }
+    }
+}
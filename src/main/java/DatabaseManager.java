@@ -1,5 +1,6 @@
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import java.sql.Connection;
 import java.sql.SQLException;
 
@@ -7,20 +8,46 @@ public class DatabaseManager {
     private final HikariDataSource dataSource;
 
     public DatabaseManager() {
+        this("jdbc:mariadb://localhost:3306/vrcbot_db", "root", "admin");
+    }
+
+    public DatabaseManager(String jdbcUrl, String username, String password) {
         HikariConfig config = new HikariConfig();
 
         // Database Configuration
-        config.setJdbcUrl("jdbc:mariadb://localhost:3306/vrcbot_db");
-        config.setUsername("root");
-        config.setPassword("admin");
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
 
         // Optimization for long-running bots
         config.setMaximumPoolSize(10);
         config.addDataSourceProperty("cachePrepStmts", "true");
         config.addDataSourceProperty("prepStmtCacheSize", "250");
         config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // Report changed rows, not matched ones: a duplicate /rate-group insert (ON DUPLICATE KEY UPDATE
+        // group_id = group_id) then counts 0, see JdbcReviewRepository.RATE_SQL
+        config.addDataSourceProperty("useAffectedRows", "true");
 
         this.dataSource = new HikariDataSource(config);
+
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        Metrics.gauge("vrcbot_db_pool_active_connections", "Connections currently checked out", pool::getActiveConnections);
+        Metrics.gauge("vrcbot_db_pool_idle_connections", "Open connections waiting in the pool", pool::getIdleConnections);
+        Metrics.gauge("vrcbot_db_pool_total_connections", "Open connections, active and idle", pool::getTotalConnections);
+        Metrics.gauge("vrcbot_db_pool_pending_threads", "Threads waiting for a connection", pool::getThreadsAwaitingConnection);
+
+        // Create / upgrade the schema, then check that every repository query is index-backed
+        SchemaMigrator migrator = new SchemaMigrator(dataSource);
+        try {
+            migrator.migrate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Database schema migration failed", e);
+        }
+        migrator.selfCheck();
+    }
+
+    public int getMaximumPoolSize() {
+        return dataSource.getMaximumPoolSize();
     }
 
     public Connection getConnection() throws SQLException {
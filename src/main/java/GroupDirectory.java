@@ -0,0 +1,157 @@
+import io.github.vrchatapi.ApiException;
+import io.github.vrchatapi.api.GroupsApi;
+import io.github.vrchatapi.model.LimitedGroup;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group metadata for the handler, by "shortCode.discriminator".
+ * Review pages only read local data (a cache in front of the group index). VRChat is asked when /rate-group
+ * names a shortcode the index doesn't know yet, and by refresh(), which GroupRefresher runs in the background.
+ */
+public class GroupDirectory {
+
+    private static final int SEARCH_PAGE_SIZE = 60;
+    private static final int SEARCH_PAGES = 3;
+
+    private final GroupRepository groupRepo;
+    private final GroupsApi groupsApi;
+    private final VRChatGateway vrchat;
+    private final InteractionExecutor io;
+
+    // Index entries; refresh() and new groups invalidate what they change
+    private final TtlCache<String, GroupInfo> localCache = new TtlCache<>(5_000, Duration.ofMinutes(15), Duration.ofMinutes(1));
+    // Results of VRChat searches, so concurrent /rate-group calls for a new shortcode share one search
+    private final TtlCache<String, GroupInfo> searchCache = new TtlCache<>(1_000, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    // Review page views per group since the last takeViews()
+    private final ConcurrentHashMap<String, LongAdder> views = new ConcurrentHashMap<>();
+
+    public GroupDirectory(GroupRepository groupRepo, GroupsApi groupsApi, VRChatGateway vrchat, InteractionExecutor io) {
+        this.groupRepo = groupRepo;
+        this.groupsApi = groupsApi;
+        this.vrchat = vrchat;
+        this.io = io;
+
+        Metrics.gauge("vrcbot_group_cache_entries", "Group index entries cached in memory", localCache::size);
+        Metrics.gauge("vrcbot_group_view_entries", "Groups with page views waiting for the next refresh run", views::size);
+    }
+
+    /**
+     * The indexed metadata of a group, or null if it isn't indexed (yet). Never calls VRChat.
+     */
+    public GroupInfo local(String shortCode) {
+        return localCache.get(shortCode, key -> {
+            GroupRepository.IndexedGroup indexed = io.db(() -> groupRepo.findGroup(key));
+            return indexed != null ? indexed.group() : null;
+        });
+    }
+
+    /**
+     * Like local(), but searches VRChat for shortcodes the index doesn't know and indexes what it finds.
+     * @return null if VRChat doesn't know the shortcode either
+     */
+    public GroupInfo lookup(String shortCode) throws ApiException {
+        GroupInfo known = local(shortCode);
+        if (known != null) return known;
+
+        return searchCache.get(shortCode, key -> {
+            GroupInfo found = io.vrc(() -> searchGroup(key, () -> {}));
+            if (found != null) {
+                io.dbRun(() -> groupRepo.saveGroup(found));
+                localCache.invalidate(key);
+            }
+            return found;
+        });
+    }
+
+    public void recordView(String shortCode) {
+        views.computeIfAbsent(shortCode, key -> new LongAdder()).increment();
+    }
+
+    // Page views per group since the last call
+    public Map<String, Long> takeViews() {
+        Map<String, Long> taken = new HashMap<>();
+        views.forEach((shortCode, count) -> {
+            long sum = count.sumThenReset();
+            if (sum > 0) {
+                taken.put(shortCode, sum);
+            } else {
+                // Not viewed for a whole interval: drop the counter, so the map only holds recently viewed groups.
+                // A view racing with this removal is lost, which only nudges the refresh order.
+                views.remove(shortCode, count);
+            }
+        });
+        return taken;
+    }
+
+    /**
+     * When each of these groups was last refreshed (epoch millis), one bulk read; groups that were never
+     * indexed are missing from the map.
+     */
+    public Map<String, Long> refreshedAt(Collection<String> shortCodes) {
+        return io.db(() -> groupRepo.refreshedAt(shortCodes));
+    }
+
+    // Most VRChat calls a refresh() can make: a lookup by ID if the group is indexed, else the paged search
+    public static int maxRefreshCalls(boolean indexed) {
+        return indexed ? 1 : SEARCH_PAGES;
+    }
+
+    /**
+     * Fetches a group by its ID (or searches for it if it isn't indexed yet) and updates the index.
+     * Not bounded by the interaction bulkhead: the caller limits its own concurrency.
+     * onCall runs before every VRChat call, so the caller can count them against a budget.
+     */
+    public void refresh(String shortCode, Runnable onCall) throws ApiException {
+        GroupRepository.IndexedGroup indexed = io.db(() -> groupRepo.findGroup(shortCode));
+        GroupInfo refreshed = indexed != null ? fetchGroup(indexed.group().id(), onCall) : searchGroup(shortCode, onCall);
+
+        if (refreshed != null && refreshed.shortCode().equals(shortCode)) {
+            io.dbRun(() -> groupRepo.saveGroup(refreshed));
+        } else {
+            // Deleted, or the group changed its shortcode: this one no longer points anywhere
+            if (indexed != null) {
+                io.dbRun(() -> groupRepo.removeGroup(shortCode));
+            }
+            if (refreshed != null) {
+                io.dbRun(() -> groupRepo.saveGroup(refreshed));
+                localCache.invalidate(refreshed.shortCode());
+            }
+        }
+        localCache.invalidate(shortCode);
+    }
+
+    // Direct lookup by group ID (grp_...), null if the group no longer exists
+    private GroupInfo fetchGroup(String groupId, Runnable onCall) throws ApiException {
+        onCall.run();
+        try {
+            return GroupInfo.from(vrchat.call(() -> groupsApi.getGroup(groupId, false)));
+        } catch (ApiException e) {
+            if (e.getCode() == 404) return null;
+            throw e;
+        }
+    }
+
+    // The search is fuzzy, so groups with common names may not be on the first page
+    private GroupInfo searchGroup(String shortCode, Runnable onCall) throws ApiException {
+        for (int page = 0; page < SEARCH_PAGES; page++) {
+            int offset = page * SEARCH_PAGE_SIZE;
+            onCall.run();
+            List<LimitedGroup> results = vrchat.call(() -> groupsApi.searchGroups(shortCode, offset, SEARCH_PAGE_SIZE));
+            GroupInfo match = results.stream()
+                    .filter(g -> (g.getShortCode() + "." + g.getDiscriminator()).equals(shortCode))
+                    .findFirst()
+                    .map(GroupInfo::from)
+                    .orElse(null);
+            if (match != null || results.size() < SEARCH_PAGE_SIZE) return match;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+import io.github.vrchatapi.model.Group;
+import io.github.vrchatapi.model.LimitedGroup;
+
+/**
+ * The bits of VRChat group metadata the bot needs to render reviews.
+ * shortCode is the "shortCode.discriminator" string users type in commands.
+ */
+public record GroupInfo(String shortCode, String id, String name, String ownerId) {
+
+    // Placeholder while VRChat can't be asked: no name, no owner
+    public static GroupInfo unknown(String shortCode) {
+        return new GroupInfo(shortCode, null, null, null);
+    }
+
+    public static GroupInfo from(LimitedGroup group) {
+        return new GroupInfo(
+                group.getShortCode() + "." + group.getDiscriminator(),
+                group.getId(),
+                group.getName(),
+                group.getOwnerId()
+        );
+    }
+
+    public static GroupInfo from(Group group) {
+        return new GroupInfo(
+                group.getShortCode() + "." + group.getDiscriminator(),
+                group.getId(),
+                group.getName(),
+                group.getOwnerId()
+        );
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Best and worst rated groups for /top-groups, kept sorted in memory and updated on every review write.
+ *
+ * Groups are ranked by a Bayesian average: every group starts with PRIOR_WEIGHT virtual reviews at the
+ * average rating over all reviews, so a single 5-star review doesn't put a group on top. Only groups with
+ * at least MIN_REVIEWS reviews are ranked at all.
+ *
+ * The per-group numbers come from getAllGroupStats at startup, so group_stats is what survives a restart.
+ */
+public class GroupLeaderboard implements ReviewListener {
+
+    public static final int MIN_REVIEWS = 5;
+    private static final int PRIOR_WEIGHT = MIN_REVIEWS;
+    // Scores are recomputed once the overall average moved this far from the one they were computed with
+    private static final double PRIOR_DRIFT = 0.05;
+    // Until there are reviews: the middle of the scale
+    private static final double DEFAULT_PRIOR = 3.0;
+
+    public enum DobFilter { ANY, ASKS, DOES_NOT_ASK }
+
+    public record Ranked(String groupId, double score, int reviewCount, double averageRating, boolean likelyAgeGated) {}
+
+    // Best first; ties go to the group with more reviews, then shortcode order
+    private static final Comparator<Ranked> RANKING = Comparator
+            .comparingDouble(Ranked::score).reversed()
+            .thenComparing(Comparator.comparingInt(Ranked::reviewCount).reversed())
+            .thenComparing(Ranked::groupId);
+
+    private static final class Totals {
+        int reviewCount;
+        long ratingSum;
+        int dobYes;
+        // Its entry in the sorted sets, null while below MIN_REVIEWS
+        Ranked ranked;
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Totals> groups = new HashMap<>();
+    // One sorted set per filter, so a filtered query never skips over the other half
+    private final NavigableSet<Ranked> all = new TreeSet<>(RANKING);
+    private final NavigableSet<Ranked> asks = new TreeSet<>(RANKING);
+    private final NavigableSet<Ranked> doesNotAsk = new TreeSet<>(RANKING);
+    private long totalRatingSum;
+    private long totalReviews;
+    private double prior = DEFAULT_PRIOR;
+
+    // Startup load from the per-group numbers; call it before the first write
+    public void load(List<GroupStats> allStats) {
+        lock.writeLock().lock();
+        try {
+            for (GroupStats stats : allStats) {
+                if (stats.reviewCount() <= 0) continue;
+                Totals totals = groups.computeIfAbsent(stats.groupId(), k -> new Totals());
+                totals.reviewCount += stats.reviewCount();
+                totals.ratingSum += stats.ratingSum();
+                totals.dobYes += stats.dobYesCount();
+                totalReviews += stats.reviewCount();
+                totalRatingSum += stats.ratingSum();
+            }
+            rerankAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to limit ranked groups, best first, or worst first if worst is set.
+     */
+    public List<Ranked> top(int limit, boolean worst, DobFilter filter) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Ranked> set = switch (filter) {
+                case ANY -> all;
+                case ASKS -> asks;
+                case DOES_NOT_ASK -> doesNotAsk;
+            };
+            List<Ranked> result = new ArrayList<>(Math.min(limit, set.size()));
+            Iterator<Ranked> it = worst ? set.descendingIterator() : set.iterator();
+            while (it.hasNext() && result.size() < limit) {
+                result.add(it.next());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return all.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void reviewAdded(GroupReview review) {
+        change(review.getGroupId(), 1, review.getRating(), review.isAsksForDob() ? 1 : 0);
+    }
+
+    @Override
+    public void reviewUpdated(GroupReview before, GroupReview after) {
+        change(after.getGroupId(), 0, after.getRating() - before.getRating(),
+                (after.isAsksForDob() ? 1 : 0) - (before.isAsksForDob() ? 1 : 0));
+    }
+
+    @Override
+    public void reviewRemoved(GroupReview review) {
+        change(review.getGroupId(), -1, -review.getRating(), review.isAsksForDob() ? -1 : 0);
+    }
+
+    private void change(String groupId, int reviews, long ratingSum, int dobYes) {
+        lock.writeLock().lock();
+        try {
+            Totals totals = groups.get(groupId);
+            if (totals == null) {
+                // Unknown group: only a first review adds it
+                if (reviews <= 0) return;
+                totals = new Totals();
+                groups.put(groupId, totals);
+            }
+            unrank(totals);
+            totals.reviewCount += reviews;
+            totals.ratingSum += ratingSum;
+            totals.dobYes += dobYes;
+            totalReviews += reviews;
+            totalRatingSum += ratingSum;
+
+            if (totals.reviewCount <= 0) {
+                groups.remove(groupId);
+            } else {
+                rank(groupId, totals);
+            }
+
+            // Every score depends on the overall average; re-sort once it has moved noticeably
+            if (Math.abs(currentPrior() - prior) > PRIOR_DRIFT) {
+                rerankAll();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private double currentPrior() {
+        return totalReviews > 0 ? (double) totalRatingSum / totalReviews : DEFAULT_PRIOR;
+    }
+
+    private void rerankAll() {
+        prior = currentPrior();
+        all.clear();
+        asks.clear();
+        doesNotAsk.clear();
+        groups.forEach(this::rank);
+    }
+
+    private void rank(String groupId, Totals totals) {
+        if (totals.reviewCount < MIN_REVIEWS) {
+            totals.ranked = null;
+            return;
+        }
+        double score = (PRIOR_WEIGHT * prior + totals.ratingSum) / (PRIOR_WEIGHT + totals.reviewCount);
+        boolean gated = (double) totals.dobYes / totals.reviewCount > 0.5; // as GroupStats.isLikelyAgeGated
+        totals.ranked = new Ranked(groupId, score, totals.reviewCount, (double) totals.ratingSum / totals.reviewCount, gated);
+        all.add(totals.ranked);
+        (gated ? asks : doesNotAsk).add(totals.ranked);
+    }
+
+    private void unrank(Totals totals) {
+        if (totals.ranked == null) return;
+        all.remove(totals.ranked);
+        (totals.ranked.likelyAgeGated() ? asks : doesNotAsk).remove(totals.ranked);
+        totals.ranked = null;
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie over the shortcodes of every group that has reviews, for group_shortcode autocomplete.
+ * Matching ignores case. Each group carries its review count and rating sum, so the most reviewed
+ * matches come first and the suggestions can show the average without asking the database.
+ *
+ * Every node keeps the best TOP_K groups of its subtree, so a lookup is a walk down the prefix and
+ * never a scan. A write only recomputes those lists along the path of the changed shortcode.
+ */
+public class GroupPrefixIndex implements ReviewListener {
+
+    // Discord shows at most 25 autocomplete choices
+    public static final int TOP_K = 25;
+
+    public record Match(String shortCode, int reviewCount, double averageRating) {}
+
+    // Most reviewed first, ties in shortcode order
+    private static final Comparator<Match> RANKING = Comparator
+            .comparingInt(Match::reviewCount).reversed()
+            .thenComparing(Match::shortCode);
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+        // Set on the node that ends a shortcode, while the group has at least one review
+        String shortCode;
+        int reviewCount;
+        long ratingSum;
+        // Best TOP_K groups of this subtree, in RANKING order
+        List<Match> top = List.of();
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private int groups;
+
+    // Startup load from the per-group numbers; call it before the first write
+    public void load(List<GroupStats> allStats) {
+        lock.writeLock().lock();
+        try {
+            for (GroupStats stats : allStats) {
+                if (stats.reviewCount() > 0) {
+                    Node node = insert(stats.groupId());
+                    node.reviewCount += stats.reviewCount();
+                    node.ratingSum += stats.ratingSum();
+                }
+            }
+            rebuild(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to limit (at most TOP_K) groups whose shortcode starts with prefix, best ranked first.
+     */
+    public List<Match> complete(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            String key = prefix.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) return List.of();
+            return node.top.subList(0, Math.min(limit, node.top.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return groups;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Trie nodes below the root; empty branches are pruned, so this stays proportional to the shortcodes
+    int nodes() {
+        lock.readLock().lock();
+        try {
+            return count(root) - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int count(Node node) {
+        int nodes = 1;
+        for (Node child : node.children.values()) {
+            nodes += count(child);
+        }
+        return nodes;
+    }
+
+    @Override
+    public void reviewAdded(GroupReview review) {
+        change(review.getGroupId(), 1, review.getRating());
+    }
+
+    @Override
+    public void reviewUpdated(GroupReview before, GroupReview after) {
+        change(after.getGroupId(), 0, after.getRating() - before.getRating());
+    }
+
+    @Override
+    public void reviewRemoved(GroupReview review) {
+        change(review.getGroupId(), -1, -review.getRating());
+    }
+
+    /**
+     * Applies a change to the numbers of a group: it enters the trie with its first review and
+     * leaves it with its last one. Then the top lists on its path are brought up to date.
+     */
+    private void change(String shortCode, int reviews, long ratingSum) {
+        lock.writeLock().lock();
+        try {
+            String key = shortCode.toLowerCase(Locale.ROOT);
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node next = path[i].children.get(key.charAt(i));
+                if (next == null) {
+                    // Unknown group: only a first review adds it
+                    if (reviews <= 0) return;
+                    next = new Node();
+                    path[i].children.put(key.charAt(i), next);
+                }
+                path[i + 1] = next;
+            }
+
+            Node node = path[key.length()];
+            if (node.shortCode == null) {
+                if (reviews <= 0) return;
+                node.shortCode = shortCode;
+                groups++;
+            }
+            node.reviewCount += reviews;
+            node.ratingSum += ratingSum;
+
+            if (node.reviewCount <= 0) {
+                node.shortCode = null;
+                node.reviewCount = 0;
+                node.ratingSum = 0;
+                groups--;
+            }
+
+            for (int i = key.length(); i >= 0; i--) {
+                Node current = path[i];
+                if (i > 0 && current.shortCode == null && current.children.isEmpty()) {
+                    // Nothing left below: prune instead of keeping an empty branch
+                    path[i - 1].children.remove(key.charAt(i - 1));
+                } else {
+                    current.top = computeTop(current);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Node insert(String shortCode) {
+        Node node = root;
+        String key = shortCode.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        }
+        if (node.shortCode == null) {
+            node.shortCode = shortCode;
+            groups++;
+        }
+        return node;
+    }
+
+    // Bottom-up, after a bulk load
+    private static void rebuild(Node node) {
+        for (Node child : node.children.values()) {
+            rebuild(child);
+        }
+        node.top = computeTop(node);
+    }
+
+    // Merges the node's own group with the top lists of its children
+    private static List<Match> computeTop(Node node) {
+        List<Match> candidates = new ArrayList<>();
+        if (node.shortCode != null) {
+            candidates.add(new Match(node.shortCode, node.reviewCount, (double) node.ratingSum / node.reviewCount));
+        }
+        for (Node child : node.children.values()) {
+            candidates.addAll(child.top);
+        }
+        candidates.sort(RANKING);
+        return List.copyOf(candidates.subList(0, Math.min(TOP_K, candidates.size())));
+    }
+}
@@ -0,0 +1,127 @@
+import io.github.vrchatapi.ApiException;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the group index fresh in the background, so review pages never have to wait for VRChat.
+ * Every run walks all groups that have reviews, most viewed first, and refreshes those whose entry is
+ * older than maxAge: at most budget VRChat requests per run, concurrency of refreshes at a time.
+ * A refresh is one request for an indexed group but up to three (the paged search) for a new one, so each
+ * refresh reserves its worst case from the budget and gives back what it didn't use.
+ * A run stops early when the VRChat gateway turns requests away.
+ */
+public class GroupRefresher {
+
+    private final GroupDirectory directory;
+    private final ReviewRepository repo;
+    private final int budget;
+    private final int concurrency;
+    private final Duration maxAge;
+
+    // Decayed view counts: halved every run, so recent popularity counts most. Only touched by the refresh thread.
+    private final Map<String, Double> popularity = new HashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public GroupRefresher(GroupDirectory directory, ReviewRepository repo, int budget, int concurrency, Duration maxAge) {
+        this.directory = directory;
+        this.repo = repo;
+        this.budget = budget;
+        this.concurrency = concurrency;
+        this.maxAge = maxAge;
+    }
+
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "group-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+        // First run right away: groups reviewed before the index existed are filled in
+        scheduler.scheduleWithFixedDelay(this::runSafely, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            System.err.println("Group refresh failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    void run() {
+        long startedAt = System.nanoTime();
+
+        popularity.replaceAll((shortCode, score) -> score / 2);
+        directory.takeViews().forEach((shortCode, count) -> popularity.merge(shortCode, (double) count, Double::sum));
+        popularity.values().removeIf(score -> score < 0.5);
+
+        List<String> groups = repo.getAllGroupStats().stream()
+                .map(GroupStats::groupId)
+                .sorted(Comparator.comparingDouble((String shortCode) -> popularity.getOrDefault(shortCode, 0.0)).reversed())
+                .toList();
+
+        // One bulk read instead of an index lookup per reviewed group
+        Map<String, Long> refreshedAt = directory.refreshedAt(groups);
+        long staleBefore = System.currentTimeMillis() - maxAge.toMillis();
+
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicBoolean backedOff = new AtomicBoolean();
+        AtomicInteger refreshed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger requests = new AtomicInteger();
+        // VRChat calls made so far plus the unused worst case of the refreshes still running
+        AtomicInteger reserved = new AtomicInteger();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String shortCode : groups) {
+                if (reserved.get() >= budget || backedOff.get()) break;
+                Long lastRefresh = refreshedAt.get(shortCode);
+                if (lastRefresh != null && lastRefresh >= staleBefore) continue;
+
+                int worstCase = GroupDirectory.maxRefreshCalls(lastRefresh != null);
+                // Only this thread reserves, so the budget can't be overshot; a cheaper group further down may still fit
+                if (reserved.get() + worstCase > budget) continue;
+
+                permits.acquireUninterruptibly();
+                reserved.addAndGet(worstCase);
+                workers.execute(() -> {
+                    AtomicInteger calls = new AtomicInteger();
+                    try {
+                        directory.refresh(shortCode, calls::incrementAndGet);
+                        refreshed.incrementAndGet();
+                    } catch (VRChatGateway.UnavailableException e) {
+                        // Rate limit or open circuit: interactions get the remaining requests, the next run continues
+                        backedOff.set(true);
+                    } catch (ApiException e) {
+                        failed.incrementAndGet();
+                        System.err.println("Could not refresh group " + shortCode + ": " + e.getMessage());
+                    } finally {
+                        requests.addAndGet(calls.get());
+                        reserved.addAndGet(calls.get() - worstCase);
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        Metrics.increment("vrcbot_group_refresh_runs_total", Metrics.label("result", backedOff.get() ? "backed_off" : "completed"));
+        System.out.println("Group refresh: " + refreshed.get() + " refreshed, " + failed.get() + " failed, "
+                + requests.get() + " VRChat requests, "
+                + groups.size() + " reviewed groups" + (backedOff.get() ? ", stopped early by VRChat backoff" : "")
+                + " (" + (System.nanoTime() - startedAt) / 1_000_000 + " ms)");
+    }
+}
@@ -0,0 +1,35 @@
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Local index of VRChat groups by "shortCode.discriminator", so a shortcode has to be searched for only once.
+ * After that the group is refreshed directly by its ID.
+ * Implementations: JdbcGroupRepository (MariaDB) and LogGroupRepository (embedded log).
+ */
+public interface GroupRepository {
+
+    // An indexed group and when its metadata was last fetched from VRChat (epoch millis)
+    record IndexedGroup(GroupInfo group, long refreshedAt) {}
+
+    /**
+     * Returns the indexed group for a "shortCode.discriminator", or null if it was never resolved.
+     */
+    IndexedGroup findGroup(String shortCode);
+
+    /**
+     * refreshedAt of the indexed groups among shortCodes, read in bulk (GroupRefresher checks every reviewed group).
+     * Groups that were never resolved are missing from the map.
+     */
+    Map<String, Long> refreshedAt(Collection<String> shortCodes);
+
+    /**
+     * Inserts or refreshes a group, with the current time as refreshedAt.
+     * If the owner changed, the is_owner_review flag of the group's reviews is recomputed with it.
+     */
+    void saveGroup(GroupInfo group);
+
+    /**
+     * Removes a group from the index; its reviews lose their owner flag, as the owner is no longer known.
+     */
+    void removeGroup(String shortCode);
+}
@@ -7,14 +7,20 @@ public class GroupReview {
     private boolean asksForDob; // New field
     private String comment;
     private Timestamp createdAt;
+    private boolean ownerReview; // Reviewer's linked VRChat account owns the group, kept up to date by the repositories
 
     public GroupReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment, Timestamp createdAt) {
+        this(groupId, discordUserId, rating, asksForDob, comment, createdAt, false);
+    }
+
+    public GroupReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment, Timestamp createdAt, boolean ownerReview) {
         this.groupId = groupId;
         this.discordUserId = discordUserId;
         this.rating = rating;
         this.asksForDob = asksForDob;
         this.comment = comment;
         this.createdAt = createdAt;
+        this.ownerReview = ownerReview;
     }
 
     // Getters
@@ -24,4 +30,5 @@ public class GroupReview {
     public String getComment() { return comment; }
     public String getDiscordUserId() { return discordUserId; }
     public Timestamp getCreatedAt() { return createdAt; }
+    public boolean isOwnerReview() { return ownerReview; }
 }
@@ -0,0 +1,19 @@
+/**
+ * Aggregated review numbers for one group, as kept in the group_stats table.
+ * starCounts[i] is the number of reviews with a rating of i + 1.
+ */
+public record GroupStats(String groupId, long ratingSum, int reviewCount, int dobYesCount, int[] starCounts) {
+
+    public static GroupStats empty(String groupId) {
+        return new GroupStats(groupId, 0, 0, 0, new int[5]);
+    }
+
+    public double averageRating() {
+        return reviewCount > 0 ? (double) ratingSum / reviewCount : 0.0;
+    }
+
+    // If more than 50% of reviewers say it asks for DOB, we treat it as age-gated
+    public boolean isLikelyAgeGated() {
+        return reviewCount > 0 && ((double) dobYesCount / reviewCount) > 0.5;
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs interaction handlers on virtual threads, so blocking JDBC and VRChat calls never hold up
+ * JDA's gateway thread or a small carrier pool.
+ * Blocking I/O goes through bulkheads: at most dbConcurrency database calls (the Hikari pool size)
+ * and vrcConcurrency VRChat calls are in flight at once, everything else queues on a permit.
+ */
+public class InteractionExecutor {
+
+    @FunctionalInterface
+    public interface IoCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface IoTask<E extends Exception> {
+        void run() throws E;
+    }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("interaction-", 0).factory());
+    private final Semaphore dbPermits;
+    private final Semaphore vrcPermits;
+
+    public InteractionExecutor(int dbConcurrency, int vrcConcurrency) {
+        this.dbPermits = new Semaphore(dbConcurrency, true);
+        this.vrcPermits = new Semaphore(vrcConcurrency, true);
+    }
+
+    /**
+     * Runs a handler on its own virtual thread. Anything it throws is logged, not propagated.
+     */
+    public void dispatch(String name, Runnable handler) {
+        executor.execute(() -> {
+            try {
+                handler.run();
+            } catch (Exception e) {
+                System.err.println("Interaction " + name + " failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // Database bulkhead
+    public <T, E extends Exception> T db(IoCall<T, E> call) throws E {
+        return withPermit(dbPermits, call);
+    }
+
+    public <E extends Exception> void dbRun(IoTask<E> task) throws E {
+        withPermit(dbPermits, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // VRChat API bulkhead
+    public <T, E extends Exception> T vrc(IoCall<T, E> call) throws E {
+        return withPermit(vrcPermits, call);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T, E extends Exception> T withPermit(Semaphore permits, IoCall<T, E> call) throws E {
+        permits.acquireUninterruptibly();
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per Discord user and per group, checked before an interaction reaches the database or VRChat.
+ * One user clicking through pages as fast as possible, or many users hammering the same group, is cut off here
+ * instead of queueing up for the Hikari pool and the VRChat quota.
+ *
+ * Runs on the JDA gateway thread, so it never blocks: every bucket is a single AtomicLong updated with CAS.
+ */
+public class InteractionThrottle {
+
+    /**
+     * Token buckets for any number of keys. Each bucket stores the time at which it will be full again
+     * ("theoretical arrival time"): taking a token pushes that time one interval further, and a request
+     * is allowed while the time stays within burst intervals from now. This is the same as a token
+     * bucket, but the whole state fits into one long.
+     */
+    static class KeyedLimiter {
+        // Idle buckets are swept once this many keys are tracked
+        private static final int SWEEP_THRESHOLD = 10_000;
+
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final LongSupplier nanoTime;
+        // Time of the last sweep; starts one interval back, as nanoTime may be negative
+        private final AtomicLong sweeping;
+
+        KeyedLimiter(double perSecond, int burst, LongSupplier nanoTime) {
+            this.intervalNanos = (long) (1_000_000_000L / perSecond);
+            this.burstNanos = intervalNanos * burst;
+            this.nanoTime = nanoTime;
+            this.sweeping = new AtomicLong(nanoTime.getAsLong() - intervalNanos);
+        }
+
+        boolean tryAcquire(String key) {
+            long now = nanoTime.getAsLong();
+            AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            while (true) {
+                long fullAt = bucket.get();
+                long next = Math.max(fullAt, now) + intervalNanos;
+                if (next - now > burstNanos) {
+                    return false;
+                }
+                if (bucket.compareAndSet(fullAt, next)) {
+                    break;
+                }
+            }
+            if (buckets.size() > SWEEP_THRESHOLD) sweep(now);
+            return true;
+        }
+
+        // Drops buckets that have refilled completely; a missing bucket behaves exactly like a full one.
+        // A request racing with the removal may get one token for free, which doesn't matter here.
+        private void sweep(long now) {
+            long last = sweeping.get();
+            // At most one sweep per interval, and only one thread doing it
+            if (now - last < intervalNanos || !sweeping.compareAndSet(last, now)) return;
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+
+        int size() {
+            return buckets.size();
+        }
+    }
+
+    private final KeyedLimiter users;
+    private final KeyedLimiter groups;
+
+    /**
+     * @param userRate   interactions per second a single user may sustain
+     * @param userBurst  interactions a user may fire at once after a pause
+     * @param groupRate  interactions per second for a single group, over all users
+     * @param groupBurst interactions a group may get at once
+     */
+    public InteractionThrottle(double userRate, int userBurst, double groupRate, int groupBurst) {
+        this(userRate, userBurst, groupRate, groupBurst, System::nanoTime);
+    }
+
+    // Tests pass a fake clock
+    InteractionThrottle(double userRate, int userBurst, double groupRate, int groupBurst, LongSupplier nanoTime) {
+        this.users = new KeyedLimiter(userRate, userBurst, nanoTime);
+        this.groups = new KeyedLimiter(groupRate, groupBurst, nanoTime);
+
+        Metrics.gauge("vrcbot_throttle_tracked_users", "Users with a partly used rate limit bucket", users::size);
+        Metrics.gauge("vrcbot_throttle_tracked_groups", "Groups with a partly used rate limit bucket", groups::size);
+    }
+
+    /**
+     * Takes a token for the user and, if the interaction is about a group, one for the group.
+     * @param groupId the group shortcode, or null if the interaction isn't about one group
+     * @return false if either limit is exhausted; the interaction should be rejected without further work
+     */
+    public boolean allow(String discordUserId, String groupId) {
+        if (!users.tryAcquire(discordUserId)) {
+            Metrics.increment("vrcbot_throttled_total", Metrics.label("limit", "user"));
+            return false;
+        }
+        if (groupId != null && !groups.tryAcquire(groupId)) {
+            Metrics.increment("vrcbot_throttled_total", Metrics.label("limit", "group"));
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * GroupRepository on MariaDB (table group_index).
+ */
+public class JdbcGroupRepository implements GroupRepository {
+
+    // Shared with SchemaMigrator.selfCheck, which EXPLAINs them
+    static final String FIND_SQL = "SELECT * FROM group_index WHERE short_code = ?";
+    static final String LOCK_OWNER_SQL = "SELECT owner_id FROM group_index WHERE short_code = ? FOR UPDATE";
+    static final String SAVE_SQL = "INSERT INTO group_index (short_code, group_id, name, owner_id) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE group_id = ?, name = ?, owner_id = ?, refreshed_at = CURRENT_TIMESTAMP";
+    // Short codes per refreshedAt statement; a few thousand reviewed groups still take only a few round trips
+    static final int REFRESHED_AT_CHUNK = 1_000;
+    static final String REMOVE_SQL = "DELETE FROM group_index WHERE short_code = ?";
+    static final String OWNER_FLAGS_SQL = "UPDATE group_reviews r LEFT JOIN user_links l ON l.discord_user_id = r.discord_user_id " +
+            "SET r.is_owner_review = COALESCE(l.vrc_user_id = ?, FALSE) WHERE r.group_id = ?";
+
+    private final DatabaseManager dbManager;
+
+    public JdbcGroupRepository(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    @Override
+    public IndexedGroup findGroup(String shortCode) {
+        return Metrics.query("GroupRepository.findGroup", null, () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(FIND_SQL)) {
+
+                stmt.setString(1, shortCode);
+                ResultSet rs = stmt.executeQuery();
+
+                if (rs.next()) {
+                    GroupInfo group = new GroupInfo(
+                            rs.getString("short_code"),
+                            rs.getString("group_id"),
+                            rs.getString("name"),
+                            rs.getString("owner_id")
+                    );
+                    return new IndexedGroup(group, rs.getTimestamp("refreshed_at").getTime());
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Long> refreshedAt(Collection<String> shortCodes) {
+        Map<String, Long> refreshedAt = new HashMap<>();
+        List<String> all = new ArrayList<>(shortCodes);
+
+        return Metrics.query("GroupRepository.refreshedAt", refreshedAt, () -> {
+            try (Connection conn = dbManager.getConnection()) {
+                for (int from = 0; from < all.size(); from += REFRESHED_AT_CHUNK) {
+                    List<String> chunk = all.subList(from, Math.min(all.size(), from + REFRESHED_AT_CHUNK));
+                    try (PreparedStatement stmt = conn.prepareStatement(refreshedAtSql(chunk.size()))) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            stmt.setString(i + 1, chunk.get(i));
+                        }
+                        ResultSet rs = stmt.executeQuery();
+                        while (rs.next()) {
+                            refreshedAt.put(rs.getString("short_code"), rs.getTimestamp("refreshed_at").getTime());
+                        }
+                    }
+                }
+            }
+            return refreshedAt;
+        });
+    }
+
+    static String refreshedAtSql(int n) {
+        return "SELECT short_code, refreshed_at FROM group_index WHERE short_code IN ("
+                + String.join(", ", Collections.nCopies(n, "?")) + ")";
+    }
+
+    @Override
+    public void saveGroup(GroupInfo group) {
+        Metrics.update("GroupRepository.saveGroup", () -> {
+            try (Connection conn = dbManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement select = conn.prepareStatement(LOCK_OWNER_SQL);
+                     PreparedStatement stmt = conn.prepareStatement(SAVE_SQL)) {
+
+                    select.setString(1, group.shortCode());
+                    ResultSet rs = select.executeQuery();
+                    boolean known = rs.next();
+                    String previousOwner = known ? rs.getString("owner_id") : null;
+
+                    stmt.setString(1, group.shortCode());
+                    stmt.setString(2, group.id());
+                    stmt.setString(3, group.name());
+                    stmt.setString(4, group.ownerId());
+
+                    // Update values if exists
+                    stmt.setString(5, group.id());
+                    stmt.setString(6, group.name());
+                    stmt.setString(7, group.ownerId());
+
+                    stmt.executeUpdate();
+
+                    // Most refreshes only touch the name; the reviews only need a look when the owner moved
+                    if (!known || !Objects.equals(previousOwner, group.ownerId())) {
+                        updateOwnerFlags(conn, group.shortCode(), group.ownerId());
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void removeGroup(String shortCode) {
+        Metrics.update("GroupRepository.removeGroup", () -> {
+            try (Connection conn = dbManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(REMOVE_SQL)) {
+                    stmt.setString(1, shortCode);
+                    stmt.executeUpdate();
+
+                    updateOwnerFlags(conn, shortCode, null);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    // Recomputes is_owner_review for every review of a group against its (new) owner, null clears them all
+    private static void updateOwnerFlags(Connection conn, String shortCode, String ownerId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(OWNER_FLAGS_SQL)) {
+            stmt.setString(1, ownerId);
+            stmt.setString(2, shortCode);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,545 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * ReviewRepository on MariaDB. group_stats is kept in sync inside the same transactions.
+ */
+public class JdbcReviewRepository implements ReviewRepository {
+
+    static final String GROUP_STATS_DELTA_SQL = "INSERT INTO group_stats " +
+            "(group_id, rating_sum, review_count, dob_yes_count, stars_1, stars_2, stars_3, stars_4, stars_5) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "rating_sum = rating_sum + VALUES(rating_sum), " +
+            "review_count = review_count + VALUES(review_count), " +
+            "dob_yes_count = dob_yes_count + VALUES(dob_yes_count), " +
+            "stars_1 = stars_1 + VALUES(stars_1), " +
+            "stars_2 = stars_2 + VALUES(stars_2), " +
+            "stars_3 = stars_3 + VALUES(stars_3), " +
+            "stars_4 = stars_4 + VALUES(stars_4), " +
+            "stars_5 = stars_5 + VALUES(stars_5)";
+
+    // is_owner_review of a new row: the reviewer's linked VRChat account owns the indexed group. Binds discord user, group.
+    static final String OWNER_FLAG_SQL = "COALESCE((SELECT g.owner_id = l.vrc_user_id FROM group_index g " +
+            "JOIN user_links l ON l.discord_user_id = ? WHERE g.short_code = ?), FALSE)";
+
+    // The statements below are also EXPLAINed by SchemaMigrator.selfCheck, so they are shared from here
+    static final String UPSERT_SQL = "INSERT INTO group_reviews (group_id, discord_user_id, rating, asks_for_dob, comment, is_owner_review) " +
+            "VALUES (?, ?, ?, ?, ?, " + OWNER_FLAG_SQL + ") " +
+            "ON DUPLICATE KEY UPDATE rating = ?, asks_for_dob = ?, comment = ?, is_owner_review = VALUES(is_owner_review)";
+    // Link check and duplicate check are part of the insert itself: 0 rows if the user is not linked or
+    // already reviewed the group (the no-op update changes nothing). Not INSERT IGNORE, which would also
+    // turn truncation and bad values into warnings and commit.
+    static final String RATE_SQL = "INSERT INTO group_reviews (group_id, discord_user_id, rating, asks_for_dob, comment, is_owner_review) " +
+            "SELECT ?, ?, ?, ?, ?, COALESCE((SELECT owner_id FROM group_index WHERE short_code = ?) = vrc_user_id, FALSE) " +
+            "FROM user_links WHERE discord_user_id = ? " +
+            "ON DUPLICATE KEY UPDATE group_id = group_id";
+    static final String LINKED_SQL = "SELECT 1 FROM user_links WHERE discord_user_id = ?";
+    static final String GROUP_STATS_SQL = "SELECT * FROM group_stats WHERE group_id = ?";
+    static final String ALL_GROUP_STATS_SQL = "SELECT * FROM group_stats WHERE review_count > 0";
+    static final String ALL_REVIEWS_SQL = "SELECT * FROM group_reviews";
+    static final String REVIEWS_SINCE_SQL = "SELECT * FROM group_reviews WHERE created_at >= ? ORDER BY created_at";
+    static final String REVIEWS_OF_GROUP_SQL = "SELECT * FROM group_reviews WHERE group_id = ? ORDER BY created_at DESC";
+    static final String FIRST_PAGE_SQL = "SELECT * FROM group_reviews WHERE group_id = ? " +
+            "ORDER BY created_at DESC, discord_user_id DESC LIMIT ?";
+    static final String PAGE_AFTER_SQL = "SELECT * FROM group_reviews WHERE group_id = ? " +
+            "AND (created_at < ? OR (created_at = ? AND discord_user_id < ?)) " +
+            "ORDER BY created_at DESC, discord_user_id DESC LIMIT ?";
+    static final String PAGE_BEFORE_SQL = "SELECT * FROM group_reviews WHERE group_id = ? " +
+            "AND (created_at > ? OR (created_at = ? AND discord_user_id > ?)) " +
+            "ORDER BY created_at ASC, discord_user_id ASC LIMIT ?";
+    static final String HAS_REVIEWED_SQL = "SELECT COUNT(*) as review_count FROM group_reviews WHERE group_id = ? AND discord_user_id = ?";
+    static final String USER_REVIEW_SQL = "SELECT * FROM group_reviews WHERE group_id = ? AND discord_user_id = ?";
+    static final String LOCK_REVIEW_SQL = USER_REVIEW_SQL + " FOR UPDATE";
+    static final String REVIEWS_OF_USER_SQL = "SELECT * FROM group_reviews WHERE discord_user_id = ? ORDER BY created_at DESC";
+
+    private final DatabaseManager dbManager;
+    // null unless WRITE_BEHIND is on; then upserts, edits and ratings are queued and batched
+    private final ReviewWriteBehind writeBehind;
+
+    public JdbcReviewRepository(DatabaseManager dbManager) {
+        this(dbManager, null);
+    }
+
+    public JdbcReviewRepository(DatabaseManager dbManager, ReviewWriteBehind writeBehind) {
+        this.dbManager = dbManager;
+        this.writeBehind = writeBehind;
+    }
+
+    // 1. Add or Update a Review
+    @Override
+    public void upsertReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        if (writeBehind != null) {
+            writeBehind.upsert(groupId, discordUserId, rating, asksForDob, comment).join();
+        } else {
+            upsertNow(groupId, discordUserId, rating, asksForDob, comment);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ReviewChange> upsertReviewAsync(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        if (writeBehind != null) {
+            return writeBehind.upsert(groupId, discordUserId, rating, asksForDob, comment);
+        }
+        return CompletableFuture.completedFuture(upsertNow(groupId, discordUserId, rating, asksForDob, comment));
+    }
+
+    private ReviewChange upsertNow(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return Metrics.query("ReviewRepository.upsertReview", ReviewChange.FAILED, () -> {
+            try (Connection conn = dbManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+                    GroupReview previous = lockReview(conn, groupId, discordUserId);
+
+                    // Insert Parameters
+                    stmt.setString(1, groupId);
+                    stmt.setString(2, discordUserId);
+                    stmt.setInt(3, rating);
+                    stmt.setBoolean(4, asksForDob); // Set the boolean
+                    stmt.setString(5, comment);
+                    stmt.setString(6, discordUserId);
+                    stmt.setString(7, groupId);
+
+                    // Update Parameters (if entry exists)
+                    stmt.setInt(8, rating);
+                    stmt.setBoolean(9, asksForDob); // Update the boolean
+                    stmt.setString(10, comment);
+
+                    stmt.executeUpdate();
+
+                    if (previous != null) {
+                        adjustGroupStats(conn, groupId, previous.getRating(), previous.isAsksForDob(), rating, asksForDob);
+                    } else {
+                        adjustGroupStats(conn, groupId, null, null, rating, asksForDob);
+                    }
+                    // Read back for created_at and the owner flag, which the database sets
+                    GroupReview stored = lockReview(conn, groupId, discordUserId);
+                    conn.commit();
+                    return ReviewChange.of(previous, stored);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * The whole /rate-group write on one connection and in one transaction:
+     * inserts the review only if the user is linked and has not reviewed the group yet,
+     * updates group_stats and reads the new stats back.
+     */
+    @Override
+    public RateResult rateGroup(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        if (writeBehind != null) {
+            return writeBehind.rate(groupId, discordUserId, rating, asksForDob, comment).join();
+        }
+        return rateNow(groupId, discordUserId, rating, asksForDob, comment);
+    }
+
+    @Override
+    public CompletableFuture<RateResult> rateGroupAsync(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        if (writeBehind != null) {
+            return writeBehind.rate(groupId, discordUserId, rating, asksForDob, comment);
+        }
+        return CompletableFuture.completedFuture(rateNow(groupId, discordUserId, rating, asksForDob, comment));
+    }
+
+    private RateResult rateNow(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return Metrics.query("ReviewRepository.rateGroup", RateResult.of(RateResult.Status.FAILED), () -> {
+            try (Connection conn = dbManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement insert = conn.prepareStatement(RATE_SQL)) {
+                    insert.setString(1, groupId);
+                    insert.setString(2, discordUserId);
+                    insert.setInt(3, rating);
+                    insert.setBoolean(4, asksForDob);
+                    insert.setString(5, comment);
+                    insert.setString(6, groupId);
+                    insert.setString(7, discordUserId);
+
+                    if (insert.executeUpdate() == 0) {
+                        // Nothing inserted: find out which check failed (only on this rare path)
+                        conn.rollback();
+                        try (PreparedStatement linked = conn.prepareStatement(LINKED_SQL)) {
+                            linked.setString(1, discordUserId);
+                            ResultSet rs = linked.executeQuery();
+                            return RateResult.of(rs.next() ? RateResult.Status.ALREADY_REVIEWED : RateResult.Status.NOT_LINKED);
+                        }
+                    }
+
+                    adjustGroupStats(conn, groupId, null, null, rating, asksForDob);
+                    GroupStats stats = readGroupStats(conn, groupId);
+                    GroupReview stored = lockReview(conn, groupId, discordUserId);
+                    conn.commit();
+                    return new RateResult(RateResult.Status.SAVED, stats, ReviewChange.of(null, stored));
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    // 2. Get the summary numbers of a group (single primary key lookup)
+    @Override
+    public GroupStats getGroupStats(String groupId) {
+        return Metrics.query("ReviewRepository.getGroupStats", GroupStats.empty(groupId), () -> {
+            try (Connection conn = dbManager.getConnection()) {
+                return readGroupStats(conn, groupId);
+            }
+        });
+    }
+
+    private GroupStats readGroupStats(Connection conn, String groupId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(GROUP_STATS_SQL)) {
+            stmt.setString(1, groupId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return mapGroupStats(rs);
+            }
+        }
+        return GroupStats.empty(groupId);
+    }
+
+    // Full scan of group_stats, on purpose (startup only); SchemaMigrator's EXPLAIN check knows it scans
+    @Override
+    public List<GroupStats> getAllGroupStats() {
+        List<GroupStats> all = new ArrayList<>();
+        List<GroupStats> read = Metrics.query("ReviewRepository.getAllGroupStats", null, () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(ALL_GROUP_STATS_SQL)) {
+
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    all.add(mapGroupStats(rs));
+                }
+            }
+            return all;
+        });
+        if (read == null) throw new IllegalStateException("Could not read the group numbers");
+        return read;
+    }
+
+    @Override
+    public void forEachReview(Consumer<GroupReview> action) {
+        boolean read = Metrics.update("ReviewRepository.forEachReview", () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(ALL_REVIEWS_SQL)) {
+
+                // With a fetch size the driver streams the rows instead of buffering the whole table
+                stmt.setFetchSize(1_000);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    action.accept(mapReview(rs));
+                }
+            }
+        });
+        if (!read) throw new IllegalStateException("Could not read the reviews");
+    }
+
+    @Override
+    public void forEachReviewSince(Timestamp since, Consumer<GroupReview> action) {
+        boolean read = Metrics.update("ReviewRepository.forEachReviewSince", () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(REVIEWS_SINCE_SQL)) {
+
+                stmt.setTimestamp(1, since);
+                stmt.setFetchSize(1_000);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    action.accept(mapReview(rs));
+                }
+            }
+        });
+        if (!read) throw new IllegalStateException("Could not read the reviews since " + since);
+    }
+
+    static GroupReview mapReview(ResultSet rs) throws SQLException {
+        return new GroupReview(
+                rs.getString("group_id"),
+                rs.getString("discord_user_id"),
+                rs.getInt("rating"),
+                rs.getBoolean("asks_for_dob"),
+                rs.getString("comment"),
+                rs.getTimestamp("created_at"),
+                rs.getBoolean("is_owner_review")
+        );
+    }
+
+    private static GroupStats mapGroupStats(ResultSet rs) throws SQLException {
+        return new GroupStats(
+                rs.getString("group_id"),
+                rs.getLong("rating_sum"),
+                rs.getInt("review_count"),
+                rs.getInt("dob_yes_count"),
+                new int[] {
+                        rs.getInt("stars_1"),
+                        rs.getInt("stars_2"),
+                        rs.getInt("stars_3"),
+                        rs.getInt("stars_4"),
+                        rs.getInt("stars_5")
+                }
+        );
+    }
+
+    // 4. Get Recent Reviews
+    @Override
+    public List<GroupReview> getAllReviews(String groupId) {
+        List<GroupReview> reviews = new ArrayList<>();
+        return Metrics.query("ReviewRepository.getAllReviews", reviews, () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(REVIEWS_OF_GROUP_SQL)) {
+
+                stmt.setString(1, groupId);
+                ResultSet rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    reviews.add(mapReview(rs));
+                }
+            }
+            return reviews;
+        });
+    }
+
+    /**
+     * Keyset pagination: returns up to limit reviews that come after the cursor in listing order
+     * (newest first). A null cursor starts at the newest review of the group.
+     */
+    @Override
+    public List<GroupReview> getReviewsAfter(String groupId, ReviewCursor cursor, int limit) {
+        return getReviewsPage("ReviewRepository.getReviewsAfter", cursor == null ? FIRST_PAGE_SQL : PAGE_AFTER_SQL, groupId, cursor, limit);
+    }
+
+    /**
+     * Keyset pagination backwards: returns up to limit reviews that come right before the cursor
+     * in listing order, closest one first.
+     */
+    @Override
+    public List<GroupReview> getReviewsBefore(String groupId, ReviewCursor cursor, int limit) {
+        return getReviewsPage("ReviewRepository.getReviewsBefore", PAGE_BEFORE_SQL, groupId, cursor, limit);
+    }
+
+    private List<GroupReview> getReviewsPage(String query, String sql, String groupId, ReviewCursor cursor, int limit) {
+        List<GroupReview> reviews = new ArrayList<>();
+
+        return Metrics.query(query, reviews, () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+                int i = 1;
+                stmt.setString(i++, groupId);
+                if (cursor != null) {
+                    stmt.setTimestamp(i++, cursor.createdAt());
+                    stmt.setTimestamp(i++, cursor.createdAt());
+                    stmt.setString(i++, cursor.discordUserId());
+                }
+                stmt.setInt(i, limit);
+                ResultSet rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    reviews.add(mapReview(rs));
+                }
+            }
+            return reviews;
+        });
+    }
+
+    @Override
+    public boolean hasUserReviewed(String groupId, String discordUserId) {
+        return Metrics.query("ReviewRepository.hasUserReviewed", false, () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(HAS_REVIEWED_SQL)) {
+
+                stmt.setString(1, groupId);
+                stmt.setString(2, discordUserId);
+                ResultSet rs = stmt.executeQuery();
+
+                if (rs.next()) {
+                    return rs.getInt("review_count") > 0;
+                }
+            }
+            return false;
+        });
+    }
+
+    // Get a specific user's review for a group
+    @Override
+    public GroupReview getUserReview(String groupId, String discordUserId) {
+        return Metrics.query("ReviewRepository.getUserReview", null, () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(USER_REVIEW_SQL)) {
+
+                stmt.setString(1, groupId);
+                stmt.setString(2, discordUserId);
+                ResultSet rs = stmt.executeQuery();
+
+                if (rs.next()) {
+                    return mapReview(rs);
+                }
+            }
+            return null;
+        });
+    }
+
+    // Update specific fields of a review
+    @Override
+    public void updateReview(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        if (writeBehind != null) {
+            writeBehind.update(groupId, discordUserId, rating, asksForDob, comment).join();
+        } else {
+            updateNow(groupId, discordUserId, rating, asksForDob, comment);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ReviewChange> updateReviewAsync(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        if (writeBehind != null) {
+            return writeBehind.update(groupId, discordUserId, rating, asksForDob, comment);
+        }
+        return CompletableFuture.completedFuture(updateNow(groupId, discordUserId, rating, asksForDob, comment));
+    }
+
+    private ReviewChange updateNow(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        List<Object> params = new ArrayList<>();
+        if (rating != null) params.add(rating);
+        if (asksForDob != null) params.add(asksForDob);
+        if (comment != null) params.add(comment);
+
+        if (params.isEmpty()) return ReviewChange.NONE; // No fields to update
+
+        String sql = updateSql(rating != null, asksForDob != null, comment != null);
+        params.add(groupId);
+        params.add(discordUserId);
+
+        return Metrics.query("ReviewRepository.updateReview", ReviewChange.FAILED, () -> {
+            try (Connection conn = dbManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    GroupReview previous = lockReview(conn, groupId, discordUserId);
+                    if (previous == null) {
+                        conn.rollback();
+                        return ReviewChange.NONE;
+                    }
+
+                    for (int i = 0; i < params.size(); i++) {
+                        Object param = params.get(i);
+                        if (param instanceof Integer) {
+                            stmt.setInt(i + 1, (Integer) param);
+                        } else if (param instanceof Boolean) {
+                            stmt.setBoolean(i + 1, (Boolean) param);
+                        } else if (param instanceof String) {
+                            stmt.setString(i + 1, (String) param);
+                        }
+                    }
+
+                    stmt.executeUpdate();
+
+                    adjustGroupStats(conn, groupId,
+                            previous.getRating(), previous.isAsksForDob(),
+                            rating != null ? rating : previous.getRating(),
+                            asksForDob != null ? asksForDob : previous.isAsksForDob());
+                    GroupReview stored = lockReview(conn, groupId, discordUserId);
+                    conn.commit();
+                    return ReviewChange.of(previous, stored);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    // UPDATE of the given columns of one review; binds their new values in this order, then group and user
+    static String updateSql(boolean rating, boolean asksForDob, boolean comment) {
+        List<String> columns = new ArrayList<>();
+        if (rating) columns.add("rating = ?");
+        if (asksForDob) columns.add("asks_for_dob = ?");
+        if (comment) columns.add("comment = ?");
+        return "UPDATE group_reviews SET " + String.join(", ", columns) + " WHERE group_id = ? AND discord_user_id = ?";
+    }
+
+    // Get all reviews by a specific user
+    @Override
+    public List<GroupReview> getReviewsByUser(String discordUserId) {
+        List<GroupReview> reviews = new ArrayList<>();
+        return Metrics.query("ReviewRepository.getReviewsByUser", reviews, () -> {
+            try (Connection conn = dbManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(REVIEWS_OF_USER_SQL)) {
+
+                stmt.setString(1, discordUserId);
+                ResultSet rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    reviews.add(mapReview(rs));
+                }
+            }
+            return reviews;
+        });
+    }
+
+    // Reads a review and locks its row until the surrounding transaction ends
+    private GroupReview lockReview(Connection conn, String groupId, String discordUserId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(LOCK_REVIEW_SQL)) {
+            stmt.setString(1, groupId);
+            stmt.setString(2, discordUserId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return mapReview(rs);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies a review change to the group_stats row of a group, inside the caller's transaction.
+     * Pass null for the old values when a review is added, and null for the new values when it is removed.
+     */
+    static void adjustGroupStats(Connection conn, String groupId,
+                                 Integer oldRating, Boolean oldDob,
+                                 Integer newRating, Boolean newDob) throws SQLException {
+        long ratingDelta = 0;
+        int countDelta = 0;
+        int dobDelta = 0;
+        int[] starDeltas = new int[5];
+
+        if (oldRating != null) {
+            ratingDelta -= oldRating;
+            countDelta--;
+            if (oldDob) dobDelta--;
+            starDeltas[oldRating - 1]--;
+        }
+        if (newRating != null) {
+            ratingDelta += newRating;
+            countDelta++;
+            if (newDob) dobDelta++;
+            starDeltas[newRating - 1]++;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(GROUP_STATS_DELTA_SQL)) {
+            bindStatsDelta(stmt, groupId, ratingDelta, countDelta, dobDelta, starDeltas);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Sets the parameters of GROUP_STATS_DELTA_SQL
+    static void bindStatsDelta(PreparedStatement stmt, String groupId,
+                               long ratingDelta, int countDelta, int dobDelta, int[] starDeltas) throws SQLException {
+        stmt.setString(1, groupId);
+        stmt.setLong(2, ratingDelta);
+        stmt.setInt(3, countDelta);
+        stmt.setInt(4, dobDelta);
+        for (int i = 0; i < 5; i++) {
+            stmt.setInt(5 + i, starDeltas[i]);
+        }
+    }
+}
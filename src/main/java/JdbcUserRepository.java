@@ -0,0 +1,189 @@
+import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UserRepository on MariaDB, with a near-cache for link lookups.
+ */
+public class JdbcUserRepository implements UserRepository {
+
+    // Shared with SchemaMigrator.selfCheck, which EXPLAINs them
+    static final String LINK_SQL = "INSERT INTO user_links (discord_user_id, vrc_user_id, vrc_display_name) " +
+            "VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE vrc_user_id = ?, vrc_display_name = ?, linked_at = CURRENT_TIMESTAMP";
+    static final String VRC_USER_ID_SQL = "SELECT vrc_user_id FROM user_links WHERE discord_user_id = ?";
+    static final String UNLINK_SQL = "DELETE FROM user_links WHERE discord_user_id = ?";
+    static final String LOCK_USER_REVIEWS_SQL = "SELECT * FROM group_reviews WHERE discord_user_id = ? FOR UPDATE";
+    static final String DELETE_USER_REVIEWS_SQL = "DELETE FROM group_reviews WHERE discord_user_id = ?";
+    static final String OWNER_FLAGS_SQL = "UPDATE group_reviews r LEFT JOIN group_index g ON g.short_code = r.group_id " +
+            "SET r.is_owner_review = COALESCE(g.owner_id = ?, FALSE) WHERE r.discord_user_id = ?";
+    private final DatabaseManager dbManager;
+
+    // Near-cache for Discord ID -> VRChat user ID. "Not linked" is cached too, for a shorter time.
+    // Every write below invalidates its entry before returning.
+    private final TtlCache<String, String> linkCache = new TtlCache<>(20_000, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+    public JdbcUserRepository(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+
+        Metrics.counter("vrcbot_link_cache_hits_total", "Discord -> VRChat link lookups served from the cache", linkCache::hitCount);
+        Metrics.counter("vrcbot_link_cache_misses_total", "Discord -> VRChat link lookups that went to the database", linkCache::missCount);
+        Metrics.gauge("vrcbot_link_cache_entries", "Entries in the link cache", linkCache::size);
+    }
+
+    /**
+     * Saves or updates the link between Discord ID and VRChat User.
+     */
+    @Override
+    public void linkUser(String discordId, String vrcUserId, String vrcDisplayName) {
+        try {
+            Metrics.update("UserRepository.linkUser", () -> {
+                try (Connection conn = dbManager.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement stmt = conn.prepareStatement(LINK_SQL)) {
+
+                        stmt.setString(1, discordId);
+                        stmt.setString(2, vrcUserId);
+                        stmt.setString(3, vrcDisplayName);
+
+                        // Update values if exists
+                        stmt.setString(4, vrcUserId);
+                        stmt.setString(5, vrcDisplayName);
+
+                        stmt.executeUpdate();
+
+                        // A re-link to another VRChat account can change which of the user's reviews are owner reviews
+                        updateOwnerFlags(conn, discordId, vrcUserId);
+                        conn.commit();
+                        System.out.println("Linked Discord User " + discordId + " to VRC User " + vrcDisplayName);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+            });
+        } finally {
+            linkCache.invalidate(discordId);
+        }
+    }
+
+    /**
+     * Returns the VRChat User ID (usr_...) for a Discord ID, or null if not linked.
+     */
+    @Override
+    public String getVrcUserId(String discordId) {
+        return Metrics.query("UserRepository.getVrcUserId", null, () -> linkCache.get(discordId, this::loadVrcUserId));
+    }
+
+    private String loadVrcUserId(String discordId) throws SQLException {
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(VRC_USER_ID_SQL)) {
+
+            stmt.setString(1, discordId);
+            ResultSet rs = stmt.executeQuery();
+
+            if (rs.next()) {
+                return rs.getString("vrc_user_id");
+            }
+        }
+        return null; // Not found
+    }
+
+    public long getLinkCacheHits() {
+        return linkCache.hitCount();
+    }
+
+    public long getLinkCacheMisses() {
+        return linkCache.missCount();
+    }
+
+    public int getLinkCacheSize() {
+        return linkCache.size();
+    }
+
+    @Override
+    public void unlinkUser(String userId) {
+        try {
+            Metrics.update("UserRepository.unlinkUser", () -> {
+                try (Connection conn = dbManager.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement stmt = conn.prepareStatement(UNLINK_SQL)) {
+
+                        stmt.setString(1, userId);
+                        stmt.executeUpdate();
+
+                        updateOwnerFlags(conn, userId, null);
+                        conn.commit();
+                        System.out.println("Unlinked Discord User " + userId);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+            });
+        } finally {
+            linkCache.invalidate(userId);
+        }
+    }
+
+    /**
+     * Deletes the link and every review of a user in one transaction, keeping group_stats in sync.
+     * Returns the locked rows it deleted.
+     */
+    @Override
+    public List<GroupReview> deleteAllUserData(String userId) {
+        try {
+            return Metrics.query("UserRepository.deleteAllUserData", List.of(), () -> {
+                List<GroupReview> deleted = new ArrayList<>();
+                try (Connection conn = dbManager.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement select = conn.prepareStatement(LOCK_USER_REVIEWS_SQL);
+                         PreparedStatement deleteReviews = conn.prepareStatement(DELETE_USER_REVIEWS_SQL);
+                         PreparedStatement deleteLink = conn.prepareStatement(UNLINK_SQL)) {
+
+                        select.setString(1, userId);
+                        ResultSet rs = select.executeQuery();
+                        while (rs.next()) {
+                            deleted.add(JdbcReviewRepository.mapReview(rs));
+                        }
+                        for (GroupReview review : deleted) {
+                            JdbcReviewRepository.adjustGroupStats(conn, review.getGroupId(),
+                                    review.getRating(), review.isAsksForDob(), null, null);
+                        }
+
+                        deleteReviews.setString(1, userId);
+                        deleteReviews.executeUpdate();
+
+                        deleteLink.setString(1, userId);
+                        deleteLink.executeUpdate();
+
+                        conn.commit();
+                        System.out.println("Deleted all data for Discord User " + userId);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+                return deleted;
+            });
+        } finally {
+            linkCache.invalidate(userId);
+        }
+    }
+
+    // Recomputes is_owner_review for every review of a user against their linked VRChat account, null clears them all
+    private static void updateOwnerFlags(Connection conn, String discordId, String vrcUserId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(OWNER_FLAGS_SQL)) {
+            stmt.setString(1, vrcUserId);
+            stmt.setString(2, discordId);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * GroupRepository on the embedded LogStore.
+ */
+public class LogGroupRepository implements GroupRepository {
+
+    private final LogStore store;
+
+    public LogGroupRepository(LogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public IndexedGroup findGroup(String shortCode) {
+        return Metrics.query("GroupRepository.findGroup", null, () -> store.group(shortCode));
+    }
+
+    @Override
+    public Map<String, Long> refreshedAt(Collection<String> shortCodes) {
+        return Metrics.query("GroupRepository.refreshedAt", Map.of(), () -> store.refreshedAt(shortCodes));
+    }
+
+    @Override
+    public void saveGroup(GroupInfo group) {
+        Metrics.update("GroupRepository.saveGroup", () -> store.putGroup(group));
+    }
+
+    @Override
+    public void removeGroup(String shortCode) {
+        Metrics.update("GroupRepository.removeGroup", () -> store.removeGroup(shortCode));
+    }
+}
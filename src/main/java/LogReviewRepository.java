@@ -0,0 +1,96 @@
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * ReviewRepository on the embedded LogStore. Reads are served from memory; writes return once
+ * they are fsynced to the log.
+ */
+public class LogReviewRepository implements ReviewRepository {
+
+    private final LogStore store;
+
+    public LogReviewRepository(LogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void upsertReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        Metrics.update("ReviewRepository.upsertReview", () -> store.upsertReview(groupId, discordUserId, rating, asksForDob, comment));
+    }
+
+    // The store already group-commits concurrent writes, so the async variants just report the outcome
+    @Override
+    public CompletableFuture<ReviewChange> upsertReviewAsync(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return CompletableFuture.completedFuture(Metrics.query("ReviewRepository.upsertReview", ReviewChange.FAILED,
+                () -> store.upsertReview(groupId, discordUserId, rating, asksForDob, comment)));
+    }
+
+    @Override
+    public RateResult rateGroup(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return Metrics.query("ReviewRepository.rateGroup", RateResult.of(RateResult.Status.FAILED),
+                () -> store.rateGroup(groupId, discordUserId, rating, asksForDob, comment));
+    }
+
+    @Override
+    public GroupStats getGroupStats(String groupId) {
+        return Metrics.query("ReviewRepository.getGroupStats", GroupStats.empty(groupId), () -> store.groupStats(groupId));
+    }
+
+    @Override
+    public List<GroupStats> getAllGroupStats() {
+        return Metrics.query("ReviewRepository.getAllGroupStats", List.of(), () -> store.allGroupStats());
+    }
+
+    @Override
+    public void forEachReview(Consumer<GroupReview> action) {
+        Metrics.update("ReviewRepository.forEachReview", () -> store.forEachReview(action));
+    }
+
+    @Override
+    public void forEachReviewSince(Timestamp since, Consumer<GroupReview> action) {
+        Metrics.update("ReviewRepository.forEachReviewSince", () -> store.reviewsSince(since).forEach(action));
+    }
+
+    @Override
+    public List<GroupReview> getAllReviews(String groupId) {
+        return Metrics.query("ReviewRepository.getAllReviews", List.of(), () -> store.reviewsOfGroup(groupId));
+    }
+
+    @Override
+    public List<GroupReview> getReviewsAfter(String groupId, ReviewCursor cursor, int limit) {
+        return Metrics.query("ReviewRepository.getReviewsAfter", List.of(), () -> store.reviewsAfter(groupId, cursor, limit));
+    }
+
+    @Override
+    public List<GroupReview> getReviewsBefore(String groupId, ReviewCursor cursor, int limit) {
+        return Metrics.query("ReviewRepository.getReviewsBefore", List.of(), () -> store.reviewsBefore(groupId, cursor, limit));
+    }
+
+    @Override
+    public boolean hasUserReviewed(String groupId, String discordUserId) {
+        return getUserReview(groupId, discordUserId) != null;
+    }
+
+    @Override
+    public GroupReview getUserReview(String groupId, String discordUserId) {
+        return Metrics.query("ReviewRepository.getUserReview", null, () -> store.review(groupId, discordUserId));
+    }
+
+    @Override
+    public void updateReview(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        Metrics.update("ReviewRepository.updateReview", () -> store.updateReview(groupId, discordUserId, rating, asksForDob, comment));
+    }
+
+    @Override
+    public CompletableFuture<ReviewChange> updateReviewAsync(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        return CompletableFuture.completedFuture(Metrics.query("ReviewRepository.updateReview", ReviewChange.FAILED,
+                () -> store.updateReview(groupId, discordUserId, rating, asksForDob, comment)));
+    }
+
+    @Override
+    public List<GroupReview> getReviewsByUser(String discordUserId) {
+        return Metrics.query("ReviewRepository.getReviewsByUser", List.of(), () -> store.reviewsOfUser(discordUserId));
+    }
+}
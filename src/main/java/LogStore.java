@@ -0,0 +1,897 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded storage engine for small deployments: every change is appended to a log file on local disk,
+ * and all data lives in in-memory indexes (by key, by group in listing order, by user, plus group numbers).
+ *
+ * Writes are group-committed: a write returns once a background flusher has fsynced it, and every write
+ * that arrives during an fsync goes out with the next one. When the log grows past compactBytes, a new log
+ * generation is started and a snapshot of the state at that point is written in the background, after
+ * which older files are deleted. A restart loads the newest snapshot and replays only the logs after it.
+ *
+ * Files in the data directory: snapshot-N.dat (state before log-N) and log-N.dat. Every record is framed
+ * as [length][CRC32][payload]; a torn record at the end of a log (crash during a write) is ignored.
+ */
+public class LogStore implements AutoCloseable {
+
+    public static final long DEFAULT_COMPACT_BYTES = 64L * 1024 * 1024;
+
+    // Record types
+    private static final byte PUT_REVIEW = 1;
+    private static final byte PUT_LINK = 2;
+    private static final byte DELETE_LINK = 3;
+    private static final byte DELETE_USER = 4;
+    private static final byte SNAPSHOT_END = 5;
+    private static final byte PUT_GROUP = 6;
+    private static final byte DELETE_GROUP = 7;
+
+    // Listing order of a group, same as the SQL queries: created_at DESC, discord_user_id DESC
+    private static final Comparator<GroupReview> LISTING_ORDER = Comparator
+            .comparingLong((GroupReview review) -> review.getCreatedAt().getTime())
+            .thenComparing(GroupReview::getDiscordUserId)
+            .reversed();
+
+    private record ReviewKey(String groupId, String discordUserId) {}
+
+    private record Link(String vrcUserId, String displayName) {}
+
+    private static final class Stats {
+        long ratingSum;
+        int count;
+        int dobYes;
+        final int[] stars = new int[5];
+
+        void add(GroupReview review, int sign) {
+            ratingSum += (long) sign * review.getRating();
+            count += sign;
+            if (review.isAsksForDob()) dobYes += sign;
+            stars[review.getRating() - 1] += sign;
+        }
+
+        GroupStats toGroupStats(String groupId) {
+            return new GroupStats(groupId, ratingSum, count, dobYes, stars.clone());
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final Path dir;
+    private final long compactBytes;
+
+    // In-memory state, guarded by stateLock. Log appends happen under its write lock too, so the log
+    // order is the order in which changes were applied.
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final Map<ReviewKey, GroupReview> reviews = new HashMap<>();
+    private final Map<String, NavigableSet<GroupReview>> reviewsByGroup = new HashMap<>();
+    private final Map<String, Map<String, GroupReview>> reviewsByUser = new HashMap<>();
+    private final Map<String, Stats> stats = new HashMap<>();
+    private final Map<String, Link> links = new HashMap<>();
+    private final Map<String, GroupRepository.IndexedGroup> groups = new HashMap<>();
+    private volatile long logBytes;
+    private long generation;
+
+    // Bytes waiting for the flusher; sequence numbers tell writers when their record is on disk
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition dataPending = flushLock.newCondition();
+    private final Condition flushed = flushLock.newCondition();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean closed;
+
+    // The open log file; held while writing to it or switching generations
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private FileChannel log;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Thread flusher;
+
+    public LogStore(Path dir, long compactBytes) throws IOException {
+        this.dir = dir;
+        this.compactBytes = compactBytes;
+        Files.createDirectories(dir);
+
+        long startedAt = System.nanoTime();
+        recover();
+        System.out.println("Log store loaded " + reviews.size() + " reviews and " + links.size() + " links from "
+                + dir.toAbsolutePath() + " in " + (System.nanoTime() - startedAt) / 1_000_000 + " ms");
+
+        flusher = Thread.ofPlatform().name("log-flusher").daemon().start(this::flushLoop);
+        Metrics.gauge("vrcbot_log_store_bytes", "Size of the current log generation", () -> logBytes);
+    }
+
+    // --- Reviews ---
+
+    // The review writes return what they changed, as seen under the write lock
+    public ReviewChange upsertReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) throws IOException {
+        long seq;
+        ReviewChange change;
+        stateLock.writeLock().lock();
+        try {
+            ReviewKey key = new ReviewKey(groupId, discordUserId);
+            GroupReview previous = reviews.get(key);
+            // Like ON DUPLICATE KEY UPDATE, a replaced review keeps its creation time
+            Timestamp createdAt = previous != null ? previous.getCreatedAt() : now();
+            GroupReview review = new GroupReview(groupId, discordUserId, rating, asksForDob, comment, createdAt);
+            seq = commit(reviewRecord(review), () -> applyPutReview(review));
+            change = ReviewChange.of(previous, reviews.get(key));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return change;
+    }
+
+    public RateResult rateGroup(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) throws IOException {
+        long seq;
+        GroupStats after;
+        GroupReview stored;
+        stateLock.writeLock().lock();
+        try {
+            ReviewKey key = new ReviewKey(groupId, discordUserId);
+            if (!links.containsKey(discordUserId)) return RateResult.of(RateResult.Status.NOT_LINKED);
+            if (reviews.containsKey(key)) return RateResult.of(RateResult.Status.ALREADY_REVIEWED);
+
+            GroupReview review = new GroupReview(groupId, discordUserId, rating, asksForDob, comment, now());
+            seq = commit(reviewRecord(review), () -> applyPutReview(review));
+            after = groupStatsLocked(groupId);
+            stored = reviews.get(key);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return new RateResult(RateResult.Status.SAVED, after, ReviewChange.of(null, stored));
+    }
+
+    // Changes the non-null fields of an existing review
+    public ReviewChange updateReview(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) throws IOException {
+        if (rating == null && asksForDob == null && comment == null) return ReviewChange.NONE;
+
+        long seq;
+        ReviewChange change;
+        stateLock.writeLock().lock();
+        try {
+            ReviewKey key = new ReviewKey(groupId, discordUserId);
+            GroupReview previous = reviews.get(key);
+            if (previous == null) return ReviewChange.NONE;
+
+            GroupReview review = new GroupReview(groupId, discordUserId,
+                    rating != null ? rating : previous.getRating(),
+                    asksForDob != null ? asksForDob : previous.isAsksForDob(),
+                    comment != null ? comment : previous.getComment(),
+                    previous.getCreatedAt());
+            seq = commit(reviewRecord(review), () -> applyPutReview(review));
+            change = ReviewChange.of(previous, reviews.get(key));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return change;
+    }
+
+    public GroupStats groupStats(String groupId) {
+        stateLock.readLock().lock();
+        try {
+            return groupStatsLocked(groupId);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    public List<GroupStats> allGroupStats() {
+        stateLock.readLock().lock();
+        try {
+            List<GroupStats> all = new ArrayList<>(stats.size());
+            stats.forEach((groupId, groupStats) -> {
+                if (groupStats.count > 0) all.add(groupStats.toGroupStats(groupId));
+            });
+            return all;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // Runs the action for every review under the read lock, so it must not call back into the store
+    public void forEachReview(Consumer<GroupReview> action) {
+        stateLock.readLock().lock();
+        try {
+            reviews.values().forEach(action);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // Reviews created at or after since, oldest first
+    public List<GroupReview> reviewsSince(Timestamp since) {
+        List<GroupReview> result = new ArrayList<>();
+        stateLock.readLock().lock();
+        try {
+            for (GroupReview review : reviews.values()) {
+                if (!review.getCreatedAt().before(since)) result.add(review);
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        result.sort(Comparator.comparing(GroupReview::getCreatedAt));
+        return result;
+    }
+
+    public GroupReview review(String groupId, String discordUserId) {
+        stateLock.readLock().lock();
+        try {
+            return reviews.get(new ReviewKey(groupId, discordUserId));
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // Every review of a group, in listing order
+    public List<GroupReview> reviewsOfGroup(String groupId) {
+        stateLock.readLock().lock();
+        try {
+            NavigableSet<GroupReview> group = reviewsByGroup.get(groupId);
+            return group == null ? new ArrayList<>() : new ArrayList<>(group);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // Up to limit reviews after the cursor in listing order; a null cursor starts at the newest review
+    public List<GroupReview> reviewsAfter(String groupId, ReviewCursor cursor, int limit) {
+        stateLock.readLock().lock();
+        try {
+            NavigableSet<GroupReview> group = reviewsByGroup.get(groupId);
+            if (group == null) return new ArrayList<>();
+            return take(cursor == null ? group : group.tailSet(probe(groupId, cursor), false), limit);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // Up to limit reviews right before the cursor in listing order, closest one first
+    public List<GroupReview> reviewsBefore(String groupId, ReviewCursor cursor, int limit) {
+        stateLock.readLock().lock();
+        try {
+            NavigableSet<GroupReview> group = reviewsByGroup.get(groupId);
+            if (group == null) return new ArrayList<>();
+            return take(group.headSet(probe(groupId, cursor), false).descendingSet(), limit);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // Every review of a user, newest first
+    public List<GroupReview> reviewsOfUser(String discordUserId) {
+        stateLock.readLock().lock();
+        try {
+            Map<String, GroupReview> user = reviewsByUser.get(discordUserId);
+            List<GroupReview> result = user == null ? new ArrayList<>() : new ArrayList<>(user.values());
+            result.sort(LISTING_ORDER);
+            return result;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    // --- Links ---
+
+    public void link(String discordUserId, String vrcUserId, String displayName) throws IOException {
+        long seq;
+        stateLock.writeLock().lock();
+        try {
+            seq = commit(frame(PUT_LINK, out -> {
+                out.writeUTF(discordUserId);
+                writeString(out, vrcUserId);
+                writeString(out, displayName);
+            }), () -> applyPutLink(discordUserId, new Link(vrcUserId, displayName)));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+    }
+
+    public String vrcUserId(String discordUserId) {
+        stateLock.readLock().lock();
+        try {
+            Link link = links.get(discordUserId);
+            return link != null ? link.vrcUserId() : null;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    public void unlink(String discordUserId) throws IOException {
+        long seq;
+        stateLock.writeLock().lock();
+        try {
+            if (!links.containsKey(discordUserId)) return;
+            seq = commit(frame(DELETE_LINK, out -> out.writeUTF(discordUserId)), () -> applyDeleteLink(discordUserId));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+    }
+
+    // Deletes the link and every review of a user with a single record, so it can't be half applied; returns the deleted reviews
+    public List<GroupReview> deleteUser(String discordUserId) throws IOException {
+        long seq;
+        List<GroupReview> deleted;
+        stateLock.writeLock().lock();
+        try {
+            Map<String, GroupReview> user = reviewsByUser.get(discordUserId);
+            deleted = user != null ? new ArrayList<>(user.values()) : List.of();
+            seq = commit(frame(DELETE_USER, out -> out.writeUTF(discordUserId)), () -> applyDeleteUser(discordUserId));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+        return deleted;
+    }
+
+    // --- Group index ---
+
+    public void putGroup(GroupInfo group) throws IOException {
+        GroupRepository.IndexedGroup indexed = new GroupRepository.IndexedGroup(group, System.currentTimeMillis());
+        long seq;
+        stateLock.writeLock().lock();
+        try {
+            seq = commit(groupRecord(indexed), () -> applyPutGroup(indexed));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+    }
+
+    public GroupRepository.IndexedGroup group(String shortCode) {
+        stateLock.readLock().lock();
+        try {
+            return groups.get(shortCode);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Long> refreshedAt(Collection<String> shortCodes) {
+        Map<String, Long> refreshedAt = new HashMap<>();
+        stateLock.readLock().lock();
+        try {
+            for (String shortCode : shortCodes) {
+                GroupRepository.IndexedGroup indexed = groups.get(shortCode);
+                if (indexed != null) refreshedAt.put(shortCode, indexed.refreshedAt());
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        return refreshedAt;
+    }
+
+    public void removeGroup(String shortCode) throws IOException {
+        long seq;
+        stateLock.writeLock().lock();
+        try {
+            if (!groups.containsKey(shortCode)) return;
+            seq = commit(frame(DELETE_GROUP, out -> out.writeUTF(shortCode)), () -> applyDeleteGroup(shortCode));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        awaitDurable(seq);
+    }
+
+    // --- In-memory state ---
+
+    private void applyPutReview(GroupReview review) {
+        // The owner flag is derived from links and groups, so it is not part of the review record
+        boolean owner = isOwner(review.getGroupId(), review.getDiscordUserId());
+        if (review.isOwnerReview() != owner) {
+            review = new GroupReview(review.getGroupId(), review.getDiscordUserId(), review.getRating(),
+                    review.isAsksForDob(), review.getComment(), review.getCreatedAt(), owner);
+        }
+        GroupReview previous = reviews.put(new ReviewKey(review.getGroupId(), review.getDiscordUserId()), review);
+        if (previous != null) unindex(previous);
+        reviewsByGroup.computeIfAbsent(review.getGroupId(), k -> new TreeSet<>(LISTING_ORDER)).add(review);
+        reviewsByUser.computeIfAbsent(review.getDiscordUserId(), k -> new HashMap<>()).put(review.getGroupId(), review);
+        stats.computeIfAbsent(review.getGroupId(), k -> new Stats()).add(review, 1);
+    }
+
+    private void applyDeleteUser(String discordUserId) {
+        Map<String, GroupReview> user = reviewsByUser.get(discordUserId);
+        if (user != null) {
+            for (GroupReview review : new ArrayList<>(user.values())) {
+                reviews.remove(new ReviewKey(review.getGroupId(), discordUserId));
+                unindex(review);
+            }
+        }
+        links.remove(discordUserId);
+    }
+
+    private void applyPutLink(String discordUserId, Link link) {
+        links.put(discordUserId, link);
+        Map<String, GroupReview> user = reviewsByUser.get(discordUserId);
+        if (user != null) updateOwnerFlags(user.values());
+    }
+
+    private void applyDeleteLink(String discordUserId) {
+        links.remove(discordUserId);
+        Map<String, GroupReview> user = reviewsByUser.get(discordUserId);
+        if (user != null) updateOwnerFlags(user.values());
+    }
+
+    private void applyPutGroup(GroupRepository.IndexedGroup indexed) {
+        GroupRepository.IndexedGroup previous = groups.put(indexed.group().shortCode(), indexed);
+        if (previous == null || !Objects.equals(previous.group().ownerId(), indexed.group().ownerId())) {
+            updateOwnerFlags(reviewsByGroup.get(indexed.group().shortCode()));
+        }
+    }
+
+    private void applyDeleteGroup(String shortCode) {
+        groups.remove(shortCode);
+        updateOwnerFlags(reviewsByGroup.get(shortCode));
+    }
+
+    private boolean isOwner(String groupId, String discordUserId) {
+        Link link = links.get(discordUserId);
+        GroupRepository.IndexedGroup group = groups.get(groupId);
+        return link != null && group != null && link.vrcUserId() != null
+                && link.vrcUserId().equals(group.group().ownerId());
+    }
+
+    // Re-puts the reviews whose owner flag no longer matches the links and groups
+    private void updateOwnerFlags(Collection<GroupReview> affected) {
+        if (affected == null) return;
+        for (GroupReview review : new ArrayList<>(affected)) {
+            if (review.isOwnerReview() != isOwner(review.getGroupId(), review.getDiscordUserId())) {
+                applyPutReview(review);
+            }
+        }
+    }
+
+    private void unindex(GroupReview review) {
+        NavigableSet<GroupReview> group = reviewsByGroup.get(review.getGroupId());
+        group.remove(review);
+        if (group.isEmpty()) reviewsByGroup.remove(review.getGroupId());
+
+        Map<String, GroupReview> user = reviewsByUser.get(review.getDiscordUserId());
+        user.remove(review.getGroupId());
+        if (user.isEmpty()) reviewsByUser.remove(review.getDiscordUserId());
+
+        Stats groupStats = stats.get(review.getGroupId());
+        groupStats.add(review, -1);
+        if (groupStats.count == 0) stats.remove(review.getGroupId());
+    }
+
+    private GroupStats groupStatsLocked(String groupId) {
+        Stats group = stats.get(groupId);
+        return group != null ? group.toGroupStats(groupId) : GroupStats.empty(groupId);
+    }
+
+    // A review that sorts exactly at the cursor position
+    private static GroupReview probe(String groupId, ReviewCursor cursor) {
+        return new GroupReview(groupId, cursor.discordUserId(), 1, false, null, cursor.createdAt());
+    }
+
+    private static List<GroupReview> take(Iterable<GroupReview> source, int limit) {
+        List<GroupReview> result = new ArrayList<>(Math.min(limit, 16));
+        for (GroupReview review : source) {
+            if (result.size() >= limit) break;
+            result.add(review);
+        }
+        return result;
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    // --- Log ---
+
+    // Appends a record and applies it; caller holds the state write lock. Returns the sequence number to wait for.
+    private long commit(byte[] record, Runnable apply) throws IOException {
+        long seq = append(record);
+        apply.run();
+        maybeCompact();
+        return seq;
+    }
+
+    private long append(byte[] record) throws IOException {
+        flushLock.lock();
+        try {
+            if (failure != null) throw new IOException("Log store is unusable after a failed write", failure);
+            if (closed) throw new IOException("Log store is closed");
+            pending.write(record, 0, record.length);
+            logBytes += record.length;
+            dataPending.signal();
+            return ++appendedSeq;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void awaitDurable(long seq) throws IOException {
+        flushLock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) throw new IOException("Log write failed", failure);
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            flushLock.lock();
+            try {
+                while (pending.size() == 0 && !closed) {
+                    dataPending.awaitUninterruptibly();
+                }
+                if (pending.size() == 0) return; // closed and drained
+            } finally {
+                flushLock.unlock();
+            }
+            flush();
+        }
+    }
+
+    // Writes and fsyncs everything appended so far, with one fsync for the whole batch
+    private void flush() {
+        ioLock.lock();
+        try {
+            byte[] batch;
+            long target;
+            flushLock.lock();
+            try {
+                if (pending.size() == 0) return;
+                batch = pending.toByteArray();
+                pending.reset();
+                target = appendedSeq;
+            } finally {
+                flushLock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    log.write(buffer);
+                }
+                log.force(false);
+            } catch (IOException e) {
+                error = e;
+                System.err.println("Log store write failed, rejecting further writes: " + e.getMessage());
+            }
+
+            flushLock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSeq = target;
+                }
+                flushed.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Switches to a new, empty log generation; caller holds the state write lock, so nothing is appended meanwhile
+    private void rotate(long newGeneration) throws IOException {
+        flush();
+        ioLock.lock();
+        try {
+            flushLock.lock();
+            try {
+                if (failure != null) throw new IOException("Log store is unusable after a failed write", failure);
+            } finally {
+                flushLock.unlock();
+            }
+            FileChannel next = FileChannel.open(logFile(newGeneration),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            log.close();
+            log = next;
+            generation = newGeneration;
+            logBytes = 0;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // --- Snapshots and compaction ---
+
+    private void maybeCompact() {
+        if (logBytes < compactBytes || !compacting.compareAndSet(false, true)) return;
+        Thread.ofVirtual().name("log-compaction").start(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The old snapshot and logs are still complete, the next attempt starts over
+                System.err.println("Log compaction failed: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Starts a new log generation and writes the state as of that point as its snapshot. Only the
+     * rotation and copying the index references block writers; the snapshot is written outside the lock.
+     */
+    private void compact() throws IOException {
+        long snapshotGeneration;
+        Map<String, Link> linksCopy;
+        List<GroupReview> reviewsCopy;
+        List<GroupRepository.IndexedGroup> groupsCopy;
+
+        stateLock.writeLock().lock();
+        try {
+            snapshotGeneration = generation + 1;
+            rotate(snapshotGeneration);
+            linksCopy = new HashMap<>(links);
+            reviewsCopy = new ArrayList<>(reviews.values());
+            groupsCopy = new ArrayList<>(groups.values());
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+
+        long startedAt = System.nanoTime();
+        writeSnapshot(snapshotGeneration, linksCopy, reviewsCopy, groupsCopy);
+        deleteBefore(snapshotGeneration);
+        System.out.println("Log store compacted to snapshot " + snapshotGeneration + " (" + reviewsCopy.size()
+                + " reviews) in " + (System.nanoTime() - startedAt) / 1_000_000 + " ms");
+    }
+
+    private void writeSnapshot(long snapshotGeneration, Map<String, Link> linksCopy, List<GroupReview> reviewsCopy,
+                               List<GroupRepository.IndexedGroup> groupsCopy) throws IOException {
+        Path tmp = dir.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            for (Map.Entry<String, Link> entry : linksCopy.entrySet()) {
+                out.write(frame(PUT_LINK, data -> {
+                    data.writeUTF(entry.getKey());
+                    writeString(data, entry.getValue().vrcUserId());
+                    writeString(data, entry.getValue().displayName());
+                }));
+            }
+            for (GroupReview review : reviewsCopy) {
+                out.write(reviewRecord(review));
+            }
+            for (GroupRepository.IndexedGroup group : groupsCopy) {
+                out.write(groupRecord(group));
+            }
+            out.write(frame(SNAPSHOT_END, data -> {}));
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotFile(snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteBefore(long snapshotGeneration) throws IOException {
+        for (long old : generations("snapshot-")) {
+            if (old < snapshotGeneration) Files.deleteIfExists(snapshotFile(old));
+        }
+        for (long old : generations("log-")) {
+            if (old < snapshotGeneration) Files.deleteIfExists(logFile(old));
+        }
+    }
+
+    // --- Recovery ---
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(dir, "*.tmp")) {
+            for (Path file : stale) Files.delete(file);
+        }
+
+        List<Long> snapshots = generations("snapshot-");
+        long snapshotGeneration = snapshots.isEmpty() ? -1 : snapshots.get(snapshots.size() - 1);
+        if (snapshotGeneration >= 0) {
+            replay(snapshotFile(snapshotGeneration), true);
+        }
+
+        long lastGeneration = snapshotGeneration;
+        int replayed = 0;
+        for (long logGeneration : generations("log-")) {
+            if (logGeneration < snapshotGeneration) continue;
+            replayed += replay(logFile(logGeneration), false);
+            lastGeneration = logGeneration;
+        }
+
+        // Never append behind a possibly torn record: always continue in a new generation.
+        // If logs had to be replayed, fold them into a snapshot right away so the next start is fast.
+        generation = lastGeneration + 1;
+        if (replayed > 0) {
+            writeSnapshot(generation, links, new ArrayList<>(reviews.values()), new ArrayList<>(groups.values()));
+            deleteBefore(generation);
+        }
+        log = FileChannel.open(logFile(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // Applies every intact record of a file and returns how many there were
+    private int replay(Path file, boolean snapshot) throws IOException {
+        int records = 0;
+        boolean complete = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length <= 0 || length > 16 * 1024 * 1024) break;
+                    payload = in.readNBytes(length);
+                    if (payload.length != length || crc(payload) != crc) break;
+                } catch (EOFException e) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                if (type == SNAPSHOT_END) {
+                    complete = true;
+                    break;
+                }
+                apply(type, record);
+                records++;
+            }
+        }
+        if (snapshot && !complete) {
+            throw new IOException("Snapshot " + file + " is incomplete");
+        }
+        return records;
+    }
+
+    private void apply(byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case PUT_REVIEW -> applyPutReview(new GroupReview(
+                    in.readUTF(),
+                    in.readUTF(),
+                    in.readByte(),
+                    in.readBoolean(),
+                    readString(in),
+                    new Timestamp(in.readLong())));
+            case PUT_LINK -> applyPutLink(in.readUTF(), new Link(readString(in), readString(in)));
+            case DELETE_LINK -> applyDeleteLink(in.readUTF());
+            case DELETE_USER -> applyDeleteUser(in.readUTF());
+            case PUT_GROUP -> {
+                GroupInfo group = new GroupInfo(in.readUTF(), readString(in), readString(in), readString(in));
+                applyPutGroup(new GroupRepository.IndexedGroup(group, in.readLong()));
+            }
+            case DELETE_GROUP -> applyDeleteGroup(in.readUTF());
+            default -> throw new IOException("Unknown log record type " + type);
+        }
+    }
+
+    // --- Encoding ---
+
+    private static byte[] reviewRecord(GroupReview review) throws IOException {
+        return frame(PUT_REVIEW, out -> {
+            out.writeUTF(review.getGroupId());
+            out.writeUTF(review.getDiscordUserId());
+            out.writeByte(review.getRating());
+            out.writeBoolean(review.isAsksForDob());
+            writeString(out, review.getComment());
+            out.writeLong(review.getCreatedAt().getTime());
+        });
+    }
+
+    private static byte[] groupRecord(GroupRepository.IndexedGroup indexed) throws IOException {
+        GroupInfo group = indexed.group();
+        return frame(PUT_GROUP, out -> {
+            out.writeUTF(group.shortCode());
+            writeString(out, group.id());
+            writeString(out, group.name());
+            writeString(out, group.ownerId());
+            out.writeLong(indexed.refreshedAt());
+        });
+    }
+
+    private static byte[] frame(byte type, RecordBody body) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(type);
+        body.write(out);
+        byte[] bytes = payload.toByteArray();
+
+        ByteBuffer framed = ByteBuffer.allocate(8 + bytes.length);
+        framed.putInt(bytes.length).putInt(crc(bytes)).put(bytes);
+        return framed.array();
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private Path snapshotFile(long snapshotGeneration) {
+        return dir.resolve("snapshot-" + snapshotGeneration + ".dat");
+    }
+
+    private Path logFile(long logGeneration) {
+        return dir.resolve("log-" + logGeneration + ".dat");
+    }
+
+    // Generation numbers of the files with this prefix, ascending
+    private List<Long> generations(String prefix) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*.dat")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    result.add(Long.parseLong(name.substring(prefix.length(), name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Flushes outstanding writes, stops the flusher and writes a final snapshot so the next start
+     * doesn't have to replay anything.
+     */
+    @Override
+    public void close() {
+        try {
+            if (logBytes > 0 && compacting.compareAndSet(false, true)) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.err.println("Final log compaction failed: " + e.getMessage());
+        }
+
+        flushLock.lock();
+        try {
+            closed = true;
+            dataPending.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+
+        ioLock.lock();
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.List;
+
+/**
+ * UserRepository on the embedded LogStore. Links are held in memory, so no cache is needed.
+ */
+public class LogUserRepository implements UserRepository {
+
+    private final LogStore store;
+
+    public LogUserRepository(LogStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void linkUser(String discordId, String vrcUserId, String vrcDisplayName) {
+        Metrics.update("UserRepository.linkUser", () -> {
+            store.link(discordId, vrcUserId, vrcDisplayName);
+            System.out.println("Linked Discord User " + discordId + " to VRC User " + vrcDisplayName);
+        });
+    }
+
+    @Override
+    public String getVrcUserId(String discordId) {
+        return Metrics.query("UserRepository.getVrcUserId", null, () -> store.vrcUserId(discordId));
+    }
+
+    @Override
+    public void unlinkUser(String discordId) {
+        Metrics.update("UserRepository.unlinkUser", () -> {
+            store.unlink(discordId);
+            System.out.println("Unlinked Discord User " + discordId);
+        });
+    }
+
+    @Override
+    public List<GroupReview> deleteAllUserData(String discordId) {
+        return Metrics.query("UserRepository.deleteAllUserData", List.of(), () -> {
+            List<GroupReview> deleted = store.deleteUser(discordId);
+            System.out.println("Deleted all data for Discord User " + discordId);
+            return deleted;
+        });
+    }
+}
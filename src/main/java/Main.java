@@ -4,14 +4,35 @@ import io.github.vrchatapi.api.UsersApi;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
-import net.dv8tion.jda.api.interactions.IntegrationType;
-import net.dv8tion.jda.api.interactions.InteractionContextType;
-import net.dv8tion.jda.api.interactions.commands.OptionType;
-import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import io.github.cdimascio.dotenv.Dotenv;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 public class Main {
 
+    // Max. number of VRChat API calls in flight at once
+    private static final int VRCHAT_CONCURRENCY = 4;
+
+    private static final int DEFAULT_METRICS_PORT = 9464;
+
+    // Group metadata older than GROUP_MAX_AGE is refreshed by the next run of the group refresher
+    private static final Duration GROUP_REFRESH_INTERVAL = Duration.ofMinutes(10);
+    private static final Duration GROUP_MAX_AGE = Duration.ofHours(1);
+
+    // Reads come from memory and concurrent writers share one fsync, so the embedded store takes more parallel calls than a pool
+    private static final int EMBEDDED_CONCURRENCY = 32;
+
+    private record Repositories(ReviewRepository reviewRepo, UserRepository userRepo, GroupRepository groupRepo, int concurrency) {}
+    private record VRChatApis(VRChatGateway gateway, UsersApi usersApi, GroupsApi groupsApi) {}
+
     public static void main(String[] args) throws InterruptedException {
+        long startedAt = System.nanoTime();
+
         // 1. Load configuration (Ensure these are set in your Environment Variables or .env)
         Dotenv dotenv = Dotenv.load();
         String discordToken = dotenv.get("DISCORD_TOKEN");
@@ -21,98 +42,163 @@ public class Main {
             return;
         }
 
+        // Prometheus endpoint on localhost; METRICS_PORT=0 disables it
+        String metricsPort = dotenv.get("METRICS_PORT");
+        int port = metricsPort == null ? DEFAULT_METRICS_PORT : Integer.parseInt(metricsPort);
+        if (port > 0) {
+            try {
+                new MetricsServer(port).start();
+            } catch (IOException e) {
+                System.err.println("Could not start metrics server on port " + port + ": " + e.getMessage());
+            }
+        }
+
+        // Database, VRChat login and the Discord gateway don't depend on each other, so they start in parallel:
+        //
+        //   database ──┐
+        //              ├─> handler ──┐
+        //   vrchat ────┘             ├─> listener attached ─> ready
+        //   discord ──┬──────────────┘
+        //             └─> command sync
+        ExecutorService startup = Executors.newVirtualThreadPerTaskExecutor();
+
         // 2. Initialize Database Connection
-        System.out.println("Connecting to Database...");
-        DatabaseManager dbManager = new DatabaseManager();
-        ReviewRepository reviewRepo = new ReviewRepository(dbManager);
-        UserRepository userRepo = new UserRepository(dbManager);
+        CompletableFuture<Repositories> database = CompletableFuture.supplyAsync(() -> {
+            Repositories repos = openStorage(dotenv);
+            logStep("Database", startedAt);
+            return repos;
+        }, startup);
 
         // 3. Initialize VRChat Session (Auto-Login with TOTP)
-        System.out.println("Logging into VRChat...");
-        VRChatSessionManager vrcSession = new VRChatSessionManager();
-        ApiClient vrcClient = vrcSession.login(); // This handles the TOTP logic we wrote earlier
-        UsersApi vrcUsersApi = new UsersApi(vrcClient);
-        GroupsApi vrcGroupsApi = new GroupsApi(vrcClient);
+        CompletableFuture<VRChatApis> vrchat = CompletableFuture.supplyAsync(() -> {
+            System.out.println("Logging into VRChat...");
+            VRChatSessionManager vrcSession = new VRChatSessionManager();
+            ApiClient vrcClient = vrcSession.login(); // This handles the TOTP logic we wrote earlier
+            logStep("VRChat login", startedAt);
+            // VRCHAT_RATE requests/s (bursts of VRCHAT_BURST); a call waits at most VRCHAT_WAIT_MS, well within Discord's 3s
+            VRChatGateway gateway = new VRChatGateway(vrcSession,
+                    Double.parseDouble(dotenv.get("VRCHAT_RATE", "2")),
+                    Integer.parseInt(dotenv.get("VRCHAT_BURST", "5")),
+                    Duration.ofMillis(Long.parseLong(dotenv.get("VRCHAT_WAIT_MS", "2000"))));
+            return new VRChatApis(gateway, new UsersApi(vrcClient), new GroupsApi(vrcClient));
+        }, startup);
 
         // 4. Initialize Discord Bot (JDA)
-        System.out.println("Starting Discord Bot...");
-        JDA jda = JDABuilder.createDefault(discordToken)
-                .addEventListeners(new SlashCommandHandler(reviewRepo, userRepo, vrcUsersApi, vrcGroupsApi, vrcSession))
-                .build();
-
-        // Wait until JDA is ready before registering commands
-        jda.awaitReady();
-
-        jda.getPresence().setActivity(Activity.playing("Rating VRChat Groups"));
-
-        // 5. Register Slash Commands
-        // Note: Global commands can take up to an hour to update.
-        // For testing, use .updateCommands().addCommands(...).queue() on a specific Guild.
-        jda.updateCommands().addCommands(
-
-                // Command: /rate-group
-                Commands.slash("rate-group", "Rate a VRChat Group based on your experience")
-                        .addOption(OptionType.STRING, "group_shortcode", "The VRChat Shortcode of the group", true)
-                        .addOption(OptionType.INTEGER, "rating", "Rating from 1 to 5", true)
-                        .addOption(OptionType.STRING, "comment", "Your review comment", true)
-                        .addOption(OptionType.BOOLEAN, "asks_for_dob", "Did they ask for your Date of Birth / ID despite you being age verified?", false)
-                        .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
-                        .setContexts(
-                                InteractionContextType.GUILD,
-                                InteractionContextType.BOT_DM,
-                                InteractionContextType.PRIVATE_CHANNEL
-                        ),
-
-                Commands.slash("delete-my-data", "Delete all your data stored by this bot (links and reviews)")
-                         .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
-                         .setContexts(
-                                 InteractionContextType.GUILD,
-                                 InteractionContextType.BOT_DM,
-                                 InteractionContextType.PRIVATE_CHANNEL
-                         ),
-
-                // Command: /link-vrc
-                Commands.slash("link-vrc", "Link your Discord account to VRChat via Bio verification")
-                        .addOption(OptionType.STRING, "username", "Your VRChat Display Name", true)
-                        .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
-                        .setContexts(
-                                InteractionContextType.GUILD,
-                                InteractionContextType.BOT_DM,
-                                InteractionContextType.PRIVATE_CHANNEL
-                        ),
-
-                Commands.slash("unlink", "Unlink your VRChat account from your Discord account")
-                         .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
-                         .setContexts(
-                                 InteractionContextType.GUILD,
-                                 InteractionContextType.BOT_DM,
-                                 InteractionContextType.PRIVATE_CHANNEL
-                         ),
-
-                Commands.slash("list-reviews", "List reviews for a VRChat Group")
-                        .addOption(OptionType.STRING, "group_shortcode", "The VRChat Shortcode of the group", true)
-                        .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
-                        .setContexts(
-                                InteractionContextType.GUILD,
-                                InteractionContextType.BOT_DM,
-                                InteractionContextType.PRIVATE_CHANNEL
-                        ),
-
-                // Command: /edit-review
-                Commands.slash("edit-review", "Edit your existing review for a VRChat Group")
-                        .addOption(OptionType.STRING, "group_shortcode", "The VRChat Shortcode of the group", true)
-                        .addOption(OptionType.INTEGER, "rating", "New rating from 1 to 5", false)
-                        .addOption(OptionType.STRING, "comment", "New review comment", false)
-                        .addOption(OptionType.BOOLEAN, "asks_for_dob", "Did they ask for your Date of Birth / ID?", false)
-                        .setIntegrationTypes(IntegrationType.GUILD_INSTALL, IntegrationType.USER_INSTALL)
-                        .setContexts(
-                                InteractionContextType.GUILD,
-                                InteractionContextType.BOT_DM,
-                                InteractionContextType.PRIVATE_CHANNEL
-                        )
-
-        ).queue();
-
-        System.out.println("Bot is running! Invite URL: " + jda.getInviteUrl());
+        CompletableFuture<JDA> discord = CompletableFuture.supplyAsync(() -> {
+            System.out.println("Starting Discord Bot...");
+            JDA jda = JDABuilder.createDefault(discordToken)
+                    .setActivity(Activity.playing("Rating VRChat Groups"))
+                    .build();
+            try {
+                jda.awaitReady();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for JDA", e);
+            }
+            logStep("Discord gateway", startedAt);
+            return jda;
+        }, startup);
+
+        // 5. Register Slash Commands (only pushed if they changed)
+        CompletableFuture<Void> commands = discord.thenAcceptAsync(CommandRegistrar::sync, startup);
+
+        CompletableFuture<SlashCommandHandler> handler = database.thenCombine(vrchat, (repos, vrc) -> {
+            // Virtual-thread executor for interaction handlers; DB calls are bounded by the Hikari pool size
+            InteractionExecutor io = new InteractionExecutor(repos.concurrency(), VRCHAT_CONCURRENCY);
+            GroupDirectory groups = new GroupDirectory(repos.groupRepo(), vrc.groupsApi(), vrc.gateway(), io);
+
+            // Group names and owners are refreshed in the background, review pages only read the index.
+            // GROUP_REFRESH_BUDGET VRChat requests per run at most, GROUP_REFRESH_CONCURRENCY at a time.
+            new GroupRefresher(groups, repos.reviewRepo(),
+                    Integer.parseInt(dotenv.get("GROUP_REFRESH_BUDGET", "200")),
+                    Integer.parseInt(dotenv.get("GROUP_REFRESH_CONCURRENCY", "2")),
+                    GROUP_MAX_AGE).start(GROUP_REFRESH_INTERVAL);
+
+            // Per Discord user and per group, checked before an interaction is dispatched
+            InteractionThrottle throttle = new InteractionThrottle(
+                    Double.parseDouble(dotenv.get("THROTTLE_USER_RATE", "1")),
+                    Integer.parseInt(dotenv.get("THROTTLE_USER_BURST", "5")),
+                    Double.parseDouble(dotenv.get("THROTTLE_GROUP_RATE", "20")),
+                    Integer.parseInt(dotenv.get("THROTTLE_GROUP_BURST", "40")));
+
+            // Every committed review write reaches the handler's in-memory indexes through the publishing decorators
+            ReviewEvents events = new ReviewEvents();
+            ReviewRepository reviewRepo = new PublishingReviewRepository(repos.reviewRepo(), events);
+            UserRepository userRepo = new PublishingUserRepository(repos.userRepo(), events);
+
+            return new SlashCommandHandler(reviewRepo, userRepo, groups, vrc.usersApi(), vrc.gateway(), io, throttle, events);
+        });
+
+        CompletableFuture<JDA> ready = discord.thenCombine(handler, (jda, listener) -> {
+            jda.addEventListener(listener);
+            return jda;
+        });
+
+        JDA jda;
+        try {
+            jda = ready.join();
+        } catch (CompletionException e) {
+            // Storage, VRChat login or an index load failed; JDA's threads would otherwise keep a listener-less bot alive
+            System.err.println("Startup failed: " + e.getCause());
+            e.getCause().printStackTrace();
+            System.exit(1);
+            return;
+        }
+        startup.shutdown();
+
+        System.out.printf("Bot is running! Time to ready: %d ms. Invite URL: %s%n",
+                (System.nanoTime() - startedAt) / 1_000_000, jda.getInviteUrl());
+
+        commands.whenComplete((ignored, error) -> {
+            if (error != null) {
+                System.err.println("Slash command registration failed: " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * STORAGE_ENGINE=mariadb (default) connects to DB_URL / DB_USER / DB_PASSWORD,
+     * STORAGE_ENGINE=embedded keeps everything in a local log under DATA_DIR (default ./data).
+     */
+    private static Repositories openStorage(Dotenv dotenv) {
+        String engine = dotenv.get("STORAGE_ENGINE", "mariadb");
+        switch (engine) {
+            case "mariadb" -> {
+                System.out.println("Connecting to Database...");
+                String url = dotenv.get("DB_URL");
+                DatabaseManager dbManager = url == null
+                        ? new DatabaseManager()
+                        : new DatabaseManager(url, dotenv.get("DB_USER", "root"), dotenv.get("DB_PASSWORD", ""));
+
+                // WRITE_BEHIND=true queues review writes and commits them in batches (size or time, whichever comes first)
+                ReviewWriteBehind writeBehind = null;
+                if (Boolean.parseBoolean(dotenv.get("WRITE_BEHIND", "false"))) {
+                    writeBehind = new ReviewWriteBehind(dbManager,
+                            Integer.parseInt(dotenv.get("WRITE_BEHIND_BATCH", "256")),
+                            Duration.ofMillis(Long.parseLong(dotenv.get("WRITE_BEHIND_DELAY_MS", "10"))));
+                    Runtime.getRuntime().addShutdownHook(new Thread(writeBehind::close, "write-behind-shutdown"));
+                }
+                return new Repositories(new JdbcReviewRepository(dbManager, writeBehind), new JdbcUserRepository(dbManager),
+                        new JdbcGroupRepository(dbManager), dbManager.getMaximumPoolSize());
+            }
+            case "embedded" -> {
+                Path dataDir = Path.of(dotenv.get("DATA_DIR", "data"));
+                System.out.println("Opening embedded store in " + dataDir.toAbsolutePath() + "...");
+                try {
+                    LogStore store = new LogStore(dataDir, LogStore.DEFAULT_COMPACT_BYTES);
+                    // Writes are already durable; this only leaves a fresh snapshot for a fast restart
+                    Runtime.getRuntime().addShutdownHook(new Thread(store::close, "log-store-shutdown"));
+                    return new Repositories(new LogReviewRepository(store), new LogUserRepository(store),
+                            new LogGroupRepository(store), EMBEDDED_CONCURRENCY);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open the embedded store in " + dataDir, e);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown STORAGE_ENGINE '" + engine + "', expected mariadb or embedded");
+        }
+    }
+
+    private static void logStep(String step, long startedAt) {
+        System.out.println(step + " ready after " + (System.nanoTime() - startedAt) / 1_000_000 + " ms");
     }
 }
@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide metrics registry: latency histograms, counters and gauges, rendered in the
+ * Prometheus text format by scrape(). Recording is lock-free (LongAdder/DoubleAdder), so it is
+ * cheap enough to call on every query and interaction.
+ */
+public final class Metrics {
+
+    // Histogram buckets in seconds; Discord's interaction deadline is 3s
+    private static final double[] BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 3, 5, 10};
+
+    private record Series(String name, String labels) {}
+
+    private record Gauge(String type, DoubleSupplier value) {}
+
+    private static final class Histogram {
+        final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        final LongAdder count = new LongAdder();
+        final DoubleAdder sum = new DoubleAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void observe(double seconds) {
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(seconds);
+        }
+    }
+
+    private static final ConcurrentHashMap<Series, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Series, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Series, Gauge> GAUGES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> HELP = new ConcurrentHashMap<>();
+
+    static {
+        HELP.put("vrcbot_command_duration_seconds", "Time from receiving an interaction until its handler returned");
+        HELP.put("vrcbot_command_errors_total", "Interaction handlers that failed with an exception");
+        HELP.put("vrcbot_query_duration_seconds", "Latency of repository methods");
+        HELP.put("vrcbot_query_errors_total", "Repository methods that failed with an SQLException");
+        HELP.put("vrcbot_vrchat_call_duration_seconds", "Latency of VRChat API calls, including a re-login and retry");
+        HELP.put("vrcbot_vrchat_errors_total", "VRChat API calls that failed, by HTTP status");
+        HELP.put("vrcbot_vrchat_reauth_total", "VRChat re-authentication attempts, by result");
+        HELP.put("vrcbot_vrchat_retries_total", "VRChat calls retried after a transient error, by HTTP status");
+        HELP.put("vrcbot_vrchat_rejected_total", "VRChat calls not made because of the circuit breaker or the rate limit");
+        HELP.put("vrcbot_throttled_total", "Interactions rejected by the per-user or per-group rate limit");
+    }
+
+    private Metrics() {}
+
+    /**
+     * Renders one label pair, e.g. label("command", "rate-group") -> command="rate-group".
+     * Join several with a comma.
+     */
+    public static String label(String key, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return key + "=\"" + escaped + "\"";
+    }
+
+    // Records the time since startNanos (from System.nanoTime()) in a histogram
+    public static void observe(String name, String labels, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        HISTOGRAMS.computeIfAbsent(new Series(name, labels), s -> new Histogram()).observe(seconds);
+    }
+
+    public static void increment(String name, String labels) {
+        COUNTERS.computeIfAbsent(new Series(name, labels), s -> new LongAdder()).increment();
+    }
+
+    // A repository method body; storage failures are the only checked exceptions it may throw
+    @FunctionalInterface
+    public interface Query<T> {
+        T run() throws SQLException, IOException;
+    }
+
+    /**
+     * Runs a repository method and records its latency under the query name. A storage failure
+     * (SQLException / IOException) is counted, logged and answered with fallback, as the repositories promise.
+     */
+    public static <T> T query(String query, T fallback, Query<T> body) {
+        long start = System.nanoTime();
+        try {
+            return body.run();
+        } catch (SQLException | IOException e) {
+            queryError(query);
+            e.printStackTrace();
+            return fallback;
+        } finally {
+            observeQuery(query, start);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Update {
+        void run() throws SQLException, IOException;
+    }
+
+    // query() for a method without a result; false if it failed
+    public static boolean update(String query, Update body) {
+        return query(query, false, () -> {
+            body.run();
+            return true;
+        });
+    }
+
+    // Shorthands for the repositories
+    public static void observeQuery(String query, long startNanos) {
+        observe("vrcbot_query_duration_seconds", label("query", query), startNanos);
+    }
+
+    public static void queryError(String query) {
+        increment("vrcbot_query_errors_total", label("query", query));
+    }
+
+    // A value that is read at scrape time
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        HELP.put(name, help);
+        GAUGES.put(new Series(name, ""), new Gauge("gauge", value));
+    }
+
+    // A monotonically increasing value that is kept somewhere else and read at scrape time
+    public static void counter(String name, String help, DoubleSupplier value) {
+        HELP.put(name, help);
+        GAUGES.put(new Series(name, ""), new Gauge("counter", value));
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4).
+     */
+    public static String scrape() {
+        Map<String, StringBuilder> families = new TreeMap<>();
+
+        HISTOGRAMS.forEach((series, h) -> {
+            StringBuilder sb = family(families, series.name(), "histogram");
+            String prefix = series.labels().isEmpty() ? "" : series.labels() + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += h.buckets[i].sum();
+                sb.append(series.name()).append("_bucket{").append(prefix)
+                        .append("le=\"").append(BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            long count = h.count.sum();
+            sb.append(series.name()).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(count).append('\n');
+            sb.append(series.name()).append("_sum").append(braces(series.labels())).append(' ').append(h.sum.sum()).append('\n');
+            sb.append(series.name()).append("_count").append(braces(series.labels())).append(' ').append(count).append('\n');
+        });
+
+        COUNTERS.forEach((series, c) -> family(families, series.name(), "counter")
+                .append(series.name()).append(braces(series.labels())).append(' ').append(c.sum()).append('\n'));
+
+        GAUGES.forEach((series, g) -> family(families, series.name(), g.type())
+                .append(series.name()).append(' ').append(g.value().getAsDouble()).append('\n'));
+
+        StringBuilder out = new StringBuilder();
+        families.values().forEach(out::append);
+        return out.toString();
+    }
+
+    private static StringBuilder family(Map<String, StringBuilder> families, String name, String type) {
+        return families.computeIfAbsent(name, n -> {
+            StringBuilder sb = new StringBuilder();
+            String help = HELP.get(n);
+            if (help != null) sb.append("# HELP ").append(n).append(' ').append(help).append('\n');
+            sb.append("# TYPE ").append(n).append(' ').append(type).append('\n');
+            return sb;
+        });
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+}
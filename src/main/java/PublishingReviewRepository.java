@@ -0,0 +1,121 @@
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * ReviewRepository decorator that tells ReviewEvents about every committed review write, so the in-memory
+ * indexes (autocomplete, leaderboard, trending, search) stay in sync no matter who writes.
+ *
+ * What is published comes from the write's own ReviewChange, read inside the write, so two concurrent edits
+ * of the same review publish orig -> A and A -> B instead of two changes from the same original.
+ * Async writes are published when they complete, on the thread that committed them; the returned future
+ * completes after that, and a caller's timeout on it can't cancel the publishing.
+ */
+public class PublishingReviewRepository implements ReviewRepository {
+
+    private final ReviewRepository delegate;
+    private final ReviewEvents events;
+
+    public PublishingReviewRepository(ReviewRepository delegate, ReviewEvents events) {
+        this.delegate = delegate;
+        this.events = events;
+    }
+
+    @Override
+    public void upsertReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        upsertReviewAsync(groupId, discordUserId, rating, asksForDob, comment).join();
+    }
+
+    @Override
+    public CompletableFuture<ReviewChange> upsertReviewAsync(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return published(delegate.upsertReviewAsync(groupId, discordUserId, rating, asksForDob, comment), this::publish);
+    }
+
+    @Override
+    public RateResult rateGroup(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return rateGroupAsync(groupId, discordUserId, rating, asksForDob, comment).join();
+    }
+
+    @Override
+    public CompletableFuture<RateResult> rateGroupAsync(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return published(delegate.rateGroupAsync(groupId, discordUserId, rating, asksForDob, comment), result -> publish(result.change()));
+    }
+
+    @Override
+    public void updateReview(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        updateReviewAsync(groupId, discordUserId, rating, asksForDob, comment).join();
+    }
+
+    @Override
+    public CompletableFuture<ReviewChange> updateReviewAsync(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        return published(delegate.updateReviewAsync(groupId, discordUserId, rating, asksForDob, comment), this::publish);
+    }
+
+    private void publish(ReviewChange change) {
+        if (change.after() == null) return; // failed, or nothing changed
+        if (change.before() != null) {
+            events.reviewUpdated(change.before(), change.after());
+        } else {
+            events.reviewAdded(change.after());
+        }
+    }
+
+    // The returned future completes after publish ran; it is a copy, so completing it early leaves publishing alone
+    private static <T> CompletableFuture<T> published(CompletableFuture<T> write, Consumer<T> publish) {
+        return write.thenApply(result -> {
+            publish.accept(result);
+            return result;
+        }).copy();
+    }
+
+    @Override
+    public GroupStats getGroupStats(String groupId) {
+        return delegate.getGroupStats(groupId);
+    }
+
+    @Override
+    public List<GroupStats> getAllGroupStats() {
+        return delegate.getAllGroupStats();
+    }
+
+    @Override
+    public void forEachReview(Consumer<GroupReview> action) {
+        delegate.forEachReview(action);
+    }
+
+    @Override
+    public void forEachReviewSince(Timestamp since, Consumer<GroupReview> action) {
+        delegate.forEachReviewSince(since, action);
+    }
+
+    @Override
+    public List<GroupReview> getAllReviews(String groupId) {
+        return delegate.getAllReviews(groupId);
+    }
+
+    @Override
+    public List<GroupReview> getReviewsAfter(String groupId, ReviewCursor cursor, int limit) {
+        return delegate.getReviewsAfter(groupId, cursor, limit);
+    }
+
+    @Override
+    public List<GroupReview> getReviewsBefore(String groupId, ReviewCursor cursor, int limit) {
+        return delegate.getReviewsBefore(groupId, cursor, limit);
+    }
+
+    @Override
+    public boolean hasUserReviewed(String groupId, String discordUserId) {
+        return delegate.hasUserReviewed(groupId, discordUserId);
+    }
+
+    @Override
+    public GroupReview getUserReview(String groupId, String discordUserId) {
+        return delegate.getUserReview(groupId, discordUserId);
+    }
+
+    @Override
+    public List<GroupReview> getReviewsByUser(String discordUserId) {
+        return delegate.getReviewsByUser(discordUserId);
+    }
+}
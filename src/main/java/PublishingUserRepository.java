@@ -0,0 +1,39 @@
+import java.util.List;
+
+/**
+ * UserRepository decorator for the one user write that removes reviews: deleteAllUserData tells
+ * ReviewEvents about every review it deleted, like PublishingReviewRepository does for review writes.
+ */
+public class PublishingUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+    private final ReviewEvents events;
+
+    public PublishingUserRepository(UserRepository delegate, ReviewEvents events) {
+        this.delegate = delegate;
+        this.events = events;
+    }
+
+    @Override
+    public void linkUser(String discordId, String vrcUserId, String vrcDisplayName) {
+        delegate.linkUser(discordId, vrcUserId, vrcDisplayName);
+    }
+
+    @Override
+    public String getVrcUserId(String discordId) {
+        return delegate.getVrcUserId(discordId);
+    }
+
+    @Override
+    public void unlinkUser(String discordId) {
+        delegate.unlinkUser(discordId);
+    }
+
+    // Only what the delete itself removed; empty if it failed
+    @Override
+    public List<GroupReview> deleteAllUserData(String discordId) {
+        List<GroupReview> deleted = delegate.deleteAllUserData(discordId);
+        deleted.forEach(events::reviewRemoved);
+        return deleted;
+    }
+}
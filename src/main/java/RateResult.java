@@ -0,0 +1,17 @@
+/**
+ * Outcome of ReviewRepository.rateGroup. stats holds the group numbers after the write
+ * and is only set when the review was saved; change is the added review (ReviewChange.NONE otherwise).
+ */
+public record RateResult(Status status, GroupStats stats, ReviewChange change) {
+
+    public enum Status {
+        SAVED,
+        NOT_LINKED,
+        ALREADY_REVIEWED,
+        FAILED
+    }
+
+    public static RateResult of(Status status) {
+        return new RateResult(status, null, status == Status.FAILED ? ReviewChange.FAILED : ReviewChange.NONE);
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Outcome of a review write, as seen inside the write itself (its transaction, its write-behind batch or the
+ * LogStore write lock), so it can be published without a separate read that races other writes.
+ * before and after are the stored review around the write; before is null when the write added it.
+ * Both are null when there is nothing to publish: the write failed (saved false) or changed nothing.
+ */
+public record ReviewChange(boolean saved, GroupReview before, GroupReview after) {
+
+    public static final ReviewChange FAILED = new ReviewChange(false, null, null);
+    // Saved, but nothing to publish; see ReviewWriteBehind for writes folded into a later one
+    public static final ReviewChange NONE = new ReviewChange(true, null, null);
+
+    public static ReviewChange of(GroupReview before, GroupReview after) {
+        return new ReviewChange(true, before, after);
+    }
+}
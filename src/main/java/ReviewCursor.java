@@ -0,0 +1,17 @@
+import java.sql.Timestamp;
+
+/**
+ * Position of a review in the listing order of a group (created_at DESC, discord_user_id DESC).
+ * Small enough to be carried around in button component IDs, so paging needs no server-side state.
+ */
+public record ReviewCursor(long createdAtMillis, String discordUserId) {
+
+    public static ReviewCursor of(GroupReview review) {
+        long createdAt = review.getCreatedAt() != null ? review.getCreatedAt().getTime() : 0L;
+        return new ReviewCursor(createdAt, review.getDiscordUserId());
+    }
+
+    public Timestamp createdAt() {
+        return new Timestamp(createdAtMillis);
+    }
+}
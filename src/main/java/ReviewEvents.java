@@ -0,0 +1,48 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Passes review writes on to every registered listener. A listener that throws is logged and
+ * skipped, so a broken index can't fail the command that made the write.
+ */
+public class ReviewEvents implements ReviewListener {
+
+    private final List<ReviewListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void register(ReviewListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void reviewAdded(GroupReview review) {
+        for (ReviewListener listener : listeners) {
+            try {
+                listener.reviewAdded(review);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void reviewUpdated(GroupReview before, GroupReview after) {
+        for (ReviewListener listener : listeners) {
+            try {
+                listener.reviewUpdated(before, after);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void reviewRemoved(GroupReview review) {
+        for (ReviewListener listener : listeners) {
+            try {
+                listener.reviewRemoved(review);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
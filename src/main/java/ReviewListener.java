@@ -0,0 +1,13 @@
+/**
+ * Gets told about review writes after they are committed, to keep in-memory indexes in sync without
+ * reading them back from storage. Called by PublishingReviewRepository / PublishingUserRepository on the
+ * thread that made the write, or for queued writes the one that committed them, so keep it short.
+ */
+public interface ReviewListener {
+
+    default void reviewAdded(GroupReview review) {}
+
+    default void reviewUpdated(GroupReview before, GroupReview after) {}
+
+    default void reviewRemoved(GroupReview review) {}
+}
@@ -1,230 +1,82 @@
-import java.sql.*;
-import java.util.ArrayList;
+import java.sql.Timestamp;
 import java.util.List;
-
-public class ReviewRepository {
-
-    private final DatabaseManager dbManager;
-
-    public ReviewRepository(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Storage for group reviews and the per-group summary numbers.
+ * Implementations: JdbcReviewRepository (MariaDB) and LogReviewRepository (embedded log).
+ * Errors are logged and reported as "nothing found" / FAILED, never thrown; except for the bulk reads that
+ * load in-memory indexes, which throw IllegalStateException: an index silently missing part of the data
+ * would be worse than not starting.
+ */
+public interface ReviewRepository {
+
+    // Adds a review or replaces rating, DOB flag and comment of an existing one
+    void upsertReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment);
+
+    /**
+     * Async variants of the writes: they may only queue the write (see ReviewWriteBehind) and complete once
+     * it is committed, with what it changed (ReviewChange.FAILED / FAILED if it could not be saved).
+     * Callers should wait for the future outside of InteractionExecutor.db, so a queued write doesn't
+     * hold a database permit. The default just runs the synchronous rateGroup.
+     */
+    CompletableFuture<ReviewChange> upsertReviewAsync(String groupId, String discordUserId, int rating, boolean asksForDob, String comment);
+
+    default CompletableFuture<RateResult> rateGroupAsync(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return CompletableFuture.completedFuture(rateGroup(groupId, discordUserId, rating, asksForDob, comment));
     }
 
-    // 1. Add or Update a Review
-    public void upsertReview(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
-        String sql = "INSERT INTO group_reviews (group_id, discord_user_id, rating, asks_for_dob, comment) " +
-                "VALUES (?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE rating = ?, asks_for_dob = ?, comment = ?";
+    CompletableFuture<ReviewChange> updateReviewAsync(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment);
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Adds a review only if the user is linked and has not reviewed the group yet, atomically,
+     * and returns the group numbers after the write.
+     */
+    RateResult rateGroup(String groupId, String discordUserId, int rating, boolean asksForDob, String comment);
 
-            // Insert Parameters
-            stmt.setString(1, groupId);
-            stmt.setString(2, discordUserId);
-            stmt.setInt(3, rating);
-            stmt.setBoolean(4, asksForDob); // Set the boolean
-            stmt.setString(5, comment);
+    GroupStats getGroupStats(String groupId);
 
-            // Update Parameters (if entry exists)
-            stmt.setInt(6, rating);
-            stmt.setBoolean(7, asksForDob); // Update the boolean
-            stmt.setString(8, comment);
+    // Numbers of every group with at least one review; reads everything, meant for loading in-memory indexes at startup.
+    // Throws IllegalStateException if the read fails.
+    List<GroupStats> getAllGroupStats();
 
-            stmt.executeUpdate();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    // Hands every review to the action, one at a time instead of as one big list; for loading in-memory indexes at startup.
+    // Throws IllegalStateException if the read fails.
+    void forEachReview(Consumer<GroupReview> action);
 
-    // 2. Get Average Rating
-    public double getAverageRating(String groupId) {
-        String sql = "SELECT AVG(rating) as avg_rating FROM group_reviews WHERE group_id = ?";
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, groupId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) return rs.getDouble("avg_rating");
-        } catch (SQLException e) { e.printStackTrace(); }
-        return 0.0;
-    }
+    // Like forEachReview, but only reviews created at or after since, oldest first. Throws IllegalStateException if the read fails.
+    void forEachReviewSince(Timestamp since, Consumer<GroupReview> action);
 
-    // 3. NEW: Check if the group is considered "Age Restricted"
-    // Returns true if more than 50% of reviewers say it asks for DOB
-    public boolean isLikelyAgeGated(String groupId) {
-        String sql = "SELECT " +
-                "SUM(CASE WHEN asks_for_dob = 1 THEN 1 ELSE 0 END) as yes_votes, " +
-                "COUNT(*) as total_votes " +
-                "FROM group_reviews WHERE group_id = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, groupId);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                int yesVotes = rs.getInt("yes_votes");
-                int totalVotes = rs.getInt("total_votes");
-                if (totalVotes == 0) return false;
-
-                // If more than 50% say Yes, we treat it as age-gated
-                return ((double) yesVotes / totalVotes) > 0.5;
-            }
-        } catch (SQLException e) { e.printStackTrace(); }
-        return false;
+    default double getAverageRating(String groupId) {
+        return getGroupStats(groupId).averageRating();
     }
 
-    // 4. Get Recent Reviews
-    public List<GroupReview> getAllReviews(String groupId) {
-        List<GroupReview> reviews = new ArrayList<>();
-        String sql = "SELECT * FROM group_reviews WHERE group_id = ? ORDER BY created_at DESC";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, groupId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                reviews.add(new GroupReview(
-                        rs.getString("group_id"),
-                        rs.getString("discord_user_id"),
-                        rs.getInt("rating"),
-                        rs.getBoolean("asks_for_dob"), // Retrieve boolean
-                        rs.getString("comment"),
-                        rs.getTimestamp("created_at")
-                ));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return reviews;
+    // Returns true if more than 50% of reviewers say the group asks for DOB
+    default boolean isLikelyAgeGated(String groupId) {
+        return getGroupStats(groupId).isLikelyAgeGated();
     }
 
-    public boolean hasUserReviewed(String groupId, String discordUserId) {
-        String sql = "SELECT COUNT(*) as review_count FROM group_reviews WHERE group_id = ? AND discord_user_id = ?";
+    // Every review of a group, newest first
+    List<GroupReview> getAllReviews(String groupId);
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Keyset pagination: returns up to limit reviews that come after the cursor in listing order
+     * (created_at DESC, discord_user_id DESC). A null cursor starts at the newest review of the group.
+     */
+    List<GroupReview> getReviewsAfter(String groupId, ReviewCursor cursor, int limit);
 
-            stmt.setString(1, groupId);
-            stmt.setString(2, discordUserId);
-            ResultSet rs = stmt.executeQuery();
+    // Up to limit reviews right before the cursor in listing order, closest one first
+    List<GroupReview> getReviewsBefore(String groupId, ReviewCursor cursor, int limit);
 
-            if (rs.next()) {
-                return rs.getInt("review_count") > 0;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
-    }
+    boolean hasUserReviewed(String groupId, String discordUserId);
 
-    // Get a specific user's review for a group
-    public GroupReview getUserReview(String groupId, String discordUserId) {
-        String sql = "SELECT * FROM group_reviews WHERE group_id = ? AND discord_user_id = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, groupId);
-            stmt.setString(2, discordUserId);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                return new GroupReview(
-                        rs.getString("group_id"),
-                        rs.getString("discord_user_id"),
-                        rs.getInt("rating"),
-                        rs.getBoolean("asks_for_dob"),
-                        rs.getString("comment"),
-                        rs.getTimestamp("created_at")
-                );
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
-    }
+    // null if the user did not review the group
+    GroupReview getUserReview(String groupId, String discordUserId);
 
-    // Update specific fields of a review
-    public void updateReview(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
-        StringBuilder sql = new StringBuilder("UPDATE group_reviews SET ");
-        List<Object> params = new ArrayList<>();
-
-        boolean hasUpdates = false;
-
-        if (rating != null) {
-            sql.append("rating = ?");
-            params.add(rating);
-            hasUpdates = true;
-        }
-
-        if (asksForDob != null) {
-            if (hasUpdates) sql.append(", ");
-            sql.append("asks_for_dob = ?");
-            params.add(asksForDob);
-            hasUpdates = true;
-        }
-
-        if (comment != null) {
-            if (hasUpdates) sql.append(", ");
-            sql.append("comment = ?");
-            params.add(comment);
-            hasUpdates = true;
-        }
-
-        if (!hasUpdates) return; // No fields to update
-
-        sql.append(" WHERE group_id = ? AND discord_user_id = ?");
-        params.add(groupId);
-        params.add(discordUserId);
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-
-            for (int i = 0; i < params.size(); i++) {
-                Object param = params.get(i);
-                if (param instanceof Integer) {
-                    stmt.setInt(i + 1, (Integer) param);
-                } else if (param instanceof Boolean) {
-                    stmt.setBoolean(i + 1, (Boolean) param);
-                } else if (param instanceof String) {
-                    stmt.setString(i + 1, (String) param);
-                }
-            }
-
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+    // Updates the non-null fields of an existing review, does nothing if there is none
+    void updateReview(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment);
 
-    // Get all reviews by a specific user
-    public List<GroupReview> getReviewsByUser(String discordUserId) {
-        List<GroupReview> reviews = new ArrayList<>();
-        String sql = "SELECT * FROM group_reviews WHERE discord_user_id = ? ORDER BY created_at DESC";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, discordUserId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                reviews.add(new GroupReview(
-                        rs.getString("group_id"),
-                        rs.getString("discord_user_id"),
-                        rs.getInt("rating"),
-                        rs.getBoolean("asks_for_dob"),
-                        rs.getString("comment"),
-                        rs.getTimestamp("created_at")
-                ));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return reviews;
-    }
+    // Every review of a user, newest first
+    List<GroupReview> getReviewsByUser(String discordUserId);
 }
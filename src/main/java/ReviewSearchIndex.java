@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over review comments, for /search-reviews.
+ * Comments are split into lowercase words; every word has a postings list of the reviews that contain it.
+ * Results are ranked by how many of the query words a review contains, then by BM25, so "ID check" finds
+ * reviews with both words first and reviews with only one of them after that.
+ *
+ * Only ids and word counts are kept, not the comments themselves; the handler loads the hits it shows.
+ */
+public class ReviewSearchIndex implements ReviewListener {
+
+    public record Hit(String groupId, String discordUserId, int matchedTerms, double score) {}
+
+    // Words too common to say anything about a review
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "no", "not", "of", "on", "or", "so", "that", "the", "their", "then", "there", "they", "this",
+            "to", "was", "were", "will", "with", "you", "i", "me", "my", "we", "our");
+
+    private static final int MAX_QUERY_TERMS = 8;
+
+    // BM25 parameters, the usual defaults
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Comparator<Hit> RANKING = Comparator
+            .comparingInt(Hit::matchedTerms)
+            .thenComparingDouble(Hit::score);
+
+    // One indexed review: its terms are kept so an update or delete can find its postings
+    private record Doc(String groupId, String discordUserId, String[] terms, int length) {}
+
+    // Parallel arrays of doc ids and term frequencies, unsorted; removal swaps the last entry in
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] freqs = new int[2];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        void remove(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    size--;
+                    docs[i] = docs[size];
+                    freqs[i] = freqs[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Score accumulators of one query, indexed by doc id; touched lists the ids that matched at least one term.
+     * Reused across queries instead of allocating two arrays the size of the index every time: a query
+     * only resets the slots it touched, so the arrays are all zero whenever they are in the pool.
+     */
+    private static final class Scratch {
+        double[] scores = new double[0];
+        int[] matched = new int[0];
+        int[] touched = new int[16];
+        int touchedCount;
+
+        void ensureCapacity(int docs) {
+            if (scores.length < docs) {
+                scores = Arrays.copyOf(scores, docs);
+                matched = Arrays.copyOf(matched, docs);
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+                matched[touched[i]] = 0;
+            }
+            touchedCount = 0;
+        }
+    }
+
+    // One Scratch per concurrent search at most; a ThreadLocal would allocate one per virtual thread
+    private final ConcurrentLinkedQueue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final List<Doc> docs = new ArrayList<>();
+    // Slots of removed reviews, reused by the next additions
+    private final List<Integer> freeIds = new ArrayList<>();
+    private long totalLength;
+
+    public ReviewSearchIndex() {
+        Metrics.gauge("vrcbot_search_index_reviews", "Reviews in the comment search index", this::size);
+        Metrics.gauge("vrcbot_search_index_terms", "Distinct words in the comment search index", this::terms);
+    }
+
+    // Startup load, fed by ReviewRepository.forEachReview
+    public void add(GroupReview review) {
+        lock.writeLock().lock();
+        try {
+            put(review);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The best limit reviews for a query, or nothing if the query has no searchable words.
+     */
+    public List<Hit> search(String query, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.size() > MAX_QUERY_TERMS) terms = terms.subList(0, MAX_QUERY_TERMS);
+        if (terms.isEmpty() || limit <= 0) return List.of();
+
+        Scratch scratch = scratchPool.poll();
+        if (scratch == null) scratch = new Scratch();
+        lock.readLock().lock();
+        try {
+            int live = docIds.size();
+            if (live == 0) return List.of();
+            double avgLength = (double) totalLength / live;
+
+            scratch.ensureCapacity(docs.size());
+            double[] scores = scratch.scores;
+            int[] matched = scratch.matched;
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) continue;
+                double idf = Math.log(1 + (live - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    int freq = list.freqs[i];
+                    double norm = K1 * (1 - B + B * docs.get(doc).length() / avgLength);
+                    scores[doc] += idf * freq * (K1 + 1) / (freq + norm);
+                    if (matched[doc]++ == 0) {
+                        if (scratch.touchedCount == scratch.touched.length) {
+                            scratch.touched = Arrays.copyOf(scratch.touched, scratch.touchedCount * 2);
+                        }
+                        scratch.touched[scratch.touchedCount++] = doc;
+                    }
+                }
+            }
+
+            // Keep the best limit in a min-heap instead of sorting every match
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, RANKING);
+            for (int i = 0; i < scratch.touchedCount; i++) {
+                int doc = scratch.touched[i];
+                Hit hit = new Hit(docs.get(doc).groupId(), docs.get(doc).discordUserId(), matched[doc], scores[doc]);
+                if (best.size() < limit) {
+                    best.add(hit);
+                } else if (RANKING.compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best);
+            hits.sort(RANKING.reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+            scratch.clear();
+            scratchPool.offer(scratch);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int terms() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void reviewAdded(GroupReview review) {
+        add(review);
+    }
+
+    @Override
+    public void reviewUpdated(GroupReview before, GroupReview after) {
+        // put() replaces whatever is indexed for the same group and user
+        add(after);
+    }
+
+    @Override
+    public void reviewRemoved(GroupReview review) {
+        lock.writeLock().lock();
+        try {
+            remove(key(review.getGroupId(), review.getDiscordUserId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lowercase words of letters and digits, without stop words and single characters.
+     * Used for comments and queries alike, so both are split the same way.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, i);
+                if (token.length() > 1 && !STOP_WORDS.contains(token)) tokens.add(token);
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void put(GroupReview review) {
+        String key = key(review.getGroupId(), review.getDiscordUserId());
+        remove(key);
+
+        List<String> tokens = tokenize(review.getComment());
+        if (tokens.isEmpty()) return;
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String token : tokens) {
+            freqs.merge(token, 1, Integer::sum);
+        }
+
+        Doc doc = new Doc(review.getGroupId(), review.getDiscordUserId(), freqs.keySet().toArray(new String[0]), tokens.size());
+        int id;
+        if (freeIds.isEmpty()) {
+            id = docs.size();
+            docs.add(doc);
+        } else {
+            id = freeIds.remove(freeIds.size() - 1);
+            docs.set(id, doc);
+        }
+        docIds.put(key, id);
+        totalLength += doc.length();
+        freqs.forEach((term, freq) -> postings.computeIfAbsent(term, t -> new Postings()).add(id, freq));
+    }
+
+    private void remove(String key) {
+        Integer id = docIds.remove(key);
+        if (id == null) return;
+
+        Doc doc = docs.get(id);
+        for (String term : doc.terms()) {
+            Postings list = postings.get(term);
+            list.remove(id);
+            if (list.size == 0) postings.remove(term);
+        }
+        totalLength -= doc.length();
+        docs.set(id, null);
+        freeIds.add(id);
+    }
+
+    private static String key(String groupId, String discordUserId) {
+        return groupId + '\n' + discordUserId;
+    }
+}
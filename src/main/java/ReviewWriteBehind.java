@@ -0,0 +1,421 @@
+import java.sql.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind queue for review writes (WRITE_BEHIND=true).
+ *
+ * Upserts, edits and /rate-group inserts are queued, and one background thread commits them as a single
+ * transaction with JDBC batches once maxBatch writes are waiting or the oldest one has waited maxDelay.
+ * The batch is replayed in order on the locked rows in memory, so several writes to the same review
+ * end up as one row write, and group_stats gets one delta per group. Every caller gets a future that
+ * completes after the commit, so /rate-group still reports the real outcome. A failed batch is retried
+ * write by write, so one bad write doesn't fail the others queued with it.
+ *
+ * The ReviewChange of a review goes to the last saved write to it in the batch, from the locked row before
+ * the batch to the row as stored; earlier writes to the same review are folded into it and get ReviewChange.NONE.
+ */
+public class ReviewWriteBehind implements AutoCloseable {
+
+    static final String UPSERT_SQL = "INSERT INTO group_reviews (group_id, discord_user_id, rating, asks_for_dob, comment, is_owner_review) " +
+            "VALUES (?, ?, ?, ?, ?, " + JdbcReviewRepository.OWNER_FLAG_SQL + ") " +
+            "ON DUPLICATE KEY UPDATE rating = VALUES(rating), asks_for_dob = VALUES(asks_for_dob), comment = VALUES(comment), " +
+            "is_owner_review = VALUES(is_owner_review)";
+
+    private enum Kind { UPSERT, UPDATE, RATE }
+
+    private record ReviewKey(String groupId, String discordUserId) {}
+
+    // One queued write; for UPDATE, null fields are left as they are
+    private record Write(Kind kind, ReviewKey key, Integer rating, Boolean asksForDob, String comment,
+                         long queuedAt, CompletableFuture<RateResult> result) {}
+
+    // Change of the group_stats numbers of one group within a batch
+    private static final class StatsDelta {
+        long ratingSum;
+        int count;
+        int dobYes;
+        final int[] stars = new int[5];
+
+        void add(GroupReview review, int sign) {
+            if (review == null) return;
+            ratingSum += (long) sign * review.getRating();
+            count += sign;
+            if (review.isAsksForDob()) dobYes += sign;
+            stars[review.getRating() - 1] += sign;
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wake = lock.newCondition();
+    private final ArrayDeque<Write> queue = new ArrayDeque<>();
+    private boolean closed;
+
+    private final Thread flusher;
+
+    public ReviewWriteBehind(DatabaseManager dbManager, int maxBatch, Duration maxDelay) {
+        this.dbManager = dbManager;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.flusher = Thread.ofPlatform().name("review-write-behind").daemon().start(this::run);
+
+        Metrics.gauge("vrcbot_write_behind_queued", "Review writes waiting for the next batch", this::queued);
+    }
+
+    public CompletableFuture<ReviewChange> upsert(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return enqueue(Kind.UPSERT, groupId, discordUserId, rating, asksForDob, comment).thenApply(RateResult::change);
+    }
+
+    public CompletableFuture<ReviewChange> update(String groupId, String discordUserId, Integer rating, Boolean asksForDob, String comment) {
+        return enqueue(Kind.UPDATE, groupId, discordUserId, rating, asksForDob, comment).thenApply(RateResult::change);
+    }
+
+    // Same checks as JdbcReviewRepository.rateGroup: the user must be linked and must not have reviewed the group
+    public CompletableFuture<RateResult> rate(String groupId, String discordUserId, int rating, boolean asksForDob, String comment) {
+        return enqueue(Kind.RATE, groupId, discordUserId, rating, asksForDob, comment);
+    }
+
+    private CompletableFuture<RateResult> enqueue(Kind kind, String groupId, String discordUserId,
+                                                  Integer rating, Boolean asksForDob, String comment) {
+        Write write = new Write(kind, new ReviewKey(groupId, discordUserId), rating, asksForDob, comment,
+                System.nanoTime(), new CompletableFuture<>());
+        lock.lock();
+        try {
+            if (closed) {
+                System.err.println("Review write-behind is closed, dropping " + kind + " for group " + groupId);
+                write.result().complete(RateResult.of(RateResult.Status.FAILED));
+                return write.result();
+            }
+            queue.add(write);
+            // Wake the flusher for the first write (starts the delay) and when a batch is full
+            if (queue.size() == 1 || queue.size() >= maxBatch) {
+                wake.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return write.result();
+    }
+
+    private int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<Write> batch = new ArrayList<>();
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    wake.awaitUninterruptibly();
+                }
+                if (queue.isEmpty()) return; // closed and drained
+
+                // Collect more writes until the batch is full or the oldest write has waited long enough
+                long deadline = queue.peek().queuedAt() + maxDelayNanos;
+                long remaining;
+                while (queue.size() < maxBatch && !closed && (remaining = deadline - System.nanoTime()) > 0) {
+                    wake.awaitNanos(remaining);
+                }
+                while (!queue.isEmpty() && batch.size() < maxBatch) {
+                    batch.add(queue.poll());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                flush(batch);
+            } catch (Throwable t) {
+                // flush() already failed the batch; the flusher has to keep serving the queue
+                t.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Commits a batch and completes its futures. If the batch fails as a whole, for whatever reason,
+     * its writes are retried one at a time, so a single bad write only fails itself. Every future is
+     * completed when this returns, and nothing escapes into the flusher loop.
+     */
+    private void flush(List<Write> batch) {
+        try {
+            List<RateResult> results = commit(batch);
+            if (results == null && batch.size() > 1) {
+                // In order, so writes to the same review still apply one after the other
+                for (Write write : batch) {
+                    flush(List.of(write));
+                }
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(results != null ? results.get(i) : RateResult.of(RateResult.Status.FAILED));
+            }
+        } finally {
+            // No-op for the futures completed above
+            for (Write write : batch) {
+                write.result().complete(RateResult.of(RateResult.Status.FAILED));
+            }
+        }
+    }
+
+    // One result per write, or null if the transaction failed (already counted and logged)
+    private List<RateResult> commit(List<Write> batch) {
+        try {
+            return Metrics.query("ReviewWriteBehind.flush", null, () -> {
+                try (Connection conn = dbManager.getConnection()) {
+                    conn.setAutoCommit(false);
+                    try {
+                        List<RateResult> applied = apply(conn, batch);
+                        conn.commit();
+                        return applied;
+                    } catch (Throwable t) {
+                        conn.rollback();
+                        throw t;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            // Not a database error: a bug in the replay, a driver RuntimeException, an Error
+            Metrics.queryError("ReviewWriteBehind.flush");
+            t.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Replays the batch in order on the current rows (locked until commit), then writes the final
+     * state of every changed review and one group_stats delta per group. Returns one result per write.
+     */
+    private List<RateResult> apply(Connection conn, List<Write> batch) throws SQLException {
+        Set<ReviewKey> keys = new LinkedHashSet<>();
+        Set<String> raters = new HashSet<>();
+        for (Write write : batch) {
+            keys.add(write.key());
+            if (write.kind() == Kind.RATE) raters.add(write.key().discordUserId());
+        }
+        Map<ReviewKey, GroupReview> before = lockReviews(conn, keys);
+        Set<String> linked = linkedUsers(conn, raters);
+
+        Map<ReviewKey, GroupReview> after = new HashMap<>(before);
+        List<RateResult.Status> statuses = new ArrayList<>(batch.size());
+        for (Write write : batch) {
+            ReviewKey key = write.key();
+            GroupReview current = after.get(key);
+            switch (write.kind()) {
+                case RATE -> {
+                    if (!linked.contains(key.discordUserId())) {
+                        statuses.add(RateResult.Status.NOT_LINKED);
+                        continue;
+                    }
+                    if (current != null) {
+                        statuses.add(RateResult.Status.ALREADY_REVIEWED);
+                        continue;
+                    }
+                    after.put(key, new GroupReview(key.groupId(), key.discordUserId(),
+                            write.rating(), write.asksForDob(), write.comment(), null));
+                }
+                case UPSERT -> after.put(key, new GroupReview(key.groupId(), key.discordUserId(),
+                        write.rating(), write.asksForDob(), write.comment(), current != null ? current.getCreatedAt() : null));
+                case UPDATE -> {
+                    // Like the UPDATE statement: nothing happens if there is no review
+                    if (current != null) {
+                        after.put(key, new GroupReview(key.groupId(), key.discordUserId(),
+                                write.rating() != null ? write.rating() : current.getRating(),
+                                write.asksForDob() != null ? write.asksForDob() : current.isAsksForDob(),
+                                write.comment() != null ? write.comment() : current.getComment(),
+                                current.getCreatedAt()));
+                    }
+                }
+            }
+            statuses.add(RateResult.Status.SAVED);
+        }
+
+        Map<String, StatsDelta> deltas = new HashMap<>();
+        Set<ReviewKey> changed = new HashSet<>();
+        try (PreparedStatement upsert = conn.prepareStatement(UPSERT_SQL)) {
+            for (Map.Entry<ReviewKey, GroupReview> entry : after.entrySet()) {
+                GroupReview previous = before.get(entry.getKey());
+                GroupReview review = entry.getValue();
+                if (review == previous) continue; // untouched
+                changed.add(entry.getKey());
+
+                upsert.setString(1, review.getGroupId());
+                upsert.setString(2, review.getDiscordUserId());
+                upsert.setInt(3, review.getRating());
+                upsert.setBoolean(4, review.isAsksForDob());
+                upsert.setString(5, review.getComment());
+                upsert.setString(6, review.getDiscordUserId());
+                upsert.setString(7, review.getGroupId());
+                upsert.addBatch();
+
+                StatsDelta delta = deltas.computeIfAbsent(review.getGroupId(), k -> new StatsDelta());
+                delta.add(previous, -1);
+                delta.add(review, 1);
+            }
+            upsert.executeBatch();
+        }
+
+        try (PreparedStatement stats = conn.prepareStatement(JdbcReviewRepository.GROUP_STATS_DELTA_SQL)) {
+            for (Map.Entry<String, StatsDelta> entry : deltas.entrySet()) {
+                StatsDelta delta = entry.getValue();
+                JdbcReviewRepository.bindStatsDelta(stats, entry.getKey(), delta.ratingSum, delta.count, delta.dobYes, delta.stars);
+                stats.addBatch();
+            }
+            stats.executeBatch();
+        }
+
+        // /rate-group shows the group numbers after its review, here: after the whole batch
+        Set<String> ratedGroups = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).kind() == Kind.RATE && statuses.get(i) == RateResult.Status.SAVED) {
+                ratedGroups.add(batch.get(i).key().groupId());
+            }
+        }
+        Map<String, GroupStats> groupStats = readGroupStats(conn, ratedGroups);
+
+        // The changed rows as stored, with the created_at and owner flag the database gave them
+        Map<ReviewKey, GroupReview> stored = changed.isEmpty() ? Map.of() : lockReviews(conn, changed);
+        Map<ReviewKey, Integer> lastSaved = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (statuses.get(i) == RateResult.Status.SAVED) lastSaved.put(batch.get(i).key(), i);
+        }
+
+        List<RateResult> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Write write = batch.get(i);
+            RateResult.Status status = statuses.get(i);
+            if (status != RateResult.Status.SAVED) {
+                results.add(RateResult.of(status));
+                continue;
+            }
+            ReviewKey key = write.key();
+            ReviewChange change = changed.contains(key) && lastSaved.get(key) == i
+                    ? ReviewChange.of(before.get(key), stored.get(key))
+                    : ReviewChange.NONE;
+            GroupStats stats = write.kind() == Kind.RATE
+                    ? groupStats.getOrDefault(key.groupId(), GroupStats.empty(key.groupId()))
+                    : null;
+            results.add(new RateResult(status, stats, change));
+        }
+        return results;
+    }
+
+    // The batch statements for n keys, shared with SchemaMigrator.selfCheck
+    static String lockReviewsSql(int n) {
+        return "SELECT * FROM group_reviews WHERE "
+                + String.join(" OR ", Collections.nCopies(n, "(group_id = ? AND discord_user_id = ?)"))
+                + " FOR UPDATE";
+    }
+
+    static String linkedUsersSql(int n) {
+        return "SELECT discord_user_id FROM user_links WHERE discord_user_id IN ("
+                + String.join(", ", Collections.nCopies(n, "?")) + ") LOCK IN SHARE MODE";
+    }
+
+    static String groupStatsSql(int n) {
+        return "SELECT * FROM group_stats WHERE group_id IN (" + String.join(", ", Collections.nCopies(n, "?")) + ")";
+    }
+
+    // Current rows of the batch's reviews, locked until the transaction ends (one primary key range scan)
+    private Map<ReviewKey, GroupReview> lockReviews(Connection conn, Set<ReviewKey> keys) throws SQLException {
+        Map<ReviewKey, GroupReview> rows = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(lockReviewsSql(keys.size()))) {
+            int i = 1;
+            for (ReviewKey key : keys) {
+                stmt.setString(i++, key.groupId());
+                stmt.setString(i++, key.discordUserId());
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                GroupReview review = JdbcReviewRepository.mapReview(rs);
+                rows.put(new ReviewKey(review.getGroupId(), review.getDiscordUserId()), review);
+            }
+        }
+        return rows;
+    }
+
+    // Which of these users are linked; shared locks keep a concurrent unlink from slipping in before commit
+    private Set<String> linkedUsers(Connection conn, Set<String> discordUserIds) throws SQLException {
+        Set<String> linked = new HashSet<>();
+        if (discordUserIds.isEmpty()) return linked;
+
+        try (PreparedStatement stmt = conn.prepareStatement(linkedUsersSql(discordUserIds.size()))) {
+            int i = 1;
+            for (String id : discordUserIds) {
+                stmt.setString(i++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                linked.add(rs.getString("discord_user_id"));
+            }
+        }
+        return linked;
+    }
+
+    private Map<String, GroupStats> readGroupStats(Connection conn, Set<String> groupIds) throws SQLException {
+        Map<String, GroupStats> stats = new HashMap<>();
+        if (groupIds.isEmpty()) return stats;
+
+        try (PreparedStatement stmt = conn.prepareStatement(groupStatsSql(groupIds.size()))) {
+            int i = 1;
+            for (String id : groupIds) {
+                stmt.setString(i++, id);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String groupId = rs.getString("group_id");
+                stats.put(groupId, new GroupStats(
+                        groupId,
+                        rs.getLong("rating_sum"),
+                        rs.getInt("review_count"),
+                        rs.getInt("dob_yes_count"),
+                        new int[] {
+                                rs.getInt("stars_1"),
+                                rs.getInt("stars_2"),
+                                rs.getInt("stars_3"),
+                                rs.getInt("stars_4"),
+                                rs.getInt("stars_5")
+                        }
+                ));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Commits everything still queued and stops the flusher.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            wake.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
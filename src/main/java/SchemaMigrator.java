@@ -0,0 +1,259 @@
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned schema bootstrap, run once at startup by DatabaseManager.
+ * Every migration runs at most once per database; applied versions are recorded in schema_version.
+ * The statements are written so they also work on databases that were set up by hand before
+ * (IF NOT EXISTS everywhere), so an existing install just gets the missing pieces.
+ */
+public class SchemaMigrator {
+
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, MigrationStep step) {}
+
+    // One entry per statement in the JDBC repositories and ReviewWriteBehind, checked with EXPLAIN by selfCheck().
+    // The SQL comes from the repositories' own constants, so the check can't drift from what they run.
+    // fullScan marks the startup loads that read a whole table on purpose: still EXPLAINed, but not warned about.
+    private record Query(String name, String sql, boolean fullScan) {
+        Query(String name, String sql) {
+            this(name, sql, false);
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "base tables", conn -> execute(conn,
+                    "CREATE TABLE IF NOT EXISTS group_reviews (" +
+                            "group_id VARCHAR(64) NOT NULL, " +
+                            "discord_user_id VARCHAR(32) NOT NULL, " +
+                            "rating TINYINT NOT NULL, " +
+                            "asks_for_dob BOOLEAN NOT NULL DEFAULT FALSE, " +
+                            "comment TEXT, " +
+                            "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                            "PRIMARY KEY (group_id, discord_user_id))",
+                    "CREATE TABLE IF NOT EXISTS user_links (" +
+                            "discord_user_id VARCHAR(32) NOT NULL PRIMARY KEY, " +
+                            "vrc_user_id VARCHAR(64) NOT NULL, " +
+                            "vrc_display_name VARCHAR(255), " +
+                            "linked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)")),
+
+            new Migration(2, "indexes for review and link queries", conn -> {
+                // Upsert key (ON DUPLICATE KEY / INSERT IGNORE). Already the primary key on tables created above.
+                if (!hasUniqueKey(conn, "group_reviews", "group_id", "discord_user_id")) {
+                    execute(conn, "CREATE UNIQUE INDEX uq_group_reviews_group_user ON group_reviews (group_id, discord_user_id)");
+                }
+                execute(conn,
+                        // /list-reviews keyset paging: WHERE group_id = ? ORDER BY created_at DESC, discord_user_id DESC
+                        "CREATE INDEX IF NOT EXISTS idx_group_reviews_group_created " +
+                                "ON group_reviews (group_id, created_at, discord_user_id)",
+                        // getReviewsByUser / deleteAllUserData: WHERE discord_user_id = ? ORDER BY created_at DESC
+                        "CREATE INDEX IF NOT EXISTS idx_group_reviews_user_created " +
+                                "ON group_reviews (discord_user_id, created_at)",
+                        // Reverse lookup VRChat user -> Discord user
+                        "CREATE INDEX IF NOT EXISTS idx_user_links_vrc_user ON user_links (vrc_user_id)");
+            }),
+
+            new Migration(3, "group_stats summary table", conn -> {
+                execute(conn,
+                        "CREATE TABLE IF NOT EXISTS group_stats (" +
+                                "group_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                                "rating_sum BIGINT NOT NULL DEFAULT 0, " +
+                                "review_count INT NOT NULL DEFAULT 0, " +
+                                "dob_yes_count INT NOT NULL DEFAULT 0, " +
+                                "stars_1 INT NOT NULL DEFAULT 0, " +
+                                "stars_2 INT NOT NULL DEFAULT 0, " +
+                                "stars_3 INT NOT NULL DEFAULT 0, " +
+                                "stars_4 INT NOT NULL DEFAULT 0, " +
+                                "stars_5 INT NOT NULL DEFAULT 0)");
+                // Rebuild from scratch, so installs that had the table before migrations start consistent
+                execute(conn,
+                        "DELETE FROM group_stats",
+                        "INSERT INTO group_stats " +
+                                "(group_id, rating_sum, review_count, dob_yes_count, stars_1, stars_2, stars_3, stars_4, stars_5) " +
+                                "SELECT group_id, SUM(rating), COUNT(*), SUM(asks_for_dob = 1), " +
+                                "SUM(rating = 1), SUM(rating = 2), SUM(rating = 3), SUM(rating = 4), SUM(rating = 5) " +
+                                "FROM group_reviews GROUP BY group_id");
+            }),
+
+            new Migration(4, "group_index for shortcode lookups", conn -> execute(conn,
+                    "CREATE TABLE IF NOT EXISTS group_index (" +
+                            "short_code VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                            "group_id VARCHAR(64) NOT NULL, " +
+                            "name VARCHAR(255), " +
+                            "owner_id VARCHAR(64), " +
+                            "refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)")),
+
+            new Migration(5, "is_owner_review flag on group_reviews", conn -> execute(conn,
+                    "ALTER TABLE group_reviews ADD COLUMN IF NOT EXISTS is_owner_review BOOLEAN NOT NULL DEFAULT FALSE",
+                    // Backfill from the links and groups known so far, later changes keep it up to date
+                    "UPDATE group_reviews r " +
+                            "JOIN user_links l ON l.discord_user_id = r.discord_user_id " +
+                            "JOIN group_index g ON g.short_code = r.group_id " +
+                            "SET r.is_owner_review = COALESCE(l.vrc_user_id = g.owner_id, FALSE)")),
+
+            // Startup load of the trending counters: WHERE created_at >= ? ORDER BY created_at
+            new Migration(6, "index for recent reviews", conn -> execute(conn,
+                    "CREATE INDEX IF NOT EXISTS idx_group_reviews_created ON group_reviews (created_at)"))
+    );
+
+    private static final List<Query> QUERIES = List.of(
+            new Query("ReviewRepository.upsertReview", JdbcReviewRepository.UPSERT_SQL),
+            new Query("ReviewRepository.rateGroup", JdbcReviewRepository.RATE_SQL),
+            new Query("ReviewRepository.rateGroup.linked", JdbcReviewRepository.LINKED_SQL),
+            new Query("ReviewRepository.getGroupStats", JdbcReviewRepository.GROUP_STATS_SQL),
+            new Query("ReviewRepository.adjustGroupStats", JdbcReviewRepository.GROUP_STATS_DELTA_SQL),
+            new Query("ReviewRepository.getAllGroupStats", JdbcReviewRepository.ALL_GROUP_STATS_SQL, true),
+            new Query("ReviewRepository.forEachReview", JdbcReviewRepository.ALL_REVIEWS_SQL, true),
+            new Query("ReviewRepository.forEachReviewSince", JdbcReviewRepository.REVIEWS_SINCE_SQL),
+            new Query("ReviewRepository.getAllReviews", JdbcReviewRepository.REVIEWS_OF_GROUP_SQL),
+            new Query("ReviewRepository.getReviewsAfter.first", JdbcReviewRepository.FIRST_PAGE_SQL),
+            new Query("ReviewRepository.getReviewsAfter", JdbcReviewRepository.PAGE_AFTER_SQL),
+            new Query("ReviewRepository.getReviewsBefore", JdbcReviewRepository.PAGE_BEFORE_SQL),
+            new Query("ReviewRepository.hasUserReviewed", JdbcReviewRepository.HAS_REVIEWED_SQL),
+            new Query("ReviewRepository.getUserReview", JdbcReviewRepository.USER_REVIEW_SQL),
+            new Query("ReviewRepository.lockReview", JdbcReviewRepository.LOCK_REVIEW_SQL),
+            new Query("ReviewRepository.updateReview", JdbcReviewRepository.updateSql(true, true, true)),
+            new Query("ReviewRepository.getReviewsByUser", JdbcReviewRepository.REVIEWS_OF_USER_SQL),
+            new Query("ReviewWriteBehind.upsert", ReviewWriteBehind.UPSERT_SQL),
+            new Query("ReviewWriteBehind.lockReviews", ReviewWriteBehind.lockReviewsSql(2)),
+            new Query("ReviewWriteBehind.linkedUsers", ReviewWriteBehind.linkedUsersSql(2)),
+            new Query("ReviewWriteBehind.readGroupStats", ReviewWriteBehind.groupStatsSql(2)),
+            new Query("GroupRepository.findGroup", JdbcGroupRepository.FIND_SQL),
+            new Query("GroupRepository.refreshedAt", JdbcGroupRepository.refreshedAtSql(2)),
+            new Query("GroupRepository.saveGroup.lock", JdbcGroupRepository.LOCK_OWNER_SQL),
+            new Query("GroupRepository.saveGroup", JdbcGroupRepository.SAVE_SQL),
+            new Query("GroupRepository.removeGroup", JdbcGroupRepository.REMOVE_SQL),
+            new Query("GroupRepository.updateOwnerFlags", JdbcGroupRepository.OWNER_FLAGS_SQL),
+            new Query("UserRepository.linkUser", JdbcUserRepository.LINK_SQL),
+            new Query("UserRepository.updateOwnerFlags", JdbcUserRepository.OWNER_FLAGS_SQL),
+            new Query("UserRepository.getVrcUserId", JdbcUserRepository.VRC_USER_ID_SQL),
+            new Query("UserRepository.unlinkUser", JdbcUserRepository.UNLINK_SQL),
+            new Query("UserRepository.deleteAllUserData.lock", JdbcUserRepository.LOCK_USER_REVIEWS_SQL),
+            new Query("UserRepository.deleteAllUserData", JdbcUserRepository.DELETE_USER_REVIEWS_SQL)
+    );
+
+    private final DataSource dataSource;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Applies all migrations newer than the recorded schema version.
+     * A named lock keeps two instances that start at the same time from migrating concurrently.
+     */
+    public void migrate() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            execute(conn, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT NOT NULL PRIMARY KEY, " +
+                    "description VARCHAR(255) NOT NULL, " +
+                    "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+
+            try (PreparedStatement lock = conn.prepareStatement("SELECT GET_LOCK('vrcbot_schema', 60)")) {
+                ResultSet rs = lock.executeQuery();
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Could not acquire the schema migration lock");
+                }
+            }
+
+            try {
+                int current = currentVersion(conn);
+                for (Migration migration : MIGRATIONS) {
+                    if (migration.version() <= current) continue;
+
+                    System.out.println("Applying schema migration " + migration.version() + ": " + migration.description());
+                    migration.step().apply(conn);
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        stmt.setInt(1, migration.version());
+                        stmt.setString(2, migration.description());
+                        stmt.executeUpdate();
+                    }
+                }
+            } finally {
+                execute(conn, "DO RELEASE_LOCK('vrcbot_schema')");
+            }
+        }
+    }
+
+    /**
+     * Runs EXPLAIN on every repository statement and warns about full table scans.
+     * Returns the number of warnings. On (nearly) empty tables the optimizer may choose a scan anyway.
+     */
+    public int selfCheck() {
+        int warnings = 0;
+        try (Connection conn = dataSource.getConnection()) {
+            for (Query query : QUERIES) {
+                List<String> scans = findFullScans(conn, query.sql());
+                if (query.fullScan()) continue;
+                for (String scan : scans) {
+                    System.err.println("Schema self-check: " + query.name() + " does a full table scan on " + scan);
+                    warnings++;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Schema self-check failed: " + e.getMessage());
+        }
+        if (warnings == 0) {
+            System.out.println("Schema self-check: all " + QUERIES.size() + " repository queries use indexes or scan on purpose.");
+        }
+        return warnings;
+    }
+
+    private static List<String> findFullScans(Connection conn, String sql) throws SQLException {
+        List<String> scans = new ArrayList<>();
+        // LIMIT only takes a number, and every parameter is bound as a string below
+        sql = sql.replace("LIMIT ?", "LIMIT 2");
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            int params = (int) sql.chars().filter(c -> c == '?').count();
+            for (int i = 1; i <= params; i++) {
+                stmt.setString(i, "0");
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                if ("ALL".equalsIgnoreCase(rs.getString("type"))) {
+                    scans.add(rs.getString("table"));
+                }
+            }
+        }
+        return scans;
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version");
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // True if the table has a primary key or unique index over exactly these columns
+    private static boolean hasUniqueKey(Connection conn, String table, String... columns) throws SQLException {
+        String sql = "SELECT INDEX_NAME, GROUP_CONCAT(COLUMN_NAME ORDER BY SEQ_IN_INDEX) AS cols " +
+                "FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND NON_UNIQUE = 0 " +
+                "GROUP BY INDEX_NAME";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            ResultSet rs = stmt.executeQuery();
+            String wanted = String.join(",", columns);
+            while (rs.next()) {
+                if (wanted.equalsIgnoreCase(rs.getString("cols"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void execute(Connection conn, String... statements) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+}
@@ -1,151 +1,306 @@
 import io.github.vrchatapi.ApiException;
-import io.github.vrchatapi.api.GroupsApi;
 import io.github.vrchatapi.api.UsersApi;
-import io.github.vrchatapi.model.LimitedGroup;
 import io.github.vrchatapi.model.LimitedUserSearch;
 import io.github.vrchatapi.model.User;
 import net.dv8tion.jda.api.components.actionrow.ActionRow;
 import net.dv8tion.jda.api.components.buttons.Button;
 import net.dv8tion.jda.api.components.container.Container;
 import net.dv8tion.jda.api.components.textdisplay.TextDisplay;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.UserContextInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collections;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 public class SlashCommandHandler extends ListenerAdapter {
 
     private final ReviewRepository repo;
     private final UserRepository userRepo;
+    private final GroupDirectory groups;
     private final UsersApi vrcUsersApi;
-    private final GroupsApi groupsApi;
-    private final VRChatSessionManager vrcSession;
-
-    // Cache für aktive Review-Sessions (messageId -> ReviewSession)
-    private final Map<String, ReviewSession> reviewSessions = new ConcurrentHashMap<>();
-
-    // Record zum Speichern einer Review-Session
-    private record ReviewSession(String groupId, List<GroupReview> reviews, int currentIndex, double avgRating, int totalReviews, int dobYesCount) {}
-
-    public SlashCommandHandler(ReviewRepository repo, UserRepository userRepo, UsersApi vrcUsersApi, GroupsApi groupsApi, VRChatSessionManager vrcSession) {
+    private final VRChatGateway vrchat;
+    private final InteractionExecutor io;
+    private final InteractionThrottle throttle;
+
+    // Shortcodes of every reviewed group, for group_shortcode autocomplete
+    private final GroupPrefixIndex groupPrefixes = new GroupPrefixIndex();
+
+    // Bayesian-ranked groups, for /top-groups
+    private final GroupLeaderboard leaderboard = new GroupLeaderboard();
+    private static final int LEADERBOARD_SIZE = 10;
+
+    // New and negative reviews per group in the last hour / day / week, for /trending
+    private final TrendingGroups trending = new TrendingGroups();
+
+    // Words of every review comment, for /search-reviews
+    private final ReviewSearchIndex searchIndex = new ReviewSearchIndex();
+    private static final int SEARCH_RESULTS = 10;
+
+    private static final String VRCHAT_UNAVAILABLE = "⚠️ VRChat is not reachable right now, please try again in a minute.";
+    private static final String THROTTLED = "⏳ You're going a bit fast, please wait a few seconds and try again.";
+    // How long a command waits for a review write to commit (write-behind queue included) before it answers anyway
+    private static final Duration WRITE_TIMEOUT = Duration.ofSeconds(15);
+    private static final String WRITE_TIMED_OUT = "⏳ Saving is taking longer than usual. It may still go through, please check again in a minute.";
+
+    // Record für eine angezeigte Review-Seite; alles was zum Blättern nötig ist steckt in den Button-IDs
+    record ReviewPage(String groupId, GroupReview review, int index, boolean hasPrev, boolean hasNext) {}
+
+    /**
+     * repo and userRepo are expected to publish their writes to events (PublishingReviewRepository,
+     * PublishingUserRepository); the in-memory indexes are loaded here and registered with it.
+     */
+    public SlashCommandHandler(ReviewRepository repo, UserRepository userRepo, GroupDirectory groups, UsersApi vrcUsersApi, VRChatGateway vrchat,
+                               InteractionExecutor io, InteractionThrottle throttle, ReviewEvents events) {
         this.repo = repo;
         this.userRepo = userRepo;
+        this.groups = groups;
         this.vrcUsersApi = vrcUsersApi;
-        this.groupsApi = groupsApi;
-        this.vrcSession = vrcSession;
+        this.vrchat = vrchat;
+        this.io = io;
+        this.throttle = throttle;
+
+        List<GroupStats> allStats = repo.getAllGroupStats();
+        groupPrefixes.load(allStats);
+        events.register(groupPrefixes);
+        System.out.println("Autocomplete index loaded with " + groupPrefixes.size() + " groups.");
+
+        leaderboard.load(allStats);
+        events.register(leaderboard);
+        System.out.println("Leaderboard loaded with " + leaderboard.size() + " ranked groups.");
+
+        repo.forEachReviewSince(TrendingGroups.loadSince(), trending::add);
+        events.register(trending);
+        System.out.println("Trending counters loaded for " + trending.size() + " groups.");
+
+        long searchStart = System.nanoTime();
+        repo.forEachReview(searchIndex::add);
+        events.register(searchIndex);
+        System.out.println("Search index loaded with " + searchIndex.size() + " reviews in "
+                + (System.nanoTime() - searchStart) / 1_000_000 + " ms.");
     }
 
     @Override
     public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event) {
+        // Never block the gateway thread: every handler runs on its own virtual thread
+        long received = System.nanoTime();
+        OptionMapping group = event.getOption("group_shortcode");
+        if (!throttle.allow(event.getUser().getId(), group != null ? group.getAsString() : null)) {
+            event.reply(THROTTLED).setEphemeral(true).queue();
+            return;
+        }
+        io.dispatch(event.getName(), () -> timed(event.getName(), received, () -> handleSlashCommand(event)));
+    }
+
+    @Override
+    public void onCommandAutoCompleteInteraction(@NotNull CommandAutoCompleteInteractionEvent event) {
+        // Answered straight from memory, so it runs inline instead of taking the detour over a virtual thread
+        timed("autocomplete", System.nanoTime(), () -> {
+            if (!event.getFocusedOption().getName().equals("group_shortcode")) return;
+
+            List<Command.Choice> choices = new ArrayList<>();
+            for (GroupPrefixIndex.Match match : groupPrefixes.complete(event.getFocusedOption().getValue().trim(), GroupPrefixIndex.TOP_K)) {
+                String label = String.format("%s · %.1f ⭐ · %d review%s", match.shortCode(), match.averageRating(),
+                        match.reviewCount(), match.reviewCount() == 1 ? "" : "s");
+                choices.add(new Command.Choice(label, match.shortCode()));
+            }
+            event.replyChoices(choices).queue();
+        });
+    }
+
+    // Records handler latency (including time spent queued for a virtual thread) and failures
+    private static void timed(String command, long received, Runnable handler) {
+        try {
+            handler.run();
+        } catch (RuntimeException e) {
+            commandFailed(command);
+            throw e;
+        } finally {
+            Metrics.observe("vrcbot_command_duration_seconds", Metrics.label("command", command), received);
+        }
+    }
+
+    // Handlers that catch their own errors and answer with an error message call this, so those count as failures too
+    private static void commandFailed(String command) {
+        Metrics.increment("vrcbot_command_errors_total", Metrics.label("command", command));
+    }
 
+    private void handleSlashCommand(SlashCommandInteractionEvent event) {
         switch (event.getName()) {
             case "rate-group" -> {
                 try {
                     handleRateGroup(event);
+                } catch (VRChatGateway.UnavailableException e) {
+                    commandFailed(event.getName());
+                    event.getHook().sendMessage(VRCHAT_UNAVAILABLE).queue();
                 } catch (ApiException e) {
-                    event.reply("❌ VRChat API Error").setEphemeral(true).queue();
-                    vrcSession.reAuthenticate();
+                    // 401s and transient errors were already retried inside VRChatGateway.call
+                    commandFailed(event.getName());
+                    event.getHook().sendMessage("❌ VRChat API Error").queue();
                     e.printStackTrace();
                 }
             }
             case "link-vrc" -> handleLinkVrc(event);
             case "list-reviews" -> listReviews(event);
+            case "search-reviews" -> searchReviews(event);
+            case "top-groups" -> topGroups(event);
+            case "trending" -> trendingGroups(event);
             case "edit-review" -> handleEditReview(event);
             case "unlink" -> {
                 event.deferReply(true).queue();
                 String userId = event.getUser().getId();
-                userRepo.unlinkUser(userId);
+                io.dbRun(() -> userRepo.unlinkUser(userId));
                 event.getHook().sendMessage("✅ Your VRChat account has been unlinked from your Discord account.").queue();
             }
             case "delete-my-data" -> {
                 event.deferReply(true).queue();
                 String userId = event.getUser().getId();
-                userRepo.deleteAllUserData(userId);
+                io.dbRun(() -> userRepo.deleteAllUserData(userId));
                 event.getHook().sendMessage("✅ All your data has been deleted from the database.").queue();
             }
             default -> event.reply("Unknown command").setEphemeral(true).queue();
         }
     }
 
-    private void listReviews(SlashCommandInteractionEvent event) {
-        event.deferReply(true).queue();
-        String groupId = event.getOption("group_shortcode").getAsString();
-        CompletableFuture.runAsync(() -> {
-            try {
-                List<GroupReview> reviews = repo.getAllReviews(groupId);
-                if (reviews.isEmpty()) {
-                    event.getHook().sendMessage("No reviews found for group: " + groupId).queue();
-                    return;
-                }
+    private void topGroups(SlashCommandInteractionEvent event) {
+        boolean worst = event.getOption("worst") != null && event.getOption("worst").getAsBoolean();
+        OptionMapping dob = event.getOption("asks_for_dob");
+        GroupLeaderboard.DobFilter filter = dob == null ? GroupLeaderboard.DobFilter.ANY
+                : dob.getAsBoolean() ? GroupLeaderboard.DobFilter.ASKS : GroupLeaderboard.DobFilter.DOES_NOT_ASK;
 
-                // Stats berechnen
-                double avgRating = repo.getAverageRating(groupId);
-                int totalReviews = reviews.size();
-                int dobYesCount = (int) reviews.stream().filter(GroupReview::isAsksForDob).count();
+        // Straight from memory, no deferReply needed
+        List<GroupLeaderboard.Ranked> ranked = leaderboard.top(LEADERBOARD_SIZE, worst, filter);
+        if (ranked.isEmpty()) {
+            event.reply("No group has " + GroupLeaderboard.MIN_REVIEWS + " or more reviews yet.").setEphemeral(true).queue();
+            return;
+        }
 
-                // Session erstellen
-                ReviewSession session = new ReviewSession(groupId, reviews, 0, avgRating, totalReviews, dobYesCount);
+        StringBuilder sb = new StringBuilder();
+        sb.append(worst ? "### 👎 Worst rated groups" : "### 🏆 Best rated groups");
+        if (filter == GroupLeaderboard.DobFilter.ASKS) sb.append(" that ask for DOB");
+        if (filter == GroupLeaderboard.DobFilter.DOES_NOT_ASK) sb.append(" that don't ask for DOB");
+        sb.append("\n");
+        for (int i = 0; i < ranked.size(); i++) {
+            GroupLeaderboard.Ranked group = ranked.get(i);
+            sb.append(String.format("%d. **%s** · %.1f ⭐ · %d reviews%s\n", i + 1, group.groupId(),
+                    group.averageRating(), group.reviewCount(), group.likelyAgeGated() ? " · 🔞" : ""));
+        }
+        sb.append("-# Groups with at least ").append(GroupLeaderboard.MIN_REVIEWS)
+                .append(" reviews, ranked by their rating weighted towards the overall average.");
+        event.reply(sb.toString()).setEphemeral(true).queue();
+    }
 
-                // Container mit UI erstellen
-                Container container = buildReviewContainer(session);
+    private void trendingGroups(SlashCommandInteractionEvent event) {
+        OptionMapping windowOption = event.getOption("window");
+        String windowName = windowOption != null ? windowOption.getAsString().trim().toLowerCase() : "day";
+        TrendingGroups.Window window = switch (windowName) {
+            case "hour" -> TrendingGroups.Window.HOUR;
+            case "day" -> TrendingGroups.Window.DAY;
+            case "week" -> TrendingGroups.Window.WEEK;
+            default -> null;
+        };
+        if (window == null) {
+            event.reply("❌ Window has to be hour, day or week").setEphemeral(true).queue();
+            return;
+        }
+        boolean negative = event.getOption("negative") != null && event.getOption("negative").getAsBoolean();
 
-                if (container == null) {
-                    event.getHook().sendMessage("❌ Could not build review display. Please try again.").queue();
-                    return;
-                }
+        // Counted in memory on every write, no database involved
+        List<TrendingGroups.Trend> trends = trending.top(window, negative, LEADERBOARD_SIZE);
+        if (trends.isEmpty()) {
+            event.reply("No " + (negative ? "negative " : "") + "reviews in the last " + windowName + ".").setEphemeral(true).queue();
+            return;
+        }
 
-                event.getHook().sendMessage("")
-                    .setComponents(container)
-                    .useComponentsV2()
-                    .queue(message -> {
-                        // Session mit Message-ID speichern
-                        reviewSessions.put(message.getId(), session);
-                    });
-
-            } catch (Exception e) {
-                vrcSession.reAuthenticate();
-                event.getHook().sendMessage("❌ Database Error: " + e.getMessage()).queue();
-                e.printStackTrace();
-            }
-        });
+        StringBuilder sb = new StringBuilder();
+        sb.append(negative ? "### 📉 Most negative reviews" : "### 📈 Most new reviews")
+                .append(" in the last ").append(windowName).append("\n");
+        for (int i = 0; i < trends.size(); i++) {
+            TrendingGroups.Trend trend = trends.get(i);
+            sb.append(String.format("%d. **%s** · %d new review%s · %d negative\n", i + 1, trend.groupId(),
+                    trend.reviews(), trend.reviews() == 1 ? "" : "s", trend.negative()));
+        }
+        event.reply(sb.toString()).setEphemeral(true).queue();
     }
 
-    private Container buildReviewContainer(ReviewSession session) throws ApiException {
-        GroupReview review = session.reviews().get(session.currentIndex());
+    private void searchReviews(SlashCommandInteractionEvent event) {
+        event.deferReply(true).queue();
+        String query = event.getOption("query").getAsString().trim();
+        String shownQuery = query.length() > 100 ? query.substring(0, 97) + "..." : query;
+
+        List<ReviewSearchIndex.Hit> hits = searchIndex.search(query, SEARCH_RESULTS);
+        StringBuilder sb = new StringBuilder();
+        for (ReviewSearchIndex.Hit hit : hits) {
+            // The index only knows ids; one primary key lookup per shown review
+            GroupReview review = io.db(() -> repo.getUserReview(hit.groupId(), hit.discordUserId()));
+            if (review == null) continue;
+
+            String comment = review.getComment() != null ? review.getComment().replace('\n', ' ') : "";
+            if (comment.length() > 150) comment = comment.substring(0, 147) + "...";
+            sb.append("**").append(review.getGroupId()).append("** ")
+                    .append("⭐".repeat(review.getRating())).append("☆".repeat(5 - review.getRating()))
+                    .append("\n> ").append(comment).append("\n");
+        }
 
-        String stars = "⭐".repeat(review.getRating()) + "☆".repeat(5 - review.getRating());
-        double dobPercent = session.totalReviews() > 0 ? (session.dobYesCount() * 100.0 / session.totalReviews()) : 0;
+        if (sb.isEmpty()) {
+            event.getHook().sendMessage("No reviews found mentioning: " + shownQuery).queue();
+            return;
+        }
+        event.getHook().sendMessage("### 🔎 Reviews mentioning: " + shownQuery + "\n" + sb).queue();
+    }
 
-        List<LimitedGroup> groups = Collections.singletonList(vrcSession.executeWithReauth(() -> {
-            try {
-                return groupsApi.searchGroups(session.groupId(), 0, 60)
-                        .stream()
-                        .filter(g -> (g.getShortCode() + "." + g.getDiscriminator()).equals(session.groupId()))
-                        .findFirst()
-                        .orElse(null);
-            } catch (ApiException e) {
-                vrcSession.reAuthenticate();
-                return null;
+    private void listReviews(SlashCommandInteractionEvent event) {
+        event.deferReply(true).queue();
+        String groupId = event.getOption("group_shortcode").getAsString();
+        try {
+            GroupStats stats = io.db(() -> repo.getGroupStats(groupId));
+            List<GroupReview> reviews = io.db(() -> repo.getReviewsAfter(groupId, null, 2));
+            if (reviews.isEmpty()) {
+                event.getHook().sendMessage("No reviews found for group: " + groupId).queue();
+                return;
             }
-        }));
 
-        if (groups.get(0) == null) {
-            return null;
+            ReviewPage page = new ReviewPage(groupId, reviews.get(0), 0, false, reviews.size() > 1);
+
+            // Container mit UI erstellen
+            Container container = buildReviewContainer(page, stats);
+
+            event.getHook().sendMessage("")
+                .setComponents(container)
+                .useComponentsV2()
+                .queue();
+
+        } catch (Exception e) {
+            commandFailed(event.getName());
+            event.getHook().sendMessage("❌ Database Error: " + e.getMessage()).queue();
+            e.printStackTrace();
         }
+    }
 
-        String groupName = "Unknown Group";
+    // Package-private for the render benchmark
+    Container buildReviewContainer(ReviewPage page, GroupStats groupStats) {
+        GroupReview review = page.review();
+
+        String stars = "⭐".repeat(review.getRating()) + "☆".repeat(5 - review.getRating());
+        double dobPercent = groupStats.reviewCount() > 0 ? (groupStats.dobYesCount() * 100.0 / groupStats.reviewCount()) : 0;
 
-        if (groups.get(0) != null || groups.get(0).getShortCode().concat(".").concat(groups.get(0).getDiscriminator()).equals(session.groupId)) {
-            groupName = groups.get(0).getName();
+        // Only local data: GroupRefresher keeps the index fresh, a group it hasn't reached yet is shown without name
+        groups.recordView(page.groupId());
+        GroupInfo group = groups.local(page.groupId());
+        if (group == null) {
+            group = GroupInfo.unknown(page.groupId());
         }
 
+        String groupName = group.name() != null ? group.name() : "Unknown Group";
+
         TextDisplay header = TextDisplay.of("# 📋 Reviews for: " + groupName);
 
         String statsText = String.format(
@@ -153,15 +308,16 @@ public class SlashCommandHandler extends ListenerAdapter {
             "⭐ **Average rating:** %.1f/5\n" +
             "📝 **Review count:** %d\n" +
             "🔞 **Asks for DOB if verified:** %d/%d (%.0f%%)",
-            session.avgRating(),
-            session.totalReviews(),
-            session.dobYesCount(),
-            session.totalReviews(),
+            groupStats.averageRating(),
+            groupStats.reviewCount(),
+            groupStats.dobYesCount(),
+            groupStats.reviewCount(),
             dobPercent
         );
         TextDisplay stats = TextDisplay.of(statsText);
 
-        if (userRepo.getVrcUserId(review.getDiscordUserId()).equals(groups.get(0).getOwnerId())) {
+        // Computed when the review, the link or the group owner was written; no lookup per render
+        if (review.isOwnerReview()) {
             stats = TextDisplay.of(statsText + "\n👑 **Note:** This review is from the group owner.");
         }
 
@@ -175,8 +331,7 @@ public class SlashCommandHandler extends ListenerAdapter {
                         
                         📅 **Date:** %s
                         🔞 **Asked for DOB if verified:** %s""",
-            session.currentIndex() + 1,
-            session.totalReviews(),
+            page.index() + 1,
             stars,
             review.getRating(),
             review.getComment(),
@@ -185,13 +340,10 @@ public class SlashCommandHandler extends ListenerAdapter {
         );
         TextDisplay reviewDisplay = TextDisplay.of(reviewText);
 
-        boolean isFirst = session.currentIndex() == 0;
-        boolean isLast = session.currentIndex() >= session.reviews().size() - 1;
-
         ActionRow navigationRow = ActionRow.of(
-            Button.secondary("review_prev", "◀ Zurück").withDisabled(isFirst),
-            Button.secondary("review_page", String.format("%d / %d", session.currentIndex() + 1, session.totalReviews())).withDisabled(true),
-            Button.secondary("review_next", "Weiter ▶").withDisabled(isLast)
+            Button.secondary(navigationId("p", page), "◀ Zurück").withDisabled(!page.hasPrev()),
+            Button.secondary("review_page", String.format("%d / %d", page.index() + 1, Math.max(groupStats.reviewCount(), page.index() + 1))).withDisabled(true),
+            Button.secondary(navigationId("n", page), "Weiter ▶").withDisabled(!page.hasNext())
         );
 
         TextDisplay divider = TextDisplay.of("───────────────────────");
@@ -207,48 +359,72 @@ public class SlashCommandHandler extends ListenerAdapter {
         );
     }
 
+    /**
+     * Button-ID im Format "review:<p|n>:<index>:<created_at base36>:<discord user>:<group>".
+     * The cursor of the shown review is all a button press needs to load the neighbouring page.
+     */
+    private static String navigationId(String direction, ReviewPage page) {
+        ReviewCursor cursor = ReviewCursor.of(page.review());
+        return "review:" + direction + ":" + page.index() + ":"
+                + Long.toString(cursor.createdAtMillis(), 36) + ":"
+                + cursor.discordUserId() + ":" + page.groupId();
+    }
+
     @Override
     public void onButtonInteraction(@NotNull ButtonInteractionEvent event) {
-        String buttonId = event.getComponentId();
-        String messageId = event.getMessageId();
+        long received = System.nanoTime();
+        if (!throttle.allow(event.getUser().getId(), buttonGroupId(event.getComponentId()))) {
+            event.reply(THROTTLED).setEphemeral(true).queue();
+            return;
+        }
+        io.dispatch("button", () -> timed("button", received, () -> handleButton(event)));
+    }
 
-        if (!buttonId.startsWith("review_")) return;
-        if (buttonId.equals("review_page")) return; // Page-Button ist nur zur Anzeige
+    // Group of a paging button (see navigationId), null for other buttons
+    private static String buttonGroupId(String buttonId) {
+        if (!buttonId.startsWith("review:")) return null;
+        String[] parts = buttonId.split(":", 6);
+        return parts.length == 6 ? parts[5] : null;
+    }
+
+    private void handleButton(ButtonInteractionEvent event) {
+        String buttonId = event.getComponentId();
 
-        ReviewSession session = reviewSessions.get(messageId);
-        if (session == null) {
-            event.reply("❌ This session is terminated. Please run /list-reviews again.").setEphemeral(true).queue();
+        if (buttonId.startsWith("review_")) {
+            // Page-Button ist nur zur Anzeige; review_prev/review_next stammen aus alten Nachrichten
+            if (!buttonId.equals("review_page")) {
+                event.reply("❌ This session is terminated. Please run /list-reviews again.").setEphemeral(true).queue();
+            }
             return;
         }
+        if (!buttonId.startsWith("review:")) return;
 
-        int newIndex = session.currentIndex();
+        String[] parts = buttonId.split(":", 6);
+        if (parts.length != 6) return;
 
-        if (buttonId.equals("review_prev")) {
-            newIndex = Math.max(0, newIndex - 1);
-        } else if (buttonId.equals("review_next")) {
-            newIndex = Math.min(session.reviews().size() - 1, newIndex + 1);
-        }
+        boolean forward = parts[1].equals("n");
+        int index = Integer.parseInt(parts[2]);
+        ReviewCursor cursor = new ReviewCursor(Long.parseLong(parts[3], 36), parts[4]);
+        String groupId = parts[5];
 
-        // Neue Session mit aktualisiertem Index
-        ReviewSession updatedSession = new ReviewSession(
-            session.groupId(),
-            session.reviews(),
-            newIndex,
-            session.avgRating(),
-            session.totalReviews(),
-            session.dobYesCount()
-        );
-        reviewSessions.put(messageId, updatedSession);
+        ReviewPage page;
+        if (forward) {
+            List<GroupReview> reviews = io.db(() -> repo.getReviewsAfter(groupId, cursor, 2));
+            page = reviews.isEmpty() ? null
+                    : new ReviewPage(groupId, reviews.get(0), index + 1, true, reviews.size() > 1);
+        } else {
+            List<GroupReview> reviews = io.db(() -> repo.getReviewsBefore(groupId, cursor, 2));
+            page = reviews.isEmpty() ? null
+                    : new ReviewPage(groupId, reviews.get(0), Math.max(0, index - 1), reviews.size() > 1, true);
+        }
 
-        Container updatedContainer = null;
-        try {
-            updatedContainer = buildReviewContainer(updatedSession);
-        } catch (ApiException e) {
-            event.editMessage("❌ VRChat API Error").queue();
-            e.printStackTrace();
+        if (page == null) {
+            event.reply("❌ This review is no longer available. Please run /list-reviews again.").setEphemeral(true).queue();
             return;
         }
 
+        Container updatedContainer = buildReviewContainer(page, io.db(() -> repo.getGroupStats(groupId)));
+
         event.editMessage("")
             .setComponents(updatedContainer)
             .queue();
@@ -269,57 +445,64 @@ public class SlashCommandHandler extends ListenerAdapter {
         }
         String userId = event.getUser().getId();
 
-        if (userRepo.getVrcUserId(userId) == null) {
-            event.getHook().sendMessage("❌ You must link your VRChat account first using /link-vrc").queue();
-            return;
-        }
-
         if (rating < 1 || rating > 5) {
             event.getHook().sendMessage("❌ Rating must be between 1 and 5").queue();
             return;
         }
 
-        if (repo.hasUserReviewed(groupId, userId)) {
-            event.getHook().sendMessage("❌ You have already reviewed this group.").queue();
-            return;
+        // A group missing from the index costs a rate-limited VRChat search. Answer unlinked users and
+        // repeat raters from the database first; rateGroup below still checks both atomically.
+        if (groups.local(groupId) == null) {
+            if (io.db(() -> userRepo.getVrcUserId(userId)) == null) {
+                event.getHook().sendMessage("❌ You must link your VRChat account first using /link-vrc").queue();
+                return;
+            }
+            if (io.db(() -> repo.hasUserReviewed(groupId, userId))) {
+                event.getHook().sendMessage("❌ You have already reviewed this group.").queue();
+                return;
+            }
         }
 
-        List<LimitedGroup> groups = Collections.singletonList(groupsApi.searchGroups(groupId, 0, 60)
-                .stream()
-                .filter(g -> (g.getShortCode() + "." + g.getDiscriminator()).equals(groupId))
-                .findFirst()
-                .orElse(null));
-
-        if (groups.get(0) == null || !groups.get(0).getShortCode().concat(".").concat(groups.get(0).getDiscriminator()).equals(groupId)) {
+        if (groups.lookup(groupId) == null) {
             event.getHook().sendMessage("❌ Group not found with shortcode: " + groupId).queue();
             return;
         }
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                // Save to DB
-                repo.upsertReview(groupId, userId, rating, asksDob, comment);
+        // Link check, duplicate check, insert and stats readback in one round trip
+        // With write-behind the write is only queued inside io.db; wait for the commit without holding a permit
+        RateResult result;
+        try {
+            result = io.db(() -> repo.rateGroupAsync(groupId, userId, rating, asksDob, comment))
+                    .orTimeout(WRITE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                    .join();
+        } catch (CompletionException e) {
+            commandFailed(event.getName());
+            event.getHook().sendMessage(WRITE_TIMED_OUT).queue();
+            return;
+        }
 
-                // Fetch updated stats
-                double avg = repo.getAverageRating(groupId);
-                boolean isAgeGated = repo.isLikelyAgeGated(groupId);
+        switch (result.status()) {
+            case NOT_LINKED -> event.getHook().sendMessage("❌ You must link your VRChat account first using /link-vrc").queue();
+            case ALREADY_REVIEWED -> event.getHook().sendMessage("❌ You have already reviewed this group.").queue();
+            case FAILED -> {
+                commandFailed(event.getName());
+                event.getHook().sendMessage("❌ Database Error: could not save your review.").queue();
+            }
+            case SAVED -> {
+                GroupStats stats = result.stats();
 
                 // Build Message
                 StringBuilder sb = new StringBuilder();
                 sb.append("✅ **Review Saved!**\n");
-                sb.append("Current Group Rating: ").append(String.format("%.1f", avg)).append(" ⭐\n");
+                sb.append("Current Group Rating: ").append(String.format("%.1f", stats.averageRating())).append(" ⭐\n");
 
-                if (isAgeGated) {
+                if (stats.isLikelyAgeGated()) {
                     sb.append("⚠️ **Warning:** Users report this group requires ID/DOB verification! (if verified)🔞");
                 }
 
                 event.getHook().sendMessage(sb.toString()).queue();
-
-            } catch (Exception e) {
-                event.getHook().sendMessage("❌ Database Error: " + e.getMessage()).queue();
-                e.printStackTrace();
             }
-        });
+        }
     }
 
     private void handleLinkVrc(SlashCommandInteractionEvent event) {
@@ -328,42 +511,44 @@ public class SlashCommandHandler extends ListenerAdapter {
 
         event.deferReply(true).queue();
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                // 1. Search User
-                var searchResult = vrcUsersApi.searchUsers(vrcName, null, null, null, null);
-
-                if (searchResult.isEmpty()) {
-                    event.getHook().sendMessage("❌ User not found.").queue();
-                    return;
-                }
+        try {
+            // 1. Search User
+            var searchResult = io.vrc(() -> vrchat.call(() -> vrcUsersApi.searchUsers(vrcName, null, null, null, null)));
 
-                // Simple fuzzy match logic (take first)
-                LimitedUserSearch targetUser = searchResult.get(0);
+            if (searchResult.isEmpty()) {
+                event.getHook().sendMessage("❌ User not found.").queue();
+                return;
+            }
 
-                // 2. Check Bio
-                String currentBio = targetUser.getBio();
+            // Simple fuzzy match logic (take first)
+            LimitedUserSearch targetUser = searchResult.get(0);
 
-                if (currentBio != null && currentBio.contains(expectedToken)) {
+            // 2. Check Bio
+            String currentBio = targetUser.getBio();
 
-                    userRepo.linkUser(
-                            event.getUser().getId(),
-                            targetUser.getId(),
-                            targetUser.getDisplayName()
-                    );
+            if (currentBio != null && currentBio.contains(expectedToken)) {
 
-                    event.getHook().sendMessage("✅ **Success!** Your Discord is now linked to: **" + targetUser.getDisplayName() + "**").queue();
-                } else {
-                    event.getHook().sendMessage(
-                            "⚠️ **Verification Failed!**\nPlease put `" + expectedToken + "` in your VRChat bio and try again."
-                    ).queue();
-                }
+                io.dbRun(() -> userRepo.linkUser(
+                        event.getUser().getId(),
+                        targetUser.getId(),
+                        targetUser.getDisplayName()
+                ));
 
-            } catch (Exception e) {
-                event.getHook().sendMessage("❌ Error: " + e.getMessage()).queue();
-                e.printStackTrace();
+                event.getHook().sendMessage("✅ **Success!** Your Discord is now linked to: **" + targetUser.getDisplayName() + "**").queue();
+            } else {
+                event.getHook().sendMessage(
+                        "⚠️ **Verification Failed!**\nPlease put `" + expectedToken + "` in your VRChat bio and try again."
+                ).queue();
             }
-        });
+
+        } catch (VRChatGateway.UnavailableException e) {
+            commandFailed(event.getName());
+            event.getHook().sendMessage(VRCHAT_UNAVAILABLE).queue();
+        } catch (Exception e) {
+            commandFailed(event.getName());
+            event.getHook().sendMessage("❌ Error: " + e.getMessage()).queue();
+            e.printStackTrace();
+        }
     }
 
     private void handleEditReview(SlashCommandInteractionEvent event) {
@@ -376,76 +561,90 @@ public class SlashCommandHandler extends ListenerAdapter {
         String newComment = event.getOption("comment") != null ? event.getOption("comment").getAsString() : null;
         Boolean newAsksDob = event.getOption("asks_for_dob") != null ? event.getOption("asks_for_dob").getAsBoolean() : null;
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                GroupReview existingReview = repo.getUserReview(groupId, userId);
+        try {
+            GroupReview existingReview = io.db(() -> repo.getUserReview(groupId, userId));
 
-                if (existingReview == null) {
-                    event.getHook().sendMessage("❌ You did not review this group.").queue();
-                    return;
-                }
+            if (existingReview == null) {
+                event.getHook().sendMessage("❌ You did not review this group.").queue();
+                return;
+            }
 
-                // Check if at least one field is provided
-                if (newRating == null && newComment == null && newAsksDob == null) {
-                    // Show current review info
-                    String stars = "⭐".repeat(existingReview.getRating()) + "☆".repeat(5 - existingReview.getRating());
-                    String currentInfo = String.format(
-                            "📝 **Your review %s:**\n\n" +
-                            "%s **%d/5**\n" +
-                            "> %s\n\n" +
-                            "🔞 DOB: %s\n" +
-                            "📅 created: %s\n\n" +
-                            "💡 Use these optional parameters to edit your review:\n" +
-                            "• `rating` - New rating (1-5)\n" +
-                            "• `comment` - NEw comment\n" +
-                            "• `asks_for_dob` - DOB asked (true/false)",
-                            groupId,
-                            stars,
-                            existingReview.getRating(),
-                            existingReview.getComment(),
-                            existingReview.isAsksForDob() ? "✅ Yes" : "❌ No",
-                            existingReview.getCreatedAt() != null ? existingReview.getCreatedAt().toString().substring(0, 10) : "Unknown"
-                    );
-                    event.getHook().sendMessage(currentInfo).queue();
-                    return;
-                }
+            // Check if at least one field is provided
+            if (newRating == null && newComment == null && newAsksDob == null) {
+                // Show current review info
+                String stars = "⭐".repeat(existingReview.getRating()) + "☆".repeat(5 - existingReview.getRating());
+                String currentInfo = String.format(
+                        "📝 **Your review %s:**\n\n" +
+                        "%s **%d/5**\n" +
+                        "> %s\n\n" +
+                        "🔞 DOB: %s\n" +
+                        "📅 created: %s\n\n" +
+                        "💡 Use these optional parameters to edit your review:\n" +
+                        "• `rating` - New rating (1-5)\n" +
+                        "• `comment` - NEw comment\n" +
+                        "• `asks_for_dob` - DOB asked (true/false)",
+                        groupId,
+                        stars,
+                        existingReview.getRating(),
+                        existingReview.getComment(),
+                        existingReview.isAsksForDob() ? "✅ Yes" : "❌ No",
+                        existingReview.getCreatedAt() != null ? existingReview.getCreatedAt().toString().substring(0, 10) : "Unknown"
+                );
+                event.getHook().sendMessage(currentInfo).queue();
+                return;
+            }
 
-                // Validate rating if provided
-                if (newRating != null && (newRating < 1 || newRating > 5)) {
-                    event.getHook().sendMessage("❌ Rating has to be between 1 and 5").queue();
-                    return;
-                }
+            // Validate rating if provided
+            if (newRating != null && (newRating < 1 || newRating > 5)) {
+                event.getHook().sendMessage("❌ Rating has to be between 1 and 5").queue();
+                return;
+            }
 
-                // Update the review
-                repo.updateReview(groupId, userId, newRating, newAsksDob, newComment);
+            // Update the review
+            boolean saved;
+            try {
+                saved = io.db(() -> repo.updateReviewAsync(groupId, userId, newRating, newAsksDob, newComment))
+                        .orTimeout(WRITE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                        .join()
+                        .saved();
+            } catch (CompletionException e) {
+                commandFailed(event.getName());
+                event.getHook().sendMessage(WRITE_TIMED_OUT).queue();
+                return;
+            }
+            if (!saved) {
+                commandFailed(event.getName());
+                event.getHook().sendMessage("❌ Database Error: could not save your changes.").queue();
+                return;
+            }
 
-                // Build confirmation message
-                StringBuilder sb = new StringBuilder();
-                sb.append("✅ **Review updated!**\n\n");
-                sb.append("**Changed Fields:**\n");
+            // Build confirmation message
+            StringBuilder sb = new StringBuilder();
+            sb.append("✅ **Review updated!**\n\n");
+            sb.append("**Changed Fields:**\n");
 
-                if (newRating != null) {
-                    String stars = "⭐".repeat(newRating) + "☆".repeat(5 - newRating);
-                    sb.append("• Rating: ").append(stars).append(" (").append(newRating).append("/5)\n");
-                }
-                if (newComment != null) {
-                    sb.append("• Comment: ").append(newComment).append("\n");
-                }
-                if (newAsksDob != null) {
-                    sb.append("• DOB: ").append(newAsksDob ? "✅ Ja" : "❌ Nein").append("\n");
-                }
+            if (newRating != null) {
+                String stars = "⭐".repeat(newRating) + "☆".repeat(5 - newRating);
+                sb.append("• Rating: ").append(stars).append(" (").append(newRating).append("/5)\n");
+            }
+            if (newComment != null) {
+                sb.append("• Comment: ").append(newComment).append("\n");
+            }
+            if (newAsksDob != null) {
+                sb.append("• DOB: ").append(newAsksDob ? "✅ Ja" : "❌ Nein").append("\n");
+            }
 
-                // Show updated stats
-                double avg = repo.getAverageRating(groupId);
-                sb.append("\n📊 **Group-Average:** ").append(String.format("%.1f", avg)).append(" ⭐");
+            // Show updated stats
+            double avg = io.db(() -> repo.getAverageRating(groupId));
+            sb.append("\n📊 **Group-Average:** ").append(String.format("%.1f", avg)).append(" ⭐");
 
-                event.getHook().sendMessage(sb.toString()).queue();
+            event.getHook().sendMessage(sb.toString()).queue();
 
-            } catch (Exception e) {
-                event.getHook().sendMessage("❌ Error updating: " + e.getMessage()).queue();
-                e.printStackTrace();
-            }
-        });
+        } catch (Exception e) {
+            commandFailed(event.getName());
+            event.getHook().sendMessage("❌ Error updating: " + e.getMessage()).queue();
+            e.printStackTrace();
+        }
     }
 
     // --- Logic for "View User Reviews" User Context Menu ---
@@ -455,58 +654,57 @@ public class SlashCommandHandler extends ListenerAdapter {
         String targetDiscordId = event.getTarget().getId();
         String targetDiscordName = event.getTarget().getName();
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                // Fetch all reviews by this user
-                List<GroupReview> userReviews = repo.getReviewsByUser(targetDiscordId);
+        try {
+            // Fetch all reviews by this user
+            List<GroupReview> userReviews = io.db(() -> repo.getReviewsByUser(targetDiscordId));
+
+            if (userReviews.isEmpty()) {
+                event.getHook().sendMessage("📝 **" + targetDiscordName + "** has not written any reviews yet.").queue();
+                return;
+            }
 
-                if (userReviews.isEmpty()) {
-                    event.getHook().sendMessage("📝 **" + targetDiscordName + "** has not written any reviews yet.").queue();
-                    return;
+            // Build reviews message
+            // Build components using V2
+            TextDisplay header = TextDisplay.of("# 📋 Reviews by " + targetDiscordName);
+            TextDisplay totalReviews = TextDisplay.of("**Total Reviews:** " + userReviews.size());
+            TextDisplay divider = TextDisplay.of("───────────────────────");
+
+            StringBuilder reviewsText = new StringBuilder();
+            int count = 0;
+            for (GroupReview review : userReviews) {
+                if (count >= 10) {
+                    reviewsText.append("\n*... and ").append(userReviews.size() - 10).append(" more reviews.*");
+                    break;
                 }
 
-                // Build reviews message
-                // Build components using V2
-                TextDisplay header = TextDisplay.of("# 📋 Reviews by " + targetDiscordName);
-                TextDisplay totalReviews = TextDisplay.of("**Total Reviews:** " + userReviews.size());
-                TextDisplay divider = TextDisplay.of("───────────────────────");
-
-                StringBuilder reviewsText = new StringBuilder();
-                int count = 0;
-                for (GroupReview review : userReviews) {
-                    if (count >= 10) {
-                        reviewsText.append("\n*... and ").append(userReviews.size() - 10).append(" more reviews.*");
-                        break;
-                    }
-
-                    String stars = "⭐".repeat(review.getRating()) + "☆".repeat(5 - review.getRating());
-                    reviewsText.append("### ").append(review.getGroupId()).append("\n");
-                    reviewsText.append(stars).append(" **").append(review.getRating()).append("/5**\n");
-                    reviewsText.append("> ").append(review.getComment()).append("\n");
-                    reviewsText.append("🔞 DOB: ").append(review.isAsksForDob() ? "✅ Yes" : "❌ No");
-                    if (review.getCreatedAt() != null) {
-                        reviewsText.append(" | 📅 ").append(review.getCreatedAt().toString().substring(0, 10));
-                    }
-                    reviewsText.append("\n\n");
-                    count++;
+                String stars = "⭐".repeat(review.getRating()) + "☆".repeat(5 - review.getRating());
+                reviewsText.append("### ").append(review.getGroupId()).append("\n");
+                reviewsText.append(stars).append(" **").append(review.getRating()).append("/5**\n");
+                reviewsText.append("> ").append(review.getComment()).append("\n");
+                reviewsText.append("🔞 DOB: ").append(review.isAsksForDob() ? "✅ Yes" : "❌ No");
+                if (review.getCreatedAt() != null) {
+                    reviewsText.append(" | 📅 ").append(review.getCreatedAt().toString().substring(0, 10));
                 }
-                TextDisplay reviewsDisplay = TextDisplay.of(reviewsText.toString());
+                reviewsText.append("\n\n");
+                count++;
+            }
+            TextDisplay reviewsDisplay = TextDisplay.of(reviewsText.toString());
 
-                // Calculate average rating given by this user
-                double avgGiven = userReviews.stream()
-                        .mapToInt(GroupReview::getRating)
-                        .average()
-                        .orElse(0.0);
-                TextDisplay avgDisplay = TextDisplay.of("📊 **Average Rating Given:** " + String.format("%.1f", avgGiven) + " ⭐");
+            // Calculate average rating given by this user
+            double avgGiven = userReviews.stream()
+                    .mapToInt(GroupReview::getRating)
+                    .average()
+                    .orElse(0.0);
+            TextDisplay avgDisplay = TextDisplay.of("📊 **Average Rating Given:** " + String.format("%.1f", avgGiven) + " ⭐");
 
-                Container container = Container.of(header, divider, totalReviews, divider, reviewsDisplay, divider, avgDisplay);
+            Container container = Container.of(header, divider, totalReviews, divider, reviewsDisplay, divider, avgDisplay);
 
-                event.getHook().sendMessage("").setComponents(container).useComponentsV2().queue();
+            event.getHook().sendMessage("").setComponents(container).useComponentsV2().queue();
 
-            } catch (Exception e) {
-                event.getHook().sendMessage("❌ Error fetching reviews: " + e.getMessage()).queue();
-                e.printStackTrace();
-            }
-        });
+        } catch (Exception e) {
+            commandFailed(event.getName());
+            event.getHook().sendMessage("❌ Error fetching reviews: " + e.getMessage()).queue();
+            e.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,220 @@
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * New and negative reviews per group over the last hour, day and week, for /trending.
+ * Every group with a review in the last week has one ring buffer of time buckets per window; a write
+ * counts into the bucket of its created_at, and a query adds up the buckets that are still inside the window.
+ * Windows are therefore bucket-aligned: "last hour" is the last 12 five-minute buckets, and so on.
+ */
+public class TrendingGroups implements ReviewListener {
+
+    // Ratings up to this count as negative
+    public static final int NEGATIVE_RATING = 2;
+
+    public enum Window {
+        HOUR(Duration.ofMinutes(5), 12),
+        DAY(Duration.ofHours(1), 24),
+        WEEK(Duration.ofDays(1), 7);
+
+        final long bucketMillis;
+        final int buckets;
+
+        Window(Duration bucket, int buckets) {
+            this.bucketMillis = bucket.toMillis();
+            this.buckets = buckets;
+        }
+
+        public Duration length() {
+            return Duration.ofMillis(bucketMillis * buckets);
+        }
+    }
+
+    public record Trend(String groupId, int reviews, int negative) {}
+
+    // Most reviews (or most negative ones) first, ties in shortcode order
+    private static final Comparator<Trend> BY_REVIEWS = Comparator
+            .comparingInt(Trend::reviews).reversed()
+            .thenComparing(Trend::groupId);
+    private static final Comparator<Trend> BY_NEGATIVE = Comparator
+            .comparingInt(Trend::negative).reversed()
+            .thenComparing(BY_REVIEWS);
+
+    // Groups are dropped once their newest review left the week window, checked every this many writes
+    private static final int PRUNE_EVERY = 1_000;
+
+    /**
+     * Fixed number of buckets; a slot holds the counts of bucket number epoch[slot] (time / bucketMillis)
+     * and is reset when a later bucket maps onto it.
+     */
+    private static final class Ring {
+        final long[] epoch;
+        final int[] reviews;
+        final int[] negative;
+
+        Ring(int buckets) {
+            epoch = new long[buckets];
+            reviews = new int[buckets];
+            negative = new int[buckets];
+        }
+
+        void add(Window window, long time, int reviewDelta, int negativeDelta, long now) {
+            long bucket = time / window.bucketMillis;
+            long current = now / window.bucketMillis;
+            // Outside of the window (or in the future, clock skew): nothing to count
+            if (bucket <= current - window.buckets || bucket > current) return;
+
+            int slot = (int) (bucket % window.buckets);
+            if (epoch[slot] != bucket) {
+                if (epoch[slot] > bucket) return; // Slot already holds a newer bucket, this one has expired
+                epoch[slot] = bucket;
+                reviews[slot] = 0;
+                negative[slot] = 0;
+            }
+            reviews[slot] = Math.max(0, reviews[slot] + reviewDelta);
+            negative[slot] = Math.max(0, negative[slot] + negativeDelta);
+        }
+
+        // {reviews, negative} in the buckets that are still inside the window
+        int[] sum(Window window, long now) {
+            long current = now / window.bucketMillis;
+            int[] sum = new int[2];
+            for (int slot = 0; slot < window.buckets; slot++) {
+                if (epoch[slot] > current - window.buckets && epoch[slot] <= current) {
+                    sum[0] += reviews[slot];
+                    sum[1] += negative[slot];
+                }
+            }
+            return sum;
+        }
+    }
+
+    private static final class GroupTrend {
+        final Ring[] rings = new Ring[Window.values().length];
+        long newest;
+
+        GroupTrend() {
+            for (Window window : Window.values()) {
+                rings[window.ordinal()] = new Ring(window.buckets);
+            }
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, GroupTrend> groups = new HashMap<>();
+    private int writesSincePrune;
+    private final LongSupplier clock;
+
+    public TrendingGroups() {
+        this(System::currentTimeMillis);
+    }
+
+    // Tests pass a fake clock
+    TrendingGroups(LongSupplier clock) {
+        this.clock = clock;
+        Metrics.gauge("vrcbot_trending_groups", "Groups with reviews in the last week", this::size);
+    }
+
+    // Startup load, fed by ReviewRepository.forEachReviewSince with the week window
+    public void add(GroupReview review) {
+        if (review.getCreatedAt() == null) return;
+        count(review.getGroupId(), review.getCreatedAt().getTime(), 1, isNegative(review) ? 1 : 0);
+    }
+
+    /**
+     * Up to limit groups with the most new reviews in the window, or the most negative ones if negative is set.
+     * Groups without any (negative) review in the window are left out.
+     */
+    public List<Trend> top(Window window, boolean negative, int limit) {
+        long now = clock.getAsLong();
+        List<Trend> trends = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            groups.forEach((groupId, trend) -> {
+                int[] sum = trend.rings[window.ordinal()].sum(window, now);
+                if (negative ? sum[1] > 0 : sum[0] > 0) {
+                    trends.add(new Trend(groupId, sum[0], sum[1]));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        trends.sort(negative ? BY_NEGATIVE : BY_REVIEWS);
+        return trends.subList(0, Math.min(limit, trends.size()));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return groups.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void reviewAdded(GroupReview review) {
+        // A review that was just written without its timestamp at hand counts as now
+        long time = review.getCreatedAt() != null ? review.getCreatedAt().getTime() : clock.getAsLong();
+        count(review.getGroupId(), time, 1, isNegative(review) ? 1 : 0);
+    }
+
+    @Override
+    public void reviewUpdated(GroupReview before, GroupReview after) {
+        // Still the same review, only whether it counts as negative can change
+        int negativeDelta = (isNegative(after) ? 1 : 0) - (isNegative(before) ? 1 : 0);
+        if (negativeDelta != 0 && after.getCreatedAt() != null) {
+            count(after.getGroupId(), after.getCreatedAt().getTime(), 0, negativeDelta);
+        }
+    }
+
+    @Override
+    public void reviewRemoved(GroupReview review) {
+        if (review.getCreatedAt() == null) return;
+        count(review.getGroupId(), review.getCreatedAt().getTime(), -1, isNegative(review) ? -1 : 0);
+    }
+
+    private static boolean isNegative(GroupReview review) {
+        return review.getRating() <= NEGATIVE_RATING;
+    }
+
+    private void count(String groupId, long time, int reviewDelta, int negativeDelta) {
+        long now = clock.getAsLong();
+        if (time <= now - Window.WEEK.length().toMillis()) return;
+
+        lock.writeLock().lock();
+        try {
+            GroupTrend trend = groups.get(groupId);
+            if (trend == null) {
+                // Unknown group: only an added review is worth tracking
+                if (reviewDelta <= 0) return;
+                trend = new GroupTrend();
+                groups.put(groupId, trend);
+            }
+            for (Window window : Window.values()) {
+                trend.rings[window.ordinal()].add(window, time, reviewDelta, negativeDelta, now);
+            }
+            if (reviewDelta > 0) trend.newest = Math.max(trend.newest, time);
+
+            if (++writesSincePrune >= PRUNE_EVERY) {
+                writesSincePrune = 0;
+                long weekAgo = now - Window.WEEK.length().toMillis();
+                groups.values().removeIf(group -> group.newest <= weekAgo);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Start of the window to load at startup
+    public static Timestamp loadSince() {
+        return new Timestamp(System.currentTimeMillis() - Window.WEEK.length().toMillis());
+    }
+}
@@ -0,0 +1,127 @@
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Small in-process cache with a TTL per entry and a hard size limit (least recently used entries go first).
+ * Concurrent misses for the same key are collapsed: one caller runs the loader, the others wait for its result.
+ * A null result is cached too ("not found"), but only for the shorter negative TTL.
+ */
+public class TtlCache<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<K, V, E extends Exception> {
+        V load(K key) throws E;
+    }
+
+    private record Entry<V>(V value, long expiresAt) {}
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier nanoTime;
+
+    // Access-ordered so the eldest entry is the least recently used one. Guarded by itself.
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    // Loads currently running (key -> result of the caller doing the work)
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TtlCache(int maxSize, Duration ttl, Duration negativeTtl) {
+        this(maxSize, ttl, negativeTtl, System::nanoTime);
+    }
+
+    // Tests pass a fake clock
+    TtlCache(int maxSize, Duration ttl, Duration negativeTtl, LongSupplier nanoTime) {
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value, or loads it with the given loader if it is missing or expired.
+     * If another thread is already loading the same key, this waits for that result instead.
+     */
+    public <E extends Exception> V get(K key, Loader<K, V, E> loader) throws E {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt() - nanoTime.getAsLong() > 0) {
+                hits.increment();
+                return entry.value();
+            }
+        }
+        misses.increment();
+
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, pending);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            V value = loader.load(key);
+            synchronized (entries) {
+                // Only store if nobody invalidated the key while we were loading
+                if (inFlight.remove(key, pending)) {
+                    long ttl = value != null ? ttlNanos : negativeTtlNanos;
+                    entries.put(key, new Entry<>(value, nanoTime.getAsLong() + ttl));
+                }
+            }
+            pending.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            inFlight.remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the key, including any load that is still running for it.
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            inFlight.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> V await(CompletableFuture<V> running) throws E {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw (E) cause;
+        }
+    }
+}
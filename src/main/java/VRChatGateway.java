@@ -0,0 +1,269 @@
+import io.github.vrchatapi.ApiException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Every VRChat API call of the handlers goes through here:
+ * - a global token bucket, so bursts of interactions don't turn into bursts of VRChat requests
+ * - 429 and 5xx answers are retried with jittered exponential backoff; a Retry-After header pauses all calls
+ * - a circuit breaker that stops calling VRChat for a while after repeated failures
+ * 401s are still handled (shared re-login + retry) by VRChatSessionManager.call underneath.
+ *
+ * The logins and the keepalive check of VRChatSessionManager don't go through here. A re-login runs inside
+ * a gateway call (on its 401), so it would wait for a second token, and while the circuit is half-open the
+ * breaker would reject it and the trial request could never succeed. Logins have their own backoff instead,
+ * and the keepalive is one request every 15 minutes.
+ *
+ * Callers never wait longer than the wait budget. If no request can be made in time, UnavailableException
+ * is thrown right away, so the handler can answer with cached or degraded data instead.
+ */
+public class VRChatGateway {
+
+    /**
+     * VRChat was not called: the circuit is open, or a rate limit would have made the caller wait too long.
+     */
+    public static class UnavailableException extends ApiException {
+        public UnavailableException(String message) {
+            super(503, message);
+        }
+    }
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    // Breaker: opens after this many transient failures in a row, cooldown doubles while the probe keeps failing
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long MIN_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long MAX_COOLDOWN_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final VRChatSessionManager session;
+    private final double tokensPerNano;
+    private final double burst;
+    private final long waitBudgetNanos;
+    private final LongSupplier nanoTime;
+    private final LongConsumer sleeper;
+
+    // Token bucket, guarded by this. tokens goes negative while callers are waiting for their reserved token.
+    private double tokens;
+    private long refilledAt;
+    // Set from Retry-After: nobody calls VRChat before this (nanoTime)
+    private long pausedUntil;
+
+    // Circuit breaker, guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private long cooldownNanos = MIN_COOLDOWN_NANOS;
+
+    /**
+     * @param requestsPerSecond sustained request rate towards VRChat
+     * @param burst             requests that may go out at once after a quiet period
+     * @param waitBudget        longest time one call may spend waiting for tokens and retries
+     */
+    public VRChatGateway(VRChatSessionManager session, double requestsPerSecond, int burst, Duration waitBudget) {
+        this(session, requestsPerSecond, burst, waitBudget, System::nanoTime, VRChatGateway::sleep);
+    }
+
+    // Tests pass a fake clock, and a sleeper that moves it
+    VRChatGateway(VRChatSessionManager session, double requestsPerSecond, int burst, Duration waitBudget,
+                  LongSupplier nanoTime, LongConsumer sleeper) {
+        this.session = session;
+        this.tokensPerNano = requestsPerSecond / 1_000_000_000.0;
+        this.burst = burst;
+        this.tokens = burst;
+        this.waitBudgetNanos = waitBudget.toNanos();
+        this.nanoTime = nanoTime;
+        this.sleeper = sleeper;
+        this.refilledAt = nanoTime.getAsLong();
+        this.pausedUntil = refilledAt;
+
+        Metrics.gauge("vrcbot_vrchat_circuit_state", "VRChat circuit breaker: 0 closed, 1 half-open, 2 open",
+                () -> switch (state()) {
+                    case CLOSED -> 0;
+                    case HALF_OPEN -> 1;
+                    case OPEN -> 2;
+                });
+    }
+
+    /**
+     * Executes a VRChat API call within the rate limit, retrying transient failures.
+     * @throws UnavailableException if VRChat was not (or no longer) called because of the breaker or the rate limit
+     */
+    public <T> T call(VRChatSessionManager.ApiCall<T> apiCall) throws ApiException {
+        long deadline = nanoTime.getAsLong() + waitBudgetNanos;
+        for (int attempt = 1; ; attempt++) {
+            boolean probe = admit();
+            acquire(deadline, probe);
+            try {
+                T result = session.call(apiCall);
+                onSuccess();
+                return result;
+            } catch (ApiException e) {
+                if (!isTransient(e.getCode())) {
+                    // VRChat answered, it just didn't like the request
+                    onSuccess();
+                    throw e;
+                }
+                long retryAfter = retryAfterNanos(e);
+                onFailure(retryAfter, probe);
+
+                long backoff = Math.max(retryAfter, jitteredBackoff(attempt));
+                if (attempt >= MAX_ATTEMPTS || nanoTime.getAsLong() + backoff > deadline || state() != State.CLOSED) {
+                    throw e;
+                }
+                Metrics.increment("vrcbot_vrchat_retries_total", Metrics.label("code", String.valueOf(e.getCode())));
+                sleeper.accept(backoff);
+            } catch (RuntimeException e) {
+                onFailure(0, probe);
+                throw e;
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return state() == State.OPEN;
+    }
+
+    private synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Lets the call through the breaker, or throws if the circuit is open.
+     * @return true if this call is the single trial request of a half-open circuit
+     */
+    private synchronized boolean admit() throws UnavailableException {
+        switch (state) {
+            case CLOSED -> {
+                return false;
+            }
+            case OPEN -> {
+                if (nanoTime.getAsLong() - openUntil >= 0) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+            }
+            case HALF_OPEN -> {
+                // The trial request is still running
+            }
+        }
+        Metrics.increment("vrcbot_vrchat_rejected_total", Metrics.label("reason", "circuit_open"));
+        throw new UnavailableException("VRChat is unavailable, not calling it for another "
+                + TimeUnit.NANOSECONDS.toSeconds(Math.max(0, openUntil - nanoTime.getAsLong())) + "s");
+    }
+
+    private synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("VRChat is reachable again, closing the circuit.");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        cooldownNanos = MIN_COOLDOWN_NANOS;
+    }
+
+    private synchronized void onFailure(long retryAfterNanos, boolean probe) {
+        long now = nanoTime.getAsLong();
+        if (retryAfterNanos > 0 && now + retryAfterNanos - pausedUntil > 0) {
+            pausedUntil = now + retryAfterNanos;
+        }
+
+        consecutiveFailures++;
+        if (probe) {
+            cooldownNanos = Math.min(cooldownNanos * 2, MAX_COOLDOWN_NANOS);
+        } else if (state != State.CLOSED || consecutiveFailures < FAILURE_THRESHOLD) {
+            return;
+        }
+
+        long cooldown = Math.max(cooldownNanos, retryAfterNanos);
+        state = State.OPEN;
+        openUntil = now + cooldown;
+        System.err.println("VRChat failed " + consecutiveFailures + " time(s) in a row, opening the circuit for "
+                + TimeUnit.NANOSECONDS.toSeconds(cooldown) + "s");
+    }
+
+    /**
+     * Takes a token from the bucket, sleeping until it is refilled or a Retry-After pause is over.
+     * The token is reserved before sleeping, so waiting callers are served in order.
+     */
+    private void acquire(long deadline, boolean probe) throws UnavailableException {
+        long wait;
+        synchronized (this) {
+            long now = nanoTime.getAsLong();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+
+            wait = Math.max(0, pausedUntil - now);
+            if (tokens < 1) {
+                wait = Math.max(wait, (long) Math.ceil((1 - tokens) / tokensPerNano));
+            }
+            if (now + wait - deadline > 0) {
+                if (probe) {
+                    // Give the trial slot back, the next caller may have more time
+                    state = State.OPEN;
+                }
+                Metrics.increment("vrcbot_vrchat_rejected_total", Metrics.label("reason", "rate_limit"));
+                throw new UnavailableException("VRChat rate limit reached, try again in "
+                        + TimeUnit.NANOSECONDS.toMillis(wait) + "ms");
+            }
+            tokens -= 1;
+        }
+        if (wait > 0) sleeper.accept(wait);
+    }
+
+    // 0: no response (network error), 429: rate limited, 5xx: VRChat is having problems
+    private static boolean isTransient(int code) {
+        return code == 0 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    // "Full jitter": a random delay between 0 and the exponential backoff of this attempt
+    private static long jitteredBackoff(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_NANOS, BASE_BACKOFF_NANOS << Math.min(attempt - 1, 10));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Reads the Retry-After header of a failed call (delta-seconds or an HTTP date).
+     * @return the delay in nanoseconds, 0 if there is none
+     */
+    private static long retryAfterNanos(ApiException e) {
+        Map<String, List<String>> headers = e.getResponseHeaders();
+        if (headers == null) return 0;
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() == null || !header.getKey().equalsIgnoreCase("Retry-After")) continue;
+            if (header.getValue() == null || header.getValue().isEmpty()) return 0;
+
+            String value = header.getValue().get(0).trim();
+            try {
+                return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+            } catch (NumberFormatException notSeconds) {
+                try {
+                    ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, Duration.between(ZonedDateTime.now(), at).toNanos());
+                } catch (RuntimeException notADate) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,105 +5,327 @@ import io.github.vrchatapi.*;
 import io.github.vrchatapi.auth.*;
 import io.github.vrchatapi.api.*;
 import io.github.vrchatapi.model.*;
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.time.Duration;
-import java.util.function.Supplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class VRChatSessionManager {
 
     // Load these from Environment Variables!
-    private static final Dotenv dotenv = Dotenv.load();
+    private static final Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
     private static final String BOT_USER = dotenv.get("VRC_USER");
     private static final String BOT_PASS = dotenv.get("VRC_PASS");
     private static final String TOTP_SECRET = dotenv.get("VRC_TOTP_SECRET");
 
-    private ApiClient client;
+    // Auth/2FA cookies are kept here between restarts (readable by the bot user only)
+    private static final Path COOKIE_FILE = Path.of(dotenv.get("VRC_COOKIE_FILE", "vrchat-session.cookies"));
+
+    // Re-login rate limit: at least MIN_LOGIN_INTERVAL between attempts, doubling after every failure
+    private static final Duration MIN_LOGIN_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration MAX_LOGIN_BACKOFF = Duration.ofMinutes(15);
+
+    // Background session check, and a full re-login before the session gets old
+    private static final Duration KEEPALIVE_INTERVAL = Duration.ofMinutes(15);
+    private static final Duration SESSION_REFRESH_AGE = Duration.ofHours(12);
+
+    private volatile ApiClient client;
+
+    // Only one login runs at a time; callers that queued behind it reuse its result
+    private final ReentrantLock loginLock = new ReentrantLock();
+    // Bumped after every successful login, so waiters can tell a login happened while they waited
+    private volatile long sessionGeneration;
+    private volatile long sessionStartedAt;
+    private long nextLoginAllowedAt; // guarded by loginLock
+    private int failedLogins;        // guarded by loginLock
+
+    private ScheduledExecutorService keepalive;
+
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T call() throws ApiException;
+    }
 
     public ApiClient login() {
         client = new ApiClient();
         client.setUserAgent("MyDiscordBot/1.0 (contact@email.com)");
-        client.setUsername(BOT_USER);
-        client.setPassword(BOT_PASS);
 
         AuthenticationApi authApi = new AuthenticationApi(client);
 
+        // Try the cookies of the last run first, so restarts don't need a password + TOTP login
+        if (loadCookies()) {
+            try {
+                CurrentUser user = authApi.getCurrentUser();
+                if (user != null && user.getId() != null) {
+                    System.out.println("Login valid (Cookie used).");
+                    onLoginSucceeded();
+                    startKeepalive();
+                    return client;
+                }
+            } catch (Exception e) {
+                System.out.println("Stored VRChat session is no longer valid: " + e.getMessage());
+            }
+        }
+
+        client.setUsername(BOT_USER);
+        client.setPassword(BOT_PASS);
+
+        boolean loggedIn = false;
         try {
             // Check if we are already logged in (cookie valid)
-            authApi.getCurrentUser();
-            System.out.println("Login valid (Cookie used).");
+            CurrentUser user = authApi.getCurrentUser();
+            // Without an ID the answer is a pending 2FA challenge, not a session
+            if (user != null && user.getId() != null) {
+                System.out.println("Login valid (Basic auth used).");
+                onLoginSucceeded();
+                loggedIn = true;
+            }
         } catch (Exception e) {
-            // Cookie invalid -> Perform full login with TOTP
+            System.out.println("Basic auth login failed: " + e.getMessage());
+        }
+        if (!loggedIn) {
+            // Cookie invalid or 2FA required -> Perform full login with TOTP
             System.out.println("Session expired. Performing TOTP Auto-Login...");
-            performTotpLogin(authApi);
+            if (performTotpLogin(authApi)) {
+                onLoginSucceeded();
+            }
         }
+        startKeepalive();
         return client;
     }
 
     /**
      * Re-authenticates the session by performing a fresh login.
+     * Single-flight: if another thread is already logging in, this waits for that login instead of
+     * starting a second one. Rate-limited, so a broken TOTP secret can't cause a login storm.
+     * @return true if the session was (re-)established
      */
-    public void reAuthenticate() {
-        System.out.println("Re-authenticating VRChat session...");
-        if (client == null) {
-            client = new ApiClient();
-            client.setUserAgent("MyDiscordBot/1.0 (contact@email.com)");
+    public boolean reAuthenticate() {
+        return reAuthenticate(sessionGeneration);
+    }
+
+    /**
+     * @param seenGeneration the session generation the caller's failed request was made with
+     */
+    private boolean reAuthenticate(long seenGeneration) {
+        loginLock.lock();
+        try {
+            if (sessionGeneration != seenGeneration) {
+                // Someone else logged in while we waited for the lock
+                return true;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now < nextLoginAllowedAt) {
+                System.out.println("VRChat re-authentication skipped (rate limited for another "
+                        + (nextLoginAllowedAt - now) / 1000 + "s)");
+                Metrics.increment("vrcbot_vrchat_reauth_total", Metrics.label("result", "skipped"));
+                return false;
+            }
+
+            System.out.println("Re-authenticating VRChat session...");
+            if (client == null) {
+                client = new ApiClient();
+                client.setUserAgent("MyDiscordBot/1.0 (contact@email.com)");
+            }
             client.setUsername(BOT_USER);
             client.setPassword(BOT_PASS);
+            AuthenticationApi authApi = new AuthenticationApi(client);
+
+            try {
+                // Basic auth on /auth/user issues a fresh auth cookie, 2FA is verified afterwards
+                authApi.getCurrentUser();
+            } catch (Exception e) {
+                // Expected while 2FA is still pending
+            }
+
+            if (performTotpLogin(authApi)) {
+                onLoginSucceeded();
+                Metrics.increment("vrcbot_vrchat_reauth_total", Metrics.label("result", "success"));
+                return true;
+            }
+
+            Metrics.increment("vrcbot_vrchat_reauth_total", Metrics.label("result", "failure"));
+            failedLogins++;
+            long backoff = Math.min(MIN_LOGIN_INTERVAL.toMillis() << Math.min(failedLogins, 10), MAX_LOGIN_BACKOFF.toMillis());
+            nextLoginAllowedAt = System.currentTimeMillis() + backoff;
+            System.err.println("VRChat login failed " + failedLogins + " time(s) in a row, next attempt in " + backoff / 1000 + "s");
+            return false;
+        } finally {
+            loginLock.unlock();
+        }
+    }
+
+    private void onLoginSucceeded() {
+        loginLock.lock();
+        try {
+            failedLogins = 0;
+            nextLoginAllowedAt = System.currentTimeMillis() + MIN_LOGIN_INTERVAL.toMillis();
+            sessionStartedAt = System.currentTimeMillis();
+            sessionGeneration++;
+            saveCookies();
+        } finally {
+            loginLock.unlock();
         }
-        AuthenticationApi authApi = new AuthenticationApi(client);
-        performTotpLogin(authApi);
     }
 
     /**
-     * Executes a VRChat API call with automatic re-authentication on 401 errors.
-     * @param apiCall The API call to execute (as a Supplier)
-     * @param <T> The return type of the API call
-     * @return The result of the API call
-     * @throws ApiException If the API call fails after retry
+     * Writes the session cookies of the client to COOKIE_FILE (owner read/write only).
+     * One cookie per line: name, value, domain, path, expiresAt, flags - tab separated.
      */
-    public <T> T executeWithReauth(Supplier<T> apiCall) throws ApiException {
+    private void saveCookies() {
+        CookieJar jar = client.getHttpClient().cookieJar();
+        HttpUrl url = HttpUrl.get(client.getBasePath());
+
+        StringBuilder sb = new StringBuilder();
+        for (Cookie cookie : jar.loadForRequest(url)) {
+            sb.append(cookie.name()).append('\t')
+                    .append(cookie.value()).append('\t')
+                    .append(cookie.domain()).append('\t')
+                    .append(cookie.path()).append('\t')
+                    .append(cookie.expiresAt()).append('\t')
+                    .append(cookie.hostOnly() ? "h" : "")
+                    .append(cookie.secure() ? "s" : "")
+                    .append(cookie.httpOnly() ? "o" : "")
+                    .append('\n');
+        }
+
         try {
-            return apiCall.get();
-        } catch (Exception e) {
-            // Handle cases where Supplier wraps ApiException in RuntimeException
-            if (e.getCause() instanceof ApiException apiEx) {
-                if (apiEx.getCode() == 401) {
-                    System.out.println("Received 401 Unauthorized. Attempting re-authentication...");
-                    reAuthenticate();
-                    return apiCall.get();
-                }
-                throw apiEx;
+            Path tmp = COOKIE_FILE.resolveSibling(COOKIE_FILE.getFileName() + ".tmp");
+            Files.deleteIfExists(tmp);
+            try {
+                Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } catch (UnsupportedOperationException e) {
+                Files.createFile(tmp); // Not a POSIX file system
+            }
+            Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, COOKIE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save VRChat session cookies: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the cookies saved by saveCookies into the client.
+     * @return true if there was at least one unexpired cookie
+     */
+    private boolean loadCookies() {
+        if (!Files.isRegularFile(COOKIE_FILE)) return false;
+
+        List<Cookie> cookies = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(COOKIE_FILE, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 6) continue;
+
+                long expiresAt = Long.parseLong(parts[4]);
+                if (expiresAt < System.currentTimeMillis()) continue;
+
+                String flags = parts[5];
+                Cookie.Builder builder = new Cookie.Builder()
+                        .name(parts[0])
+                        .value(parts[1])
+                        .path(parts[3])
+                        .expiresAt(expiresAt);
+                if (flags.contains("h")) builder.hostOnlyDomain(parts[2]); else builder.domain(parts[2]);
+                if (flags.contains("s")) builder.secure();
+                if (flags.contains("o")) builder.httpOnly();
+                cookies.add(builder.build());
             }
-            throw new RuntimeException(e);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read VRChat session cookies: " + e.getMessage());
+            return false;
         }
+
+        if (cookies.isEmpty()) return false;
+        client.getHttpClient().cookieJar().saveFromResponse(HttpUrl.get(client.getBasePath()), cookies);
+        System.out.println("Loaded " + cookies.size() + " stored VRChat session cookie(s).");
+        return true;
     }
 
     /**
-     * Executes a VRChat API call (void return) with automatic re-authentication on 401 errors.
-     * @param apiCall The API call to execute (as a Runnable)
-     * @throws ApiException If the API call fails after retry
+     * Checks the session in the background and logs in again before it gets old, so interactions
+     * rarely run into a 401 in the first place.
      */
-    public void executeWithReauth(Runnable apiCall) throws ApiException {
+    private synchronized void startKeepalive() {
+        if (keepalive != null) return;
+        keepalive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vrchat-keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        keepalive.scheduleWithFixedDelay(this::checkSession,
+                KEEPALIVE_INTERVAL.toMillis(), KEEPALIVE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void checkSession() {
+        long generation = sessionGeneration;
         try {
-            apiCall.run();
+            if (System.currentTimeMillis() - sessionStartedAt > SESSION_REFRESH_AGE.toMillis()) {
+                System.out.println("VRChat session is getting old, refreshing it...");
+                reAuthenticate(generation);
+                return;
+            }
+            new AuthenticationApi(client).getCurrentUser();
+        } catch (ApiException e) {
+            System.out.println("VRChat session check failed: " + e.getMessage());
+            // Only a rejected session needs a new login; a 429 or an outage would just be made worse by one
+            if (e.getCode() == 401) {
+                reAuthenticate(generation);
+            }
         } catch (Exception e) {
-            if (e.getCause() instanceof ApiException apiEx) {
-                if (apiEx.getCode() == 401) {
+            System.out.println("VRChat session check failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executes a VRChat API call, re-authenticating once on a 401 and retrying after the
+     * shared login has finished.
+     */
+    public <T> T call(ApiCall<T> apiCall) throws ApiException {
+        long start = System.nanoTime();
+        long generation = sessionGeneration;
+        try {
+            try {
+                return apiCall.call();
+            } catch (ApiException e) {
+                if (e.getCode() == 401) {
                     System.out.println("Received 401 Unauthorized. Attempting re-authentication...");
-                    reAuthenticate();
-                    apiCall.run();
-                    return;
+                    if (reAuthenticate(generation)) {
+                        return apiCall.call();
+                    }
                 }
-                throw apiEx;
+                throw e;
             }
-            throw new RuntimeException(e);
+        } catch (ApiException e) {
+            countError(e);
+            throw e;
+        } finally {
+            Metrics.observe("vrcbot_vrchat_call_duration_seconds", "", start);
         }
     }
 
+    // HTTP status of the failed call, 0 when the request never got a response
+    private static void countError(ApiException e) {
+        Metrics.increment("vrcbot_vrchat_errors_total", Metrics.label("code", String.valueOf(e.getCode())));
+    }
+
     public ApiClient getClient() {
         return client;
     }
 
-    private void performTotpLogin(AuthenticationApi authApi) {
+    private boolean performTotpLogin(AuthenticationApi authApi) {
         try {
             // 1. Generate the 6-digit code based on the Secret
             TOTPGenerator.Builder builder = new TOTPGenerator.Builder(TOTP_SECRET.getBytes());
@@ -119,8 +341,10 @@ public class VRChatSessionManager {
             authApi.verify2FA(authCode);
 
             System.out.println("2FA Login successful!");
+            return true;
         } catch (Exception ex) {
             System.err.println("Critical Login Error: " + ex.getMessage());
+            return false;
         }
     }
 }
@@ -0,0 +1,113 @@
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupLeaderboardTest {
+
+    private final GroupLeaderboard board = new GroupLeaderboard();
+
+    private static GroupStats stats(String groupId, int reviews, long ratingSum, int dobYes) {
+        return new GroupStats(groupId, ratingSum, reviews, dobYes, new int[5]);
+    }
+
+    private static GroupReview review(String groupId, int rating, boolean asksForDob) {
+        return new GroupReview(groupId, "100", rating, asksForDob, null, new Timestamp(0));
+    }
+
+    private List<String> ranking(boolean worst, GroupLeaderboard.DobFilter filter) {
+        return board.top(10, worst, filter).stream().map(GroupLeaderboard.Ranked::groupId).toList();
+    }
+
+    private GroupLeaderboard.Ranked ranked(String groupId) {
+        return board.top(Integer.MAX_VALUE, false, GroupLeaderboard.DobFilter.ANY).stream()
+                .filter(ranked -> ranked.groupId().equals(groupId))
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    void fewReviewsArePulledTowardsTheOverallAverage() {
+        board.load(List.of(
+                stats("FIVE_OF_FIVE", 5, 25, 0),
+                stats("MANY_GOOD", 40, 180, 0),
+                stats("MANY_BAD", 40, 60, 0),
+                stats("TOO_FEW", 4, 20, 0)));
+
+        assertEquals(List.of("MANY_GOOD", "FIVE_OF_FIVE", "MANY_BAD"), ranking(false, GroupLeaderboard.DobFilter.ANY));
+        assertEquals(List.of("MANY_BAD", "FIVE_OF_FIVE", "MANY_GOOD"), ranking(true, GroupLeaderboard.DobFilter.ANY));
+        assertEquals(3, board.size());
+
+        // Overall average 285 / 89; five virtual reviews at that average
+        double prior = 285.0 / 89;
+        assertEquals((5 * prior + 25) / 10, ranked("FIVE_OF_FIVE").score(), 1e-9);
+        assertEquals(5.0, ranked("FIVE_OF_FIVE").averageRating(), 1e-9);
+
+        // The fifth review puts a group on the board, removing one takes it off again
+        board.reviewAdded(review("TOO_FEW", 5, false));
+        assertTrue(ranking(false, GroupLeaderboard.DobFilter.ANY).contains("TOO_FEW"));
+        board.reviewRemoved(review("TOO_FEW", 5, false));
+        assertFalse(ranking(false, GroupLeaderboard.DobFilter.ANY).contains("TOO_FEW"));
+    }
+
+    @Test
+    void dobFilterFollowsEdits() {
+        board.load(List.of(
+                stats("GATED", 5, 20, 4),
+                stats("OPEN", 5, 15, 1)));
+        assertEquals(List.of("GATED"), ranking(false, GroupLeaderboard.DobFilter.ASKS));
+        assertEquals(List.of("OPEN"), ranking(false, GroupLeaderboard.DobFilter.DOES_NOT_ASK));
+
+        // 2 of 5 say it asks: no longer likely age-gated
+        board.reviewUpdated(review("GATED", 4, true), review("GATED", 4, false));
+        board.reviewUpdated(review("GATED", 4, true), review("GATED", 4, false));
+        assertTrue(ranking(false, GroupLeaderboard.DobFilter.ASKS).isEmpty());
+        assertEquals(List.of("GATED", "OPEN"), ranking(false, GroupLeaderboard.DobFilter.DOES_NOT_ASK));
+        assertFalse(ranked("GATED").likelyAgeGated());
+    }
+
+    @Test
+    void smallAverageDriftKeepsTheScoresOfOtherGroups() {
+        board.load(List.of(
+                stats("A", 50, 150, 0),
+                stats("B", 50, 150, 0)));
+        double before = ranked("A").score();
+        assertEquals(3.0, before, 1e-9);
+
+        // 305 / 101 is within the drift threshold of 3.0: only the written group is scored again
+        board.reviewAdded(review("B", 5, false));
+        assertEquals(before, ranked("A").score(), 1e-12);
+        assertEquals((5 * 3.0 + 155) / 56, ranked("B").score(), 1e-9);
+
+        // 315 / 103 is not: that write re-scores every group with the new average, and later writes use it
+        for (int i = 0; i < 3; i++) {
+            board.reviewAdded(review("B", 5, false));
+        }
+        double prior = 315.0 / 103;
+        assertEquals((5 * prior + 150) / 55, ranked("A").score(), 1e-9);
+        assertEquals((5 * prior + 170) / 59, ranked("B").score(), 1e-9);
+    }
+
+    @Test
+    void driftingAverageReordersGroupsItDidNotTouch() {
+        // A small group at 4.0 against a big one at 3.9: with a low overall average the big one wins
+        board.load(List.of(
+                stats("SMALL", 5, 20, 0),
+                stats("BIG", 50, 195, 0),
+                stats("BAD", 45, 45, 0)));
+        assertEquals(List.of("BIG", "SMALL", "BAD"), ranking(false, GroupLeaderboard.DobFilter.ANY));
+
+        // Lots of 5-star reviews elsewhere raise the average above 3.78, where the small group overtakes
+        for (int i = 0; i < 150; i++) {
+            board.reviewAdded(review("NEW", 5, false));
+        }
+        assertEquals(List.of("NEW", "SMALL", "BIG", "BAD"), ranking(false, GroupLeaderboard.DobFilter.ANY));
+
+        // All scores come from the same prior, whichever write last re-scored them
+        double prior = (ranked("SMALL").score() * 10 - 20) / 5;
+        assertEquals(1010.0 / 250, prior, 0.05);
+        assertEquals((5 * prior + 195) / 55, ranked("BIG").score(), 1e-9);
+        assertEquals((5 * prior + 45) / 50, ranked("BAD").score(), 1e-9);
+    }
+}
@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupPrefixIndexTest {
+
+    private final GroupPrefixIndex index = new GroupPrefixIndex();
+
+    private static GroupReview review(String groupId, int rating) {
+        return new GroupReview(groupId, "100", rating, false, null, new Timestamp(0));
+    }
+
+    private List<String> complete(String prefix) {
+        return index.complete(prefix, GroupPrefixIndex.TOP_K).stream().map(GroupPrefixIndex.Match::shortCode).toList();
+    }
+
+    @Test
+    void mostReviewedMatchesComeFirstIgnoringCase() {
+        index.load(List.of(
+                new GroupStats("ABC.1", 8, 2, 0, new int[] {0, 0, 0, 2, 0}),
+                new GroupStats("ABD.2", 15, 3, 0, new int[] {0, 0, 0, 0, 3}),
+                new GroupStats("XYZ.3", 1, 1, 0, new int[] {1, 0, 0, 0, 0}),
+                new GroupStats("EMPTY.4", 0, 0, 0, new int[5])));
+
+        assertEquals(List.of("ABD.2", "ABC.1"), complete("ab"));
+        assertEquals(List.of("ABC.1"), complete("aBc"));
+        assertEquals(List.of("ABD.2", "ABC.1", "XYZ.3"), complete(""));
+        assertTrue(complete("empty").isEmpty());
+        assertTrue(complete("abx").isEmpty());
+        assertEquals(3, index.size());
+
+        GroupPrefixIndex.Match best = index.complete("ab", 1).get(0);
+        assertEquals(3, best.reviewCount());
+        assertEquals(5.0, best.averageRating(), 1e-9);
+    }
+
+    @Test
+    void lastReviewRemovesTheGroupAndPrunesItsBranch() {
+        index.reviewAdded(review("AB.1", 4));
+        int shared = index.nodes();
+        index.reviewAdded(review("AB.12", 2));
+        index.reviewAdded(review("AB.12", 3));
+        assertEquals(shared + 1, index.nodes());
+
+        index.reviewRemoved(review("AB.12", 2));
+        assertEquals(List.of("AB.1", "AB.12"), complete("ab"));
+        index.reviewRemoved(review("AB.12", 3));
+        assertEquals(List.of("AB.1"), complete("ab"));
+        assertEquals(shared, index.nodes());
+
+        // A group that ends inside another one's path keeps the path, but loses its entry
+        index.reviewAdded(review("AB.12", 5));
+        index.reviewRemoved(review("AB.1", 4));
+        assertEquals(List.of("AB.12"), complete("ab.1"));
+        assertEquals(shared + 1, index.nodes());
+
+        index.reviewRemoved(review("AB.12", 5));
+        assertEquals(0, index.nodes());
+        assertEquals(0, index.size());
+        assertTrue(complete("").isEmpty());
+
+        // Removing what isn't there changes nothing
+        index.reviewRemoved(review("CD.1", 5));
+        assertEquals(0, index.nodes());
+    }
+
+    @Test
+    void editsOnlyChangeTheAverage() {
+        index.reviewAdded(review("AB.1", 4));
+        index.reviewAdded(review("AB.1", 2));
+        index.reviewUpdated(review("AB.1", 2), review("AB.1", 5));
+
+        GroupPrefixIndex.Match match = index.complete("ab", 1).get(0);
+        assertEquals(2, match.reviewCount());
+        assertEquals(4.5, match.averageRating(), 1e-9);
+
+        // An edit of a group the index doesn't know doesn't add it
+        index.reviewUpdated(review("CD.1", 2), review("CD.1", 5));
+        assertTrue(complete("cd").isEmpty());
+    }
+
+    @Test
+    void topListsFollowChangesBeyondTopK() {
+        // 30 groups under "g", group i with i + 1 reviews: the top list holds g29 down to g05
+        List<GroupStats> stats = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            stats.add(new GroupStats(String.format("G%02d", i), 3L * (i + 1), i + 1, 0, new int[5]));
+        }
+        index.load(stats);
+        List<String> top = complete("g");
+        assertEquals(GroupPrefixIndex.TOP_K, top.size());
+        assertEquals("G29", top.get(0));
+        assertEquals("G05", top.get(24));
+        assertEquals(List.of("G00"), complete("g00"));
+
+        // A group from below the cut climbs to first place
+        for (int i = 0; i < 40; i++) {
+            index.reviewAdded(review("G01", 3));
+        }
+        top = complete("g");
+        assertEquals("G01", top.get(0));
+        assertEquals("G06", top.get(24));
+
+        // The leader losing all its reviews lets the next one from below the cut back in
+        for (int i = 0; i < 30; i++) {
+            index.reviewRemoved(review("G29", 3));
+        }
+        top = complete("g");
+        assertFalse(top.contains("G29"));
+        assertEquals("G01", top.get(0));
+        assertEquals("G05", top.get(24));
+        assertEquals(29, index.size());
+
+        assertEquals(2, index.complete("g", 2).size());
+    }
+}
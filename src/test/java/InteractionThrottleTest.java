@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InteractionThrottleTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    // Negative, like System.nanoTime() may be
+    private final AtomicLong now = new AtomicLong(-5 * SECOND);
+
+    @Test
+    void burstThenOneTokenPerInterval() {
+        InteractionThrottle.KeyedLimiter limiter = new InteractionThrottle.KeyedLimiter(2, 3, now::get);
+
+        assertTrue(limiter.tryAcquire("user"));
+        assertTrue(limiter.tryAcquire("user"));
+        assertTrue(limiter.tryAcquire("user"));
+        assertFalse(limiter.tryAcquire("user"));
+        // Other keys have their own bucket
+        assertTrue(limiter.tryAcquire("other"));
+
+        now.addAndGet(SECOND / 2 - 1);
+        assertFalse(limiter.tryAcquire("user"));
+        now.addAndGet(1);
+        assertTrue(limiter.tryAcquire("user"));
+        assertFalse(limiter.tryAcquire("user"));
+
+        // A long pause refills up to the burst, not more
+        now.addAndGet(60 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("user"));
+        }
+        assertFalse(limiter.tryAcquire("user"));
+    }
+
+    @Test
+    void concurrentCallersNeverGetMoreThanTheBurst() throws InterruptedException {
+        InteractionThrottle.KeyedLimiter limiter = new InteractionThrottle.KeyedLimiter(1, 50, now::get);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    if (limiter.tryAcquire("user")) allowed.incrementAndGet();
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(50, allowed.get());
+    }
+
+    @Test
+    void sweepDropsOnlyRefilledBuckets() {
+        InteractionThrottle.KeyedLimiter limiter = new InteractionThrottle.KeyedLimiter(1, 5, now::get);
+        // "busy" uses its whole burst, the others one token each
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("busy"));
+        }
+        for (int i = 1; i < 10_000; i++) {
+            limiter.tryAcquire("idle-" + i);
+        }
+        assertEquals(10_000, limiter.size());
+
+        // Two seconds on, the idle buckets are full again; the next new key crosses the threshold and sweeps them
+        now.addAndGet(2 * SECOND);
+        assertTrue(limiter.tryAcquire("new"));
+        assertEquals(2, limiter.size());
+
+        // "busy" kept its state and has refilled two tokens only
+        assertTrue(limiter.tryAcquire("busy"));
+        assertTrue(limiter.tryAcquire("busy"));
+        assertFalse(limiter.tryAcquire("busy"));
+
+        // A swept bucket behaves like a full one
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("idle-1"));
+        }
+        assertFalse(limiter.tryAcquire("idle-1"));
+    }
+
+    @Test
+    void groupLimitAppliesOverAllUsers() {
+        InteractionThrottle throttle = new InteractionThrottle(1, 2, 1, 3, now::get);
+
+        assertTrue(throttle.allow("1", "GRP.A"));
+        assertTrue(throttle.allow("2", "GRP.A"));
+        assertTrue(throttle.allow("3", "GRP.A"));
+        assertFalse(throttle.allow("4", "GRP.A"));
+        // Another group is fine; the rejected interaction still used one of the user's tokens
+        assertTrue(throttle.allow("4", "GRP.B"));
+        assertFalse(throttle.allow("4", null));
+
+        assertTrue(throttle.allow("1", null));
+        assertFalse(throttle.allow("1", null));
+    }
+}
@@ -0,0 +1,37 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcReviewRepositoryTest extends ReviewRepositoryContractTest {
+
+    private ReviewRepository reviews;
+    private UserRepository users;
+
+    @BeforeEach
+    void open() throws Exception {
+        DatabaseManager dbManager = TestDatabase.empty();
+        reviews = new JdbcReviewRepository(dbManager);
+        users = new JdbcUserRepository(dbManager);
+    }
+
+    @Override
+    ReviewRepository reviews() {
+        return reviews;
+    }
+
+    @Override
+    UserRepository users() {
+        return users;
+    }
+
+    @Test
+    void rateGroupFailsOnABadValueInsteadOfSavingIt() {
+        users.linkUser("100", "usr_100", "User 100");
+
+        // Out of range for the TINYINT column: an error, not a clamped row or "already reviewed"
+        assertEquals(RateResult.Status.FAILED, reviews.rateGroup(GROUP, "100", 300, false, null).status());
+        assertNull(reviews.getUserReview(GROUP, "100"));
+        assertEquals(0, reviews.getGroupStats(GROUP).reviewCount());
+    }
+}
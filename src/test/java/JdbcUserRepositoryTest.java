@@ -0,0 +1,24 @@
+import org.junit.jupiter.api.BeforeEach;
+
+class JdbcUserRepositoryTest extends UserRepositoryContractTest {
+
+    private UserRepository users;
+    private ReviewRepository reviews;
+
+    @BeforeEach
+    void open() throws Exception {
+        DatabaseManager dbManager = TestDatabase.empty();
+        users = new JdbcUserRepository(dbManager);
+        reviews = new JdbcReviewRepository(dbManager);
+    }
+
+    @Override
+    UserRepository users() {
+        return users;
+    }
+
+    @Override
+    ReviewRepository reviews() {
+        return reviews;
+    }
+}
@@ -0,0 +1,35 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.time.Duration;
+
+// The same contract with WRITE_BEHIND on: upserts, edits and ratings go through ReviewWriteBehind batches
+class JdbcWriteBehindReviewRepositoryTest extends ReviewRepositoryContractTest {
+
+    private ReviewWriteBehind writeBehind;
+    private ReviewRepository reviews;
+    private UserRepository users;
+
+    @BeforeEach
+    void open() throws Exception {
+        DatabaseManager dbManager = TestDatabase.empty();
+        writeBehind = new ReviewWriteBehind(dbManager, 16, Duration.ofMillis(5));
+        reviews = new JdbcReviewRepository(dbManager, writeBehind);
+        users = new JdbcUserRepository(dbManager);
+    }
+
+    @AfterEach
+    void close() {
+        writeBehind.close();
+    }
+
+    @Override
+    ReviewRepository reviews() {
+        return reviews;
+    }
+
+    @Override
+    UserRepository users() {
+        return users;
+    }
+}
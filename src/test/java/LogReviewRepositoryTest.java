@@ -0,0 +1,37 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+class LogReviewRepositoryTest extends ReviewRepositoryContractTest {
+
+    @TempDir
+    Path dir;
+
+    private LogStore store;
+    private ReviewRepository reviews;
+    private UserRepository users;
+
+    @BeforeEach
+    void open() throws Exception {
+        store = new LogStore(dir, LogStore.DEFAULT_COMPACT_BYTES);
+        reviews = new LogReviewRepository(store);
+        users = new LogUserRepository(store);
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    @Override
+    ReviewRepository reviews() {
+        return reviews;
+    }
+
+    @Override
+    UserRepository users() {
+        return users;
+    }
+}
@@ -0,0 +1,161 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Restarts of the LogStore. A crash is simulated by copying the files of a store that is still open into
+ * a new directory: every write has returned, so it is fsynced, but no final snapshot was written.
+ */
+class LogStoreTest {
+
+    private static final String GROUP = "GRP.0001";
+    private static final String OTHER_GROUP = "GRP.0002";
+
+    @TempDir
+    Path dir;
+
+    private final List<LogStore> open = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        open.forEach(LogStore::close);
+    }
+
+    private LogStore open(Path storeDir) throws IOException {
+        LogStore store = new LogStore(storeDir, LogStore.DEFAULT_COMPACT_BYTES);
+        open.add(store);
+        return store;
+    }
+
+    // The files of storeDir as a crash would leave them, in a new directory
+    private Path crashed(Path storeDir, String name) throws IOException {
+        Path copy = dir.resolve(name);
+        Files.createDirectories(copy);
+        try (Stream<Path> files = Files.list(storeDir)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+
+    @Test
+    void reopenAfterCloseKeepsEverything() throws IOException {
+        Path storeDir = dir.resolve("store");
+        LogStore store = open(storeDir);
+        store.link("100", "usr_a", "A");
+        store.link("101", "usr_b", "B");
+        store.upsertReview(GROUP, "100", 5, true, "great");
+        store.upsertReview(OTHER_GROUP, "100", 2, false, null);
+        store.upsertReview(GROUP, "101", 3, false, "fine");
+        store.updateReview(GROUP, "101", 4, null, null);
+        store.putGroup(new GroupInfo(GROUP, "grp_1", "Group One", "usr_a"));
+        store.unlink("101");
+        GroupReview before = store.review(GROUP, "100");
+        store.close();
+        open.remove(store);
+
+        assertThrows(IOException.class, () -> store.upsertReview(GROUP, "102", 1, false, null));
+
+        LogStore reopened = open(storeDir);
+        assertEquals("usr_a", reopened.vrcUserId("100"));
+        assertNull(reopened.vrcUserId("101"));
+        GroupReview review = reopened.review(GROUP, "100");
+        assertEquals(5, review.getRating());
+        assertEquals("great", review.getComment());
+        assertEquals(before.getCreatedAt(), review.getCreatedAt());
+        assertTrue(review.isOwnerReview());
+        assertEquals(4, reopened.review(GROUP, "101").getRating());
+        assertEquals(2, reopened.reviewsOfUser("100").size());
+        assertEquals("Group One", reopened.group(GROUP).group().name());
+
+        GroupStats stats = reopened.groupStats(GROUP);
+        assertEquals(2, stats.reviewCount());
+        assertEquals(9, stats.ratingSum());
+        assertEquals(1, stats.dobYesCount());
+        assertEquals(2, reopened.allGroupStats().size());
+
+        // The reopened store takes writes, and they survive the next restart as well
+        reopened.upsertReview(GROUP, "102", 1, false, null);
+        reopened.close();
+        open.remove(reopened);
+        LogStore third = open(storeDir);
+        assertEquals(3, third.groupStats(GROUP).reviewCount());
+        assertEquals("usr_a", third.vrcUserId("100"));
+    }
+
+    @Test
+    void truncatedLastRecordIsIgnored() throws IOException {
+        LogStore store = open(dir.resolve("store"));
+        store.link("100", "usr_a", "A");
+        store.upsertReview(GROUP, "100", 5, false, null);
+        store.upsertReview(OTHER_GROUP, "100", 1, false, "torn");
+
+        Path crashed = crashed(dir.resolve("store"), "crashed");
+        Path log = crashed.resolve("log-0.dat");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        LogStore recovered = open(crashed);
+        assertEquals("usr_a", recovered.vrcUserId("100"));
+        assertEquals(5, recovered.review(GROUP, "100").getRating());
+        assertNull(recovered.review(OTHER_GROUP, "100"));
+        assertEquals(0, recovered.groupStats(OTHER_GROUP).reviewCount());
+
+        // Writes go on behind the torn record and are read back after the next restart
+        recovered.upsertReview(OTHER_GROUP, "100", 2, false, "again");
+        Path crashedAgain = crashed(crashed, "crashed-again");
+        LogStore again = open(crashedAgain);
+        assertEquals("again", again.review(OTHER_GROUP, "100").getComment());
+        assertEquals(5, again.review(GROUP, "100").getRating());
+    }
+
+    @Test
+    void crashAfterRotateBeforeSnapshotReplaysBothLogs() throws IOException {
+        // Generation 0: a log with the first writes
+        LogStore first = open(dir.resolve("first"));
+        first.link("100", "usr_a", "A");
+        first.link("101", "usr_b", "B");
+        first.upsertReview(GROUP, "100", 5, false, "old");
+        first.upsertReview(GROUP, "101", 3, false, null);
+        Path generation0 = crashed(dir.resolve("first"), "generation-0");
+
+        // Restarting folds it into snapshot-1 and continues in log-1
+        LogStore second = open(crashed(generation0, "second"));
+        assertTrue(Files.exists(dir.resolve("second/snapshot-1.dat")));
+        second.upsertReview(GROUP, "100", 1, false, "new");
+        second.unlink("101");
+        second.upsertReview(OTHER_GROUP, "100", 4, false, null);
+
+        // Put it back to the moment after the rotation to log-1, with snapshot-1 only half written
+        Path crashed = crashed(dir.resolve("second"), "crashed");
+        byte[] snapshot = Files.readAllBytes(crashed.resolve("snapshot-1.dat"));
+        Files.delete(crashed.resolve("snapshot-1.dat"));
+        Files.write(crashed.resolve("snapshot-1.tmp"), Arrays.copyOf(snapshot, snapshot.length / 2));
+        Files.copy(generation0.resolve("log-0.dat"), crashed.resolve("log-0.dat"));
+
+        LogStore recovered = open(crashed);
+        assertFalse(Files.exists(crashed.resolve("snapshot-1.tmp")));
+        assertEquals("usr_a", recovered.vrcUserId("100"));
+        assertNull(recovered.vrcUserId("101"));
+        assertEquals("new", recovered.review(GROUP, "100").getComment());
+        assertEquals(3, recovered.review(GROUP, "101").getRating());
+        assertEquals(4, recovered.review(OTHER_GROUP, "100").getRating());
+        GroupStats stats = recovered.groupStats(GROUP);
+        assertEquals(2, stats.reviewCount());
+        assertEquals(4, stats.ratingSum());
+    }
+}
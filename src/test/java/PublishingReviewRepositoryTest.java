@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublishingReviewRepositoryTest {
+
+    private static final String GROUP = "GRP.0001";
+
+    @TempDir
+    Path dir;
+
+    private LogStore store;
+    private ReviewRepository reviews;
+    private UserRepository users;
+    // One line per published event
+    private final List<String> published = new ArrayList<>();
+
+    @BeforeEach
+    void open() throws Exception {
+        store = new LogStore(dir, LogStore.DEFAULT_COMPACT_BYTES);
+        ReviewEvents events = new ReviewEvents();
+        events.register(new ReviewListener() {
+            @Override
+            public void reviewAdded(GroupReview review) {
+                published.add("added " + describe(review));
+            }
+
+            @Override
+            public void reviewUpdated(GroupReview before, GroupReview after) {
+                published.add("updated " + describe(before) + " -> " + describe(after));
+            }
+
+            @Override
+            public void reviewRemoved(GroupReview review) {
+                published.add("removed " + describe(review));
+            }
+        });
+        reviews = new PublishingReviewRepository(new LogReviewRepository(store), events);
+        users = new PublishingUserRepository(new LogUserRepository(store), events);
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    private static String describe(GroupReview review) {
+        return review.getGroupId() + "/" + review.getDiscordUserId() + "=" + review.getRating();
+    }
+
+    @Test
+    void publishesEachWriteFromItsOwnChange() {
+        users.linkUser("100", "usr_a", "A");
+        reviews.rateGroup(GROUP, "100", 4, false, null);
+        reviews.updateReview(GROUP, "100", 2, null, null);
+        reviews.upsertReview(GROUP, "100", 5, false, null);
+        // Refused or without effect: nothing is published
+        reviews.rateGroup(GROUP, "100", 1, false, null);
+        reviews.updateReview(GROUP, "101", 1, null, null);
+
+        assertEquals(List.of(
+                "added GRP.0001/100=4",
+                "updated GRP.0001/100=4 -> GRP.0001/100=2",
+                "updated GRP.0001/100=2 -> GRP.0001/100=5"), published);
+    }
+
+    @Test
+    void addedReviewCarriesTheStoredCreationTime() {
+        List<GroupReview> added = new ArrayList<>();
+        ReviewEvents events = new ReviewEvents();
+        events.register(new ReviewListener() {
+            @Override
+            public void reviewAdded(GroupReview review) {
+                added.add(review);
+            }
+        });
+        new PublishingReviewRepository(new LogReviewRepository(store), events).upsertReview(GROUP, "100", 3, false, null);
+
+        assertEquals(reviews.getUserReview(GROUP, "100").getCreatedAt(), added.get(0).getCreatedAt());
+    }
+
+    @Test
+    void deletePublishesWhatItDeletedAndNothingIfItFailed() {
+        users.linkUser("100", "usr_a", "A");
+        reviews.rateGroup(GROUP, "100", 4, false, null);
+        published.clear();
+
+        users.deleteAllUserData("100");
+        assertEquals(List.of("removed GRP.0001/100=4"), published);
+
+        users.linkUser("101", "usr_b", "B");
+        reviews.rateGroup(GROUP, "101", 3, false, null);
+        published.clear();
+        store.close();
+        assertTrue(users.deleteAllUserData("101").isEmpty());
+        assertTrue(published.isEmpty());
+    }
+}
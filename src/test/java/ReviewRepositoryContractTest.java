@@ -0,0 +1,262 @@
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * What every ReviewRepository has to do the same way, whatever the storage. Subclasses provide empty
+ * repositories before each test; the user repository shares their storage and is only used to link reviewers.
+ */
+abstract class ReviewRepositoryContractTest {
+
+    static final String GROUP = "GRP.0001";
+    static final String OTHER_GROUP = "GRP.0002";
+
+    abstract ReviewRepository reviews();
+
+    abstract UserRepository users();
+
+    private void link(String discordUserId) {
+        users().linkUser(discordUserId, "usr_" + discordUserId, "User " + discordUserId);
+    }
+
+    @Test
+    void rateGroupNeedsALinkedUser() {
+        assertEquals(RateResult.Status.NOT_LINKED, reviews().rateGroup(GROUP, "100", 4, false, "nice").status());
+        assertNull(reviews().getUserReview(GROUP, "100"));
+        assertEquals(0, reviews().getGroupStats(GROUP).reviewCount());
+    }
+
+    @Test
+    void rateGroupSavesOnlyTheFirstReview() {
+        link("100");
+        RateResult first = reviews().rateGroup(GROUP, "100", 4, true, "nice");
+        assertEquals(RateResult.Status.SAVED, first.status());
+        assertEquals(1, first.stats().reviewCount());
+        assertEquals(4, first.stats().ratingSum());
+
+        RateResult second = reviews().rateGroup(GROUP, "100", 1, false, "changed my mind");
+        assertEquals(RateResult.Status.ALREADY_REVIEWED, second.status());
+
+        GroupReview saved = reviews().getUserReview(GROUP, "100");
+        assertEquals(4, saved.getRating());
+        assertTrue(saved.isAsksForDob());
+        assertEquals("nice", saved.getComment());
+        assertNotNull(saved.getCreatedAt());
+        assertTrue(reviews().hasUserReviewed(GROUP, "100"));
+        assertFalse(reviews().hasUserReviewed(OTHER_GROUP, "100"));
+        assertEquals(1, reviews().getGroupStats(GROUP).reviewCount());
+    }
+
+    @Test
+    void upsertReplacesTheReviewAndKeepsTheNumbersInSync() {
+        reviews().upsertReview(GROUP, "100", 5, true, "great");
+        reviews().upsertReview(GROUP, "101", 2, false, null);
+        Timestamp createdAt = reviews().getUserReview(GROUP, "100").getCreatedAt();
+        reviews().upsertReview(GROUP, "100", 3, false, "okay");
+
+        GroupReview replaced = reviews().getUserReview(GROUP, "100");
+        assertEquals(3, replaced.getRating());
+        assertFalse(replaced.isAsksForDob());
+        assertEquals("okay", replaced.getComment());
+        assertEquals(createdAt, replaced.getCreatedAt());
+        assertNull(reviews().getUserReview(GROUP, "101").getComment());
+
+        GroupStats stats = reviews().getGroupStats(GROUP);
+        assertEquals(2, stats.reviewCount());
+        assertEquals(5, stats.ratingSum());
+        assertEquals(0, stats.dobYesCount());
+        assertArrayEquals(new int[] {0, 1, 1, 0, 0}, stats.starCounts());
+        assertEquals(2.5, reviews().getAverageRating(GROUP), 1e-9);
+    }
+
+    @Test
+    void updateChangesOnlyTheGivenFields() {
+        reviews().upsertReview(GROUP, "100", 4, true, "first");
+
+        reviews().updateReview(GROUP, "100", null, false, null);
+        GroupReview review = reviews().getUserReview(GROUP, "100");
+        assertEquals(4, review.getRating());
+        assertFalse(review.isAsksForDob());
+        assertEquals("first", review.getComment());
+        assertEquals(0, reviews().getGroupStats(GROUP).dobYesCount());
+
+        reviews().updateReview(GROUP, "100", 2, null, "second");
+        review = reviews().getUserReview(GROUP, "100");
+        assertEquals(2, review.getRating());
+        assertFalse(review.isAsksForDob());
+        assertEquals("second", review.getComment());
+
+        GroupStats stats = reviews().getGroupStats(GROUP);
+        assertEquals(1, stats.reviewCount());
+        assertEquals(2, stats.ratingSum());
+        assertArrayEquals(new int[] {0, 1, 0, 0, 0}, stats.starCounts());
+    }
+
+    @Test
+    void updateOfAMissingReviewDoesNothing() {
+        reviews().updateReview(GROUP, "100", 3, true, "ghost");
+
+        assertNull(reviews().getUserReview(GROUP, "100"));
+        assertTrue(reviews().getAllReviews(GROUP).isEmpty());
+        assertEquals(0, reviews().getGroupStats(GROUP).reviewCount());
+    }
+
+    @Test
+    void asyncWritesReportTheirOutcome() {
+        link("100");
+        assertEquals(RateResult.Status.SAVED, reviews().rateGroupAsync(GROUP, "100", 5, false, null).join().status());
+        assertEquals(RateResult.Status.ALREADY_REVIEWED, reviews().rateGroupAsync(GROUP, "100", 1, false, null).join().status());
+        assertEquals(RateResult.Status.NOT_LINKED, reviews().rateGroupAsync(GROUP, "999", 1, false, null).join().status());
+
+        assertTrue(reviews().upsertReviewAsync(GROUP, "101", 3, true, "async").join().saved());
+        assertTrue(reviews().updateReviewAsync(GROUP, "101", 1, null, null).join().saved());
+
+        assertEquals(1, reviews().getUserReview(GROUP, "101").getRating());
+        assertEquals("async", reviews().getUserReview(GROUP, "101").getComment());
+        GroupStats stats = reviews().getGroupStats(GROUP);
+        assertEquals(2, stats.reviewCount());
+        assertEquals(6, stats.ratingSum());
+        assertEquals(1, stats.dobYesCount());
+    }
+
+    @Test
+    void writesReportTheStoredReviewBeforeAndAfter() {
+        link("100");
+        ReviewChange rated = reviews().rateGroupAsync(GROUP, "100", 4, false, "nice").join().change();
+        assertNull(rated.before());
+        Timestamp createdAt = reviews().getUserReview(GROUP, "100").getCreatedAt();
+        assertEquals(createdAt, rated.after().getCreatedAt());
+        assertEquals(4, rated.after().getRating());
+
+        ReviewChange edited = reviews().updateReviewAsync(GROUP, "100", 2, null, null).join();
+        assertEquals(4, edited.before().getRating());
+        assertEquals(2, edited.after().getRating());
+        assertEquals("nice", edited.after().getComment());
+        assertEquals(createdAt, edited.after().getCreatedAt());
+
+        ReviewChange replaced = reviews().upsertReviewAsync(GROUP, "100", 5, true, null).join();
+        assertEquals(2, replaced.before().getRating());
+        assertEquals(5, replaced.after().getRating());
+        assertEquals(createdAt, replaced.after().getCreatedAt());
+
+        ReviewChange added = reviews().upsertReviewAsync(GROUP, "101", 3, false, null).join();
+        assertNull(added.before());
+        assertEquals(reviews().getUserReview(GROUP, "101").getCreatedAt(), added.after().getCreatedAt());
+
+        // Nothing to publish for a write that changed nothing, or one that was refused
+        assertEquals(ReviewChange.NONE, reviews().updateReviewAsync(GROUP, "999", 1, null, null).join());
+        assertEquals(ReviewChange.NONE, reviews().rateGroupAsync(GROUP, "100", 1, false, null).join().change());
+    }
+
+    @Test
+    void concurrentEditsReportAChainOfChanges() {
+        reviews().upsertReview(GROUP, "100", 1, false, null);
+
+        List<CompletableFuture<ReviewChange>> edits = new ArrayList<>();
+        for (int rating = 2; rating <= 5; rating++) {
+            edits.add(reviews().updateReviewAsync(GROUP, "100", rating, null, null));
+        }
+        // Each change starts where the previous one ended, so applying them all gives the stored review
+        int rating = 1;
+        for (CompletableFuture<ReviewChange> edit : edits) {
+            ReviewChange change = edit.join();
+            assertTrue(change.saved());
+            if (change.after() == null) continue; // folded into a later write of the same batch
+            assertEquals(rating, change.before().getRating());
+            rating = change.after().getRating();
+        }
+        assertEquals(5, rating);
+        assertEquals(5, reviews().getUserReview(GROUP, "100").getRating());
+    }
+
+    @Test
+    void pagesWalkTheListingOrderBothWays() {
+        for (int user = 0; user < 7; user++) {
+            reviews().upsertReview(GROUP, "10" + user, 1 + user % 5, false, "review " + user);
+        }
+        reviews().upsertReview(OTHER_GROUP, "100", 5, false, "elsewhere");
+
+        List<GroupReview> listing = reviews().getReviewsAfter(GROUP, null, 100);
+        assertEquals(7, listing.size());
+        for (int i = 1; i < listing.size(); i++) {
+            assertTrue(inListingOrder(listing.get(i - 1), listing.get(i)), "listing order at " + i);
+        }
+        assertEquals(Set.copyOf(users(listing)), Set.copyOf(users(reviews().getAllReviews(GROUP))));
+
+        List<GroupReview> forward = new ArrayList<>();
+        List<GroupReview> page = reviews().getReviewsAfter(GROUP, null, 3);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 3);
+            forward.addAll(page);
+            page = reviews().getReviewsAfter(GROUP, ReviewCursor.of(page.get(page.size() - 1)), 3);
+        }
+        assertEquals(users(listing), users(forward));
+
+        // Back from the last review: the three before it, closest first
+        List<GroupReview> back = reviews().getReviewsBefore(GROUP, ReviewCursor.of(listing.get(6)), 3);
+        assertEquals(users(listing.subList(3, 6).reversed()), users(back));
+        assertTrue(reviews().getReviewsBefore(GROUP, ReviewCursor.of(listing.get(0)), 3).isEmpty());
+    }
+
+    @Test
+    void reviewsByUserCoverEveryGroupNewestFirst() {
+        reviews().upsertReview(GROUP, "100", 4, false, null);
+        reviews().upsertReview(OTHER_GROUP, "100", 2, false, null);
+        reviews().upsertReview(GROUP, "101", 5, false, null);
+
+        List<GroupReview> mine = reviews().getReviewsByUser("100");
+        assertEquals(Set.of(GROUP, OTHER_GROUP), Set.of(mine.get(0).getGroupId(), mine.get(1).getGroupId()));
+        assertEquals(2, mine.size());
+        assertFalse(mine.get(0).getCreatedAt().before(mine.get(1).getCreatedAt()));
+        assertTrue(reviews().getReviewsByUser("999").isEmpty());
+    }
+
+    @Test
+    void bulkReadsSeeEveryReview() {
+        reviews().upsertReview(GROUP, "100", 4, true, null);
+        reviews().upsertReview(GROUP, "101", 2, false, null);
+        reviews().upsertReview(OTHER_GROUP, "100", 5, false, null);
+
+        List<String> seen = new ArrayList<>();
+        reviews().forEachReview(review -> seen.add(review.getGroupId() + "/" + review.getDiscordUserId()));
+        assertEquals(3, seen.size());
+        assertEquals(Set.of(GROUP + "/100", GROUP + "/101", OTHER_GROUP + "/100"), Set.copyOf(seen));
+
+        Map<String, GroupStats> stats = new HashMap<>();
+        reviews().getAllGroupStats().forEach(groupStats -> stats.put(groupStats.groupId(), groupStats));
+        assertEquals(Set.of(GROUP, OTHER_GROUP), stats.keySet());
+        assertEquals(2, stats.get(GROUP).reviewCount());
+        assertEquals(6, stats.get(GROUP).ratingSum());
+        assertEquals(1, stats.get(GROUP).dobYesCount());
+        assertEquals(1, stats.get(OTHER_GROUP).reviewCount());
+
+        long now = System.currentTimeMillis();
+        List<GroupReview> recent = new ArrayList<>();
+        reviews().forEachReviewSince(new Timestamp(now - 3_600_000), recent::add);
+        assertEquals(3, recent.size());
+        for (int i = 1; i < recent.size(); i++) {
+            assertFalse(recent.get(i).getCreatedAt().before(recent.get(i - 1).getCreatedAt()), "oldest first");
+        }
+        List<GroupReview> future = new ArrayList<>();
+        reviews().forEachReviewSince(new Timestamp(now + 3_600_000), future::add);
+        assertTrue(future.isEmpty());
+    }
+
+    // created_at DESC, discord_user_id DESC
+    private static boolean inListingOrder(GroupReview first, GroupReview second) {
+        int byTime = first.getCreatedAt().compareTo(second.getCreatedAt());
+        return byTime > 0 || (byTime == 0 && first.getDiscordUserId().compareTo(second.getDiscordUserId()) > 0);
+    }
+
+    private static List<String> users(List<GroupReview> reviews) {
+        return reviews.stream().map(GroupReview::getDiscordUserId).toList();
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewSearchIndexTest {
+
+    private final ReviewSearchIndex index = new ReviewSearchIndex();
+
+    private static GroupReview review(String groupId, String discordUserId, String comment) {
+        return new GroupReview(groupId, discordUserId, 3, false, comment, new Timestamp(0));
+    }
+
+    private Set<String> hits(String query) {
+        return index.search(query, 10).stream()
+                .map(hit -> hit.groupId() + "/" + hit.discordUserId())
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void tokenizeDropsStopWordsAndSingleCharacters() {
+        assertEquals(List.of("id", "check", "door", "2fa"), ReviewSearchIndex.tokenize("An ID-check at THE door, 2FA & a x!"));
+        assertTrue(ReviewSearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void reviewsWithMoreQueryWordsRankFirst() {
+        index.add(review("GRP.A", "1", "They check your ID at the door"));
+        index.add(review("GRP.B", "2", "ID ID ID, nothing else"));
+        index.add(review("GRP.C", "3", "Friendly staff"));
+
+        List<ReviewSearchIndex.Hit> hits = index.search("id check", 10);
+        assertEquals(2, hits.size());
+        assertEquals("GRP.A", hits.get(0).groupId());
+        assertEquals(2, hits.get(0).matchedTerms());
+        assertEquals("GRP.B", hits.get(1).groupId());
+        assertEquals(1, index.search("id check", 1).size());
+        assertTrue(index.search("the and of", 10).isEmpty());
+        assertTrue(index.search("id", 0).isEmpty());
+    }
+
+    @Test
+    void removedSlotsAreReusedWithoutStalePostings() {
+        index.add(review("GRP.A", "1", "door staff"));
+        index.add(review("GRP.B", "2", "door policy"));
+        index.add(review("GRP.C", "3", "door music"));
+
+        // Removing the first doc swaps the last posting of "door" into its place and frees its id
+        index.reviewRemoved(review("GRP.A", "1", null));
+        assertEquals(Set.of("GRP.B/2", "GRP.C/3"), hits("door"));
+        assertTrue(hits("staff").isEmpty());
+
+        // The next review takes over the freed id
+        index.add(review("GRP.D", "4", "quiet lounge"));
+        assertEquals(Set.of("GRP.B/2", "GRP.C/3"), hits("door"));
+        assertEquals(Set.of("GRP.D/4"), hits("lounge"));
+        assertEquals(3, index.size());
+
+        // An edit drops the old words
+        index.reviewUpdated(review("GRP.B", "2", "door policy"), review("GRP.B", "2", "lounge policy"));
+        assertEquals(Set.of("GRP.C/3"), hits("door"));
+        assertEquals(Set.of("GRP.B/2", "GRP.D/4"), hits("lounge"));
+
+        // A comment without searchable words leaves the review out of the index
+        index.reviewUpdated(review("GRP.C", "3", "door music"), review("GRP.C", "3", "A!"));
+        assertTrue(hits("door").isEmpty());
+        assertEquals(2, index.size());
+
+        index.reviewRemoved(review("GRP.B", "2", null));
+        index.reviewRemoved(review("GRP.D", "4", null));
+        assertEquals(0, index.size());
+        assertTrue(hits("lounge").isEmpty());
+    }
+
+    @Test
+    void repeatedSearchesGiveTheSameResults() {
+        for (int i = 0; i < 50; i++) {
+            index.add(review("GRP." + i, "1", i % 2 == 0 ? "strict id check" : "id optional"));
+        }
+        List<ReviewSearchIndex.Hit> first = index.search("id check", 100);
+        assertEquals(50, first.size());
+
+        // Pooled score arrays must come back zeroed, also after the index grew past their size
+        assertEquals(first, index.search("id check", 100));
+        for (int i = 50; i < 200; i++) {
+            index.add(review("GRP." + i, "1", "no words in common"));
+        }
+        List<ReviewSearchIndex.Hit> grown = index.search("id check", 100);
+        assertEquals(50, grown.size());
+        assertEquals(25, grown.stream().filter(hit -> hit.matchedTerms() == 2).count());
+        assertEquals(grown, index.search("id check", 100));
+    }
+}
@@ -0,0 +1,39 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * One embedded MariaDB (see EmbeddedDatabase) for every JDBC test of a run; starting it takes seconds.
+ * Each test gets it emptied.
+ */
+final class TestDatabase {
+
+    private static EmbeddedDatabase database;
+
+    private TestDatabase() {}
+
+    static synchronized DatabaseManager empty() throws Exception {
+        if (database == null) {
+            database = EmbeddedDatabase.start();
+            EmbeddedDatabase started = database;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    started.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, "test-database-shutdown"));
+        }
+        clear(database.dbManager());
+        return database.dbManager();
+    }
+
+    private static void clear(DatabaseManager dbManager) throws SQLException {
+        try (Connection conn = dbManager.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM group_reviews");
+            stmt.execute("DELETE FROM group_stats");
+            stmt.execute("DELETE FROM user_links");
+            stmt.execute("DELETE FROM group_index");
+        }
+    }
+}
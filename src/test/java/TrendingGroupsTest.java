@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendingGroupsTest {
+
+    // Starts on a day boundary, so it is also on an hour and five minute boundary
+    private final AtomicLong now = new AtomicLong(Duration.ofDays(20_000).toMillis());
+    private final TrendingGroups trending = new TrendingGroups(now::get);
+
+    private GroupReview review(String groupId, String discordUserId, int rating, long createdAt) {
+        return new GroupReview(groupId, discordUserId, rating, false, null, new Timestamp(createdAt));
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toMillis());
+    }
+
+    private TrendingGroups.Trend trend(TrendingGroups.Window window, String groupId) {
+        return trending.top(window, false, 100).stream()
+                .filter(trend -> trend.groupId().equals(groupId))
+                .findFirst().orElse(null);
+    }
+
+    @Test
+    void reviewsLeaveEachWindowWithTheirBucket() {
+        trending.reviewAdded(review("GRP.A", "1", 5, now.get()));
+        trending.reviewAdded(review("GRP.A", "2", 1, now.get() + 1));
+
+        assertEquals(new TrendingGroups.Trend("GRP.A", 2, 1), trend(TrendingGroups.Window.HOUR, "GRP.A"));
+
+        // The hour window ends 12 five-minute buckets later
+        advance(Duration.ofMinutes(55));
+        assertNotNull(trend(TrendingGroups.Window.HOUR, "GRP.A"));
+        advance(Duration.ofMinutes(5));
+        assertNull(trend(TrendingGroups.Window.HOUR, "GRP.A"));
+        assertEquals(2, trend(TrendingGroups.Window.DAY, "GRP.A").reviews());
+
+        advance(Duration.ofHours(23));
+        assertNull(trend(TrendingGroups.Window.DAY, "GRP.A"));
+        assertEquals(1, trend(TrendingGroups.Window.WEEK, "GRP.A").negative());
+
+        advance(Duration.ofDays(6));
+        assertNull(trend(TrendingGroups.Window.WEEK, "GRP.A"));
+    }
+
+    @Test
+    void reusedSlotStartsFromZero() {
+        long first = now.get();
+        trending.reviewAdded(review("GRP.A", "1", 5, first));
+
+        // One hour later the new bucket maps onto the same slot of the hour ring
+        advance(Duration.ofHours(1));
+        trending.reviewAdded(review("GRP.A", "2", 5, now.get()));
+        assertEquals(1, trend(TrendingGroups.Window.HOUR, "GRP.A").reviews());
+        assertEquals(2, trend(TrendingGroups.Window.DAY, "GRP.A").reviews());
+
+        // Removing the expired review must not take the new one out of the hour window
+        trending.reviewRemoved(review("GRP.A", "1", 5, first));
+        assertEquals(1, trend(TrendingGroups.Window.HOUR, "GRP.A").reviews());
+        assertEquals(1, trend(TrendingGroups.Window.DAY, "GRP.A").reviews());
+
+        // A review from an hour ago, loaded late, counts in the longer windows only
+        trending.add(review("GRP.A", "3", 5, first + 1));
+        assertEquals(1, trend(TrendingGroups.Window.HOUR, "GRP.A").reviews());
+        assertEquals(2, trend(TrendingGroups.Window.DAY, "GRP.A").reviews());
+    }
+
+    @Test
+    void editsAndRemovalsAdjustTheCounts() {
+        long createdAt = now.get();
+        trending.reviewAdded(review("GRP.A", "1", 4, createdAt));
+        trending.reviewAdded(review("GRP.B", "1", 5, createdAt));
+        trending.reviewAdded(review("GRP.B", "2", 5, createdAt));
+
+        trending.reviewUpdated(review("GRP.A", "1", 4, createdAt), review("GRP.A", "1", 1, createdAt));
+        assertEquals(List.of(new TrendingGroups.Trend("GRP.A", 1, 1)),
+                trending.top(TrendingGroups.Window.HOUR, true, 10));
+        assertEquals("GRP.B", trending.top(TrendingGroups.Window.HOUR, false, 1).get(0).groupId());
+
+        // Counts never go below zero, even if a removal arrives twice
+        trending.reviewRemoved(review("GRP.A", "1", 1, createdAt));
+        trending.reviewRemoved(review("GRP.A", "1", 1, createdAt));
+        assertNull(trend(TrendingGroups.Window.HOUR, "GRP.A"));
+        trending.reviewAdded(review("GRP.A", "2", 3, createdAt));
+        assertEquals(new TrendingGroups.Trend("GRP.A", 1, 0), trend(TrendingGroups.Window.HOUR, "GRP.A"));
+
+        // Removing or editing a review of an unknown group doesn't add it
+        trending.reviewRemoved(review("GRP.C", "1", 1, createdAt));
+        trending.reviewUpdated(review("GRP.C", "1", 5, createdAt), review("GRP.C", "1", 1, createdAt));
+        assertEquals(2, trending.size());
+    }
+
+    @Test
+    void oldAndFutureReviewsAreNotCounted() {
+        trending.add(review("GRP.OLD", "1", 5, now.get() - Duration.ofDays(7).toMillis()));
+        trending.add(review("GRP.FUTURE", "1", 5, now.get() + Duration.ofDays(2).toMillis()));
+
+        assertTrue(trending.top(TrendingGroups.Window.WEEK, false, 10).isEmpty());
+    }
+
+    @Test
+    void groupsWithoutRecentReviewsArePruned() {
+        trending.reviewAdded(review("GRP.A", "1", 5, now.get()));
+        advance(Duration.ofDays(8));
+
+        for (int i = 0; i < 1_000; i++) {
+            trending.reviewAdded(review("GRP.B", String.valueOf(i), 5, now.get()));
+        }
+        assertEquals(1, trending.size());
+        assertEquals(1_000, trend(TrendingGroups.Window.HOUR, "GRP.B").reviews());
+    }
+}
@@ -0,0 +1,147 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TtlCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final TtlCache<String, String> cache =
+            new TtlCache<>(3, Duration.ofMinutes(10), Duration.ofMinutes(1), now::get);
+
+    @Test
+    void valuesExpireAfterTheirTtl() {
+        AtomicInteger loads = new AtomicInteger();
+        TtlCache.Loader<String, String, RuntimeException> loader = key -> {
+            loads.incrementAndGet();
+            return key.startsWith("missing") ? null : key.toUpperCase();
+        };
+
+        assertEquals("a", cache.get("a", key -> "a"));
+        assertEquals("a", cache.get("a", loader));
+        assertNull(cache.get("missing", loader));
+        assertNull(cache.get("missing", loader));
+        assertEquals(1, loads.get());
+
+        // Past the negative TTL only the "not found" is loaded again
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertNull(cache.get("missing", loader));
+        assertEquals("a", cache.get("a", loader));
+        assertEquals(2, loads.get());
+
+        now.addAndGet(Duration.ofMinutes(9).toNanos());
+        assertEquals("A", cache.get("a", loader));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryGoesFirst() {
+        cache.get("a", key -> "a");
+        cache.get("b", key -> "b");
+        cache.get("c", key -> "c");
+        cache.get("a", key -> "reloaded");
+        cache.get("d", key -> "d");
+
+        assertEquals(3, cache.size());
+        assertEquals("a", cache.get("a", key -> "reloaded"));
+        assertEquals("reloaded", cache.get("b", key -> "reloaded"));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        TtlCache.Loader<String, String, InterruptedException> loader = key -> {
+            loads.incrementAndGet();
+            release.await();
+            return "value";
+        };
+
+        List<Thread> threads = new ArrayList<>();
+        List<FutureTask<String>> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            callers.add(call(threads, () -> cache.get("key", loader)));
+        }
+        awaitWaiting(threads);
+        release.countDown();
+
+        for (FutureTask<String> caller : callers) {
+            assertEquals("value", caller.get());
+        }
+        assertEquals(1, loads.get());
+        assertEquals(8, cache.missCount());
+        assertEquals("value", cache.get("key", key -> "reloaded"));
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    void invalidateDuringALoadDropsItsResult() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        FutureTask<String> first = call(threads, () -> cache.get("key", key -> {
+            release.await();
+            return "stale";
+        }));
+        awaitWaiting(threads);
+        FutureTask<String> coalesced = call(threads, () -> cache.get("key", key -> "second load"));
+        awaitWaiting(threads);
+
+        cache.invalidate("key");
+        // A miss after the invalidation doesn't wait for the old load, and its result is the one kept
+        assertEquals("fresh", cache.get("key", key -> "fresh"));
+
+        release.countDown();
+        assertEquals("stale", first.get());
+        // Callers that joined the old load before the invalidation still get its result
+        assertEquals("stale", coalesced.get());
+        assertEquals("fresh", cache.get("key", key -> "reloaded"));
+    }
+
+    @Test
+    void failedLoadIsNotCachedAndReachesTheWaiters() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        TtlCache.Loader<String, String, Exception> failing = key -> {
+            loads.incrementAndGet();
+            release.await();
+            throw new IOException("down");
+        };
+
+        List<Thread> threads = new ArrayList<>();
+        FutureTask<String> loader = call(threads, () -> cache.get("key", failing));
+        FutureTask<String> waiter = call(threads, () -> cache.get("key", failing));
+        awaitWaiting(threads);
+        release.countDown();
+
+        assertTrue(assertThrows(ExecutionException.class, loader::get).getCause() instanceof IOException);
+        assertTrue(assertThrows(ExecutionException.class, waiter::get).getCause() instanceof IOException);
+        assertEquals(1, loads.get());
+        assertEquals(0, cache.size());
+        assertEquals("ok", cache.get("key", key -> "ok"));
+    }
+
+    private static FutureTask<String> call(List<Thread> threads, Callable<String> call) {
+        FutureTask<String> task = new FutureTask<>(call);
+        threads.add(Thread.ofPlatform().start(task));
+        return task;
+    }
+
+    // Until every thread is parked: in the loader or waiting for another caller's load
+    private static void awaitWaiting(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            while (thread.isAlive() && thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
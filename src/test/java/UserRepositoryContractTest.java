@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * What every UserRepository has to do the same way, whatever the storage. Subclasses provide empty
+ * repositories before each test; the review repository shares their storage, for the deleteAllUserData checks.
+ */
+abstract class UserRepositoryContractTest {
+
+    static final String GROUP = "GRP.0001";
+    static final String OTHER_GROUP = "GRP.0002";
+
+    abstract UserRepository users();
+
+    abstract ReviewRepository reviews();
+
+    @Test
+    void unknownUserIsNotLinked() {
+        assertNull(users().getVrcUserId("100"));
+    }
+
+    @Test
+    void linkSavesAndReplacesTheVrcAccount() {
+        users().linkUser("100", "usr_a", "A");
+        assertEquals("usr_a", users().getVrcUserId("100"));
+
+        users().linkUser("100", "usr_b", "B");
+        assertEquals("usr_b", users().getVrcUserId("100"));
+        assertNull(users().getVrcUserId("101"));
+    }
+
+    @Test
+    void unlinkRemovesOnlyTheLink() {
+        users().linkUser("100", "usr_a", "A");
+        assertEquals(RateResult.Status.SAVED, reviews().rateGroup(GROUP, "100", 4, false, null).status());
+
+        users().unlinkUser("100");
+        assertNull(users().getVrcUserId("100"));
+        assertNotNull(reviews().getUserReview(GROUP, "100"));
+        assertEquals(RateResult.Status.NOT_LINKED, reviews().rateGroup(OTHER_GROUP, "100", 4, false, null).status());
+
+        // Unlinking twice is fine
+        users().unlinkUser("100");
+        assertNull(users().getVrcUserId("100"));
+    }
+
+    @Test
+    void deleteAllUserDataRemovesTheLinkAndEveryReview() {
+        users().linkUser("100", "usr_a", "A");
+        users().linkUser("101", "usr_b", "B");
+        reviews().rateGroup(GROUP, "100", 5, true, null);
+        reviews().rateGroup(OTHER_GROUP, "100", 1, false, null);
+        reviews().rateGroup(GROUP, "101", 3, false, null);
+
+        List<GroupReview> deleted = users().deleteAllUserData("100");
+
+        assertEquals(Set.of(GROUP, OTHER_GROUP), deleted.stream().map(GroupReview::getGroupId).collect(Collectors.toSet()));
+        assertTrue(deleted.stream().allMatch(review -> review.getDiscordUserId().equals("100")));
+        assertNull(users().getVrcUserId("100"));
+        assertTrue(reviews().getReviewsByUser("100").isEmpty());
+        assertFalse(reviews().hasUserReviewed(GROUP, "100"));
+
+        GroupStats stats = reviews().getGroupStats(GROUP);
+        assertEquals(1, stats.reviewCount());
+        assertEquals(3, stats.ratingSum());
+        assertEquals(0, stats.dobYesCount());
+        assertEquals(0, reviews().getGroupStats(OTHER_GROUP).reviewCount());
+        List<GroupStats> all = reviews().getAllGroupStats();
+        assertEquals(1, all.size());
+        assertEquals(GROUP, all.get(0).groupId());
+
+        // Nothing of the other user is touched
+        assertEquals("usr_b", users().getVrcUserId("101"));
+        assertNotNull(reviews().getUserReview(GROUP, "101"));
+    }
+
+    @Test
+    void deleteAllUserDataOfAnUnknownUserChangesNothing() {
+        users().linkUser("101", "usr_b", "B");
+        reviews().rateGroup(GROUP, "101", 3, false, null);
+
+        assertTrue(users().deleteAllUserData("100").isEmpty());
+
+        assertEquals("usr_b", users().getVrcUserId("101"));
+        assertEquals(1, reviews().getGroupStats(GROUP).reviewCount());
+    }
+}
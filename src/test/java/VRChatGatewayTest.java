@@ -0,0 +1,182 @@
+import io.github.vrchatapi.ApiException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VRChatGatewayTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(SECOND);
+    private final List<Long> sleeps = new ArrayList<>();
+    // Clock readings at which VRChat was called
+    private final List<Long> calls = new ArrayList<>();
+
+    private VRChatGateway gateway(double requestsPerSecond, int burst, Duration waitBudget) {
+        return new VRChatGateway(new VRChatSessionManager(), requestsPerSecond, burst, waitBudget, now::get, nanos -> {
+            sleeps.add(nanos);
+            now.addAndGet(nanos);
+        });
+    }
+
+    private void advance(long nanos) {
+        now.addAndGet(nanos);
+    }
+
+    private static ApiException error(int code, long retryAfterSeconds) {
+        return new ApiException(code, "HTTP " + code,
+                Map.of("Retry-After", List.of(String.valueOf(retryAfterSeconds))), null);
+    }
+
+    private String succeed(VRChatGateway gateway) throws ApiException {
+        return gateway.call(() -> {
+            calls.add(now.get());
+            return "ok";
+        });
+    }
+
+    private ApiException fail(VRChatGateway gateway, int code, long retryAfterSeconds) {
+        return assertThrows(ApiException.class, () -> gateway.call(() -> {
+            calls.add(now.get());
+            throw error(code, retryAfterSeconds);
+        }));
+    }
+
+    // Five transient failures in a row, a second apart; each has a Retry-After that keeps it from being retried
+    private void openCircuit(VRChatGateway gateway) {
+        for (int i = 0; i < 5; i++) {
+            advance(SECOND);
+            assertFalse(fail(gateway, 503, 1) instanceof VRChatGateway.UnavailableException);
+        }
+        assertTrue(gateway.isOpen());
+    }
+
+    @Test
+    void cooldownDoublesWhileTheProbeFailsAndResetsAfterASuccess() throws ApiException {
+        VRChatGateway gateway = gateway(1_000, 100, Duration.ofMillis(500));
+        openCircuit(gateway);
+
+        // Opened for 30s; every failed probe doubles that, up to five minutes
+        long[] cooldowns = {30, 60, 120, 240, 300, 300};
+        for (long cooldown : cooldowns) {
+            advance((cooldown - 1) * SECOND);
+            int before = calls.size();
+            ApiException rejected = fail(gateway, 503, 1);
+            assertTrue(rejected instanceof VRChatGateway.UnavailableException);
+            assertEquals(before, calls.size(), "not called while open");
+
+            advance(SECOND);
+            assertFalse(fail(gateway, 503, 1) instanceof VRChatGateway.UnavailableException, "probe after " + cooldown + "s");
+            assertEquals(before + 1, calls.size());
+            assertTrue(gateway.isOpen());
+        }
+
+        advance(300 * SECOND);
+        assertEquals("ok", succeed(gateway));
+        assertFalse(gateway.isOpen());
+
+        // Back to 30s the next time it opens
+        openCircuit(gateway);
+        advance(30 * SECOND);
+        assertEquals("ok", succeed(gateway));
+        assertFalse(gateway.isOpen());
+    }
+
+    @Test
+    void probeWithoutATokenHandsTheTrialBack() throws ApiException {
+        // One request per 100s: after the five failures the bucket stays empty well past the cooldown
+        VRChatGateway gateway = gateway(0.01, 5, Duration.ofMillis(500));
+        openCircuit(gateway);
+        int failed = calls.size();
+
+        advance(30 * SECOND);
+        ApiException first = fail(gateway, 503, 1);
+        assertTrue(first instanceof VRChatGateway.UnavailableException);
+        assertTrue(first.getMessage().startsWith("VRChat rate limit"), first.getMessage());
+
+        // The circuit went back to open instead of waiting forever for a trial that never ran,
+        // so the next caller gets to be the trial
+        ApiException second = fail(gateway, 503, 1);
+        assertTrue(second.getMessage().startsWith("VRChat rate limit"), second.getMessage());
+        assertEquals(failed, calls.size());
+
+        advance(70 * SECOND);
+        assertEquals("ok", succeed(gateway));
+        assertFalse(gateway.isOpen());
+    }
+
+    @Test
+    void retryWaitsForTheRetryAfterPause() throws ApiException {
+        VRChatGateway gateway = gateway(1_000, 100, Duration.ofSeconds(5));
+        long start = now.get();
+        int[] attempt = {0};
+
+        String result = gateway.call(() -> {
+            calls.add(now.get());
+            if (attempt[0]++ == 0) throw error(429, 3);
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(List.of(start, start + 3 * SECOND), calls);
+        assertEquals(List.of(3 * SECOND), sleeps);
+    }
+
+    @Test
+    void shorterRetryAfterDoesNotShortenThePause() throws ApiException {
+        VRChatGateway gateway = gateway(1_000, 100, Duration.ofSeconds(5));
+        long start = now.get();
+
+        // Two calls in flight: the first one to fail asks for 20s, the other one for 2s afterwards
+        ApiException outer = assertThrows(ApiException.class, () -> gateway.call(() -> {
+            calls.add(now.get());
+            if (calls.size() == 1) {
+                assertEquals(429, fail(gateway, 429, 20).getCode());
+                throw error(429, 2);
+            }
+            return "too early";
+        }));
+        // Its retry would have had to wait for the 20s pause
+        assertTrue(outer instanceof VRChatGateway.UnavailableException);
+        assertEquals(List.of(start, start), calls);
+
+        assertTrue(fail(gateway, 503, 1) instanceof VRChatGateway.UnavailableException);
+
+        // Within the wait budget of the end of the pause, a call sleeps until then
+        now.set(start + 16 * SECOND);
+        sleeps.clear();
+        assertEquals("ok", succeed(gateway));
+        assertEquals(List.of(4 * SECOND), sleeps);
+        assertEquals(start + 20 * SECOND, (long) calls.get(calls.size() - 1));
+    }
+
+    @Test
+    void onlyTransientFailuresInARowOpenTheCircuit() throws ApiException {
+        VRChatGateway gateway = gateway(1_000, 100, Duration.ofMillis(500));
+
+        // VRChat answering "not found" is not an outage
+        for (int i = 0; i < 10; i++) {
+            assertEquals(404, fail(gateway, 404, 0).getCode());
+        }
+        assertEquals(10, calls.size());
+        assertFalse(gateway.isOpen());
+
+        for (int i = 0; i < 4; i++) {
+            advance(SECOND);
+            fail(gateway, 503, 1);
+        }
+        advance(SECOND);
+        succeed(gateway);
+        for (int i = 0; i < 4; i++) {
+            advance(SECOND);
+            fail(gateway, 503, 1);
+        }
+        assertFalse(gateway.isOpen());
+    }
+}
@@ -0,0 +1,110 @@
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/**
+ * In-process MariaDB (MariaDB4j) with the bot schema, for the benchmarks, the load test and the JDBC repository tests.
+ * The schema is created by DatabaseManager's migrations, exactly like in production.
+ */
+public class EmbeddedDatabase implements AutoCloseable {
+
+    private static final long YEAR_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+    private final DB db;
+    private final DatabaseManager dbManager;
+
+    private EmbeddedDatabase(DB db, DatabaseManager dbManager) {
+        this.db = db;
+        this.dbManager = dbManager;
+    }
+
+    public static EmbeddedDatabase start() throws ManagedProcessException {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0); // any free port
+        DB db = DB.newEmbeddedDB(config.build());
+        db.start();
+        db.createDB("vrcbot_bench");
+
+        String url = "jdbc:mariadb://localhost:" + db.getConfiguration().getPort() + "/vrcbot_bench";
+        return new EmbeddedDatabase(db, new DatabaseManager(url, "root", ""));
+    }
+
+    public DatabaseManager dbManager() {
+        return dbManager;
+    }
+
+    public static String groupId(int group) {
+        return "GRP" + group + ".0001";
+    }
+
+    public static String userId(int user) {
+        return String.valueOf(100_000_000_000_000_000L + user);
+    }
+
+    /**
+     * Seeds linked users and reviews spread evenly over the groups, with created_at dates
+     * from the last year, then rebuilds group_stats the same way the migration does.
+     */
+    public void seed(int groups, int reviews, int users) throws SQLException {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO user_links (discord_user_id, vrc_user_id, vrc_display_name) VALUES (?, ?, ?)")) {
+                for (int u = 0; u < users; u++) {
+                    stmt.setString(1, userId(u));
+                    stmt.setString(2, "usr_bench_" + u);
+                    stmt.setString(3, "Bench User " + u);
+                    stmt.addBatch();
+                    if (u % 5_000 == 4_999) stmt.executeBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            // Review i goes to group i % groups from user i / groups, so (group, user) stays unique
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO group_reviews (group_id, discord_user_id, rating, asks_for_dob, comment, created_at) " +
+                            "VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < reviews; i++) {
+                    stmt.setString(1, groupId(i % groups));
+                    stmt.setString(2, userId((i / groups) % users));
+                    stmt.setInt(3, 1 + random.nextInt(5));
+                    stmt.setBoolean(4, random.nextInt(4) == 0);
+                    stmt.setString(5, "Benchmark review " + i + ": friendly staff, asked for ID at the door.");
+                    stmt.setTimestamp(6, new Timestamp(now - (long) (random.nextDouble() * YEAR_MILLIS)));
+                    stmt.addBatch();
+                    if (i % 5_000 == 4_999) {
+                        stmt.executeBatch();
+                        conn.commit();
+                    }
+                }
+                stmt.executeBatch();
+            }
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM group_stats");
+                stmt.execute("INSERT INTO group_stats " +
+                        "(group_id, rating_sum, review_count, dob_yes_count, stars_1, stars_2, stars_3, stars_4, stars_5) " +
+                        "SELECT group_id, SUM(rating), COUNT(*), SUM(asks_for_dob = 1), " +
+                        "SUM(rating = 1), SUM(rating = 2), SUM(rating = 3), SUM(rating = 4), SUM(rating = 5) " +
+                        "FROM group_reviews GROUP BY group_id");
+            }
+            conn.commit();
+        }
+    }
+
+    @Override
+    public void close() throws ManagedProcessException {
+        db.stop();
+    }
+}